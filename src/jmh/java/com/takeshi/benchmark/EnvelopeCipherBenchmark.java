@@ -0,0 +1,90 @@
+package com.takeshi.benchmark;
+
+import cn.hutool.crypto.asymmetric.KeyType;
+import cn.hutool.crypto.asymmetric.RSA;
+import com.takeshi.config.StaticConfig;
+import com.takeshi.config.security.EnvelopeCipher;
+import com.takeshi.config.security.RsaCipher;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整体RSA加解密和RSA+AES信封加密的对比，内容为size字节的JSON列表<br/>
+ * rsa*：之前SystemSecurity的加解密方式，请求使用公钥加密后私钥解密，响应使用私钥加密；
+ * envelope*：每个请求一次RSA解密AES密钥（不使用缓存），内容使用AES-GCM加解密；
+ * hutoolRsaResponse：hutool的RSA对象，即原来的StaticConfig.rsa
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EnvelopeCipherBenchmark {
+
+    @Param({"1024", "65536"})
+    public int size;
+
+    private RSA rsa;
+
+    private RsaCipher rsaCipher;
+
+    private String body;
+
+    private String rsaCiphertext;
+
+    private SecretKey secretKey;
+
+    private String wrappedKey;
+
+    private String envelopeCiphertext;
+
+    @Setup
+    public void setup() {
+        this.rsa = new RSA();
+        this.rsaCipher = new RsaCipher(this.rsa.getPrivateKey(), this.rsa.getPublicKey());
+        StaticConfig.rsaCipher = this.rsaCipher;
+        StringBuilder builder = new StringBuilder(this.size + 64).append('[');
+        for (int i = 0; builder.length() < this.size; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(i).append(",\"name\":\"takeshi-").append(i).append("\",\"enabled\":true}");
+        }
+        this.body = builder.append(']').toString();
+        this.rsaCiphertext = this.rsaCipher.encryptBase64(this.body, KeyType.PublicKey);
+        this.secretKey = EnvelopeCipher.generateKey();
+        this.wrappedKey = Base64.getEncoder().encodeToString(this.rsaCipher.encrypt(this.secretKey.getEncoded(), KeyType.PublicKey));
+        this.envelopeCiphertext = EnvelopeCipher.encrypt(this.secretKey, this.body);
+    }
+
+    @Benchmark
+    public byte[] rsaRequest() {
+        return this.rsaCipher.decrypt(this.rsaCiphertext, KeyType.PrivateKey);
+    }
+
+    @Benchmark
+    public byte[] envelopeRequest() {
+        byte[] key = this.rsaCipher.decrypt(this.wrappedKey, KeyType.PrivateKey);
+        return EnvelopeCipher.decrypt(new SecretKeySpec(key, "AES"), this.envelopeCiphertext);
+    }
+
+    @Benchmark
+    public String rsaResponse() {
+        return this.rsaCipher.encryptBase64(this.body, KeyType.PrivateKey);
+    }
+
+    @Benchmark
+    public String hutoolRsaResponse() {
+        return this.rsa.encryptBase64(this.body, KeyType.PrivateKey);
+    }
+
+    @Benchmark
+    public String envelopeResponse() {
+        return EnvelopeCipher.encrypt(this.secretKey, this.body);
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.takeshi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.redisson.Redisson;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RateIntervalUnit;
+import org.redisson.api.RateType;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import org.redisson.spring.data.connection.RedissonConnectionFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 接口速率限制逐个调用redis和一次lua脚本的对比，SampleTime模式下结果中包含p99<br/>
+ * legacy：与之前TakeshiInterceptor.rateLimit一样，黑名单，nonce，IP，重复提交依次调用RRateLimiter，共10次往返；
+ * script：takeshi-rate-limit.lua一次完成<br/>
+ * 需要一个可用的redis，默认redis://127.0.0.1:6379，可通过 -Dredis.address 指定，
+ * 每次调用使用不同的nonce和重复提交摘要，IP速率设置得足够大，保证每次都完整执行所有校验
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class RateLimitBenchmark {
+
+    private static final RedisScript<Long> RATE_LIMIT_SCRIPT = RedisScript.of(new ClassPathResource("lua/takeshi-rate-limit.lua"), Long.class);
+
+    private static final String PREFIX = "benchmark:rate:";
+
+    private static final String CLIENT_IP = "203.0.113.7";
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private RedissonClient redissonClient;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Setup
+    public void setup() {
+        Config config = new Config();
+        config.useSingleServer().setAddress(System.getProperty("redis.address", "redis://127.0.0.1:6379"));
+        this.redissonClient = Redisson.create(config);
+        RedissonConnectionFactory connectionFactory = new RedissonConnectionFactory(this.redissonClient);
+        this.stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        this.stringRedisTemplate.afterPropertiesSet();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.redissonClient.getKeys().deleteByPattern(PREFIX + "*");
+        this.redissonClient.shutdown();
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        long id = this.sequence.incrementAndGet();
+        blackhole.consume(this.redissonClient.getBucket(PREFIX + "ipBlacklist:" + CLIENT_IP).isExists());
+        blackhole.consume(this.acquire(PREFIX + "rate:nonce:" + id, 1, 60));
+        blackhole.consume(this.acquire(PREFIX + "rate:ip:" + CLIENT_IP, 1_000_000, 1));
+        blackhole.consume(this.acquire(PREFIX + "repeatSubmit:" + id, 1, 60));
+    }
+
+    @Benchmark
+    public void script(Blackhole blackhole) {
+        long id = this.sequence.incrementAndGet();
+        blackhole.consume(this.stringRedisTemplate.execute(RATE_LIMIT_SCRIPT,
+                Arrays.asList(PREFIX + "ipBlacklist:" + CLIENT_IP, PREFIX + "limit:nonce:" + id,
+                        PREFIX + "limit:ip:" + CLIENT_IP, PREFIX + "limit:repeatSubmit:" + id),
+                "0", "1", "60000", "1000000", "1000", "", "0", "0", "60000", PREFIX + "topic", ""));
+    }
+
+    private boolean acquire(String key, long rate, long intervalSeconds) {
+        RRateLimiter rateLimiter = this.redissonClient.getRateLimiter(key);
+        rateLimiter.trySetRate(RateType.PER_CLIENT, rate, intervalSeconds, RateIntervalUnit.SECONDS);
+        rateLimiter.expire(Duration.ofSeconds(60));
+        return rateLimiter.tryAcquire();
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.takeshi.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 盲索引字段，标注在实体类中与加密字段对应的索引字段上（String类型）<br/>
+ * 新增和根据实体更新时由DefaultMetaObjectHandler根据加密字段的明文自动计算，
+ * 查询时使用TakeshiMapper的selectByBlindIndex等方法，在索引字段上做等值查询<br/>
+ * 加密字段只能通过实体更新，UpdateWrapper的set中的值不经过实体，盲索引无法更新，会被BlindIndexInnerInterceptor拒绝<br/>
+ * 示例：<br/>
+ * &#64;TableField(typeHandler = AesCiphertextTypeHandler.class)<br/>
+ * private String phone;<br/>
+ * &#64;BlindIndex("phone")<br/>
+ * &#64;TableField(fill = FieldFill.INSERT_UPDATE)<br/>
+ * private String phoneIndex;
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface BlindIndex {
+
+    /**
+     * 加密字段的属性名
+     *
+     * @return 属性名
+     */
+    String value();
+
+}
@@ -1,5 +1,7 @@
 package com.takeshi.annotation;
 
+import com.takeshi.enums.SignatureAlgorithmEnum;
+
 import java.lang.annotation.*;
 
 /**
@@ -36,6 +38,13 @@ public @interface SystemSecurity {
      */
     boolean signature() default false;
 
+    /**
+     * 参数签名的算法，默认MD5
+     *
+     * @return SignatureAlgorithmEnum
+     */
+    SignatureAlgorithmEnum signatureAlgorithm() default SignatureAlgorithmEnum.MD5;
+
     /**
      * 放弃上述token,platform,signature的校验，此属性优先级别最高
      *
@@ -30,4 +30,19 @@ public @interface TakeshiLog {
      */
     String[] exclusionFieldName() default {};
 
+    /**
+     * 打印请求参数和响应内容，以及记录到数据库的采样率，0~1，小于0则使用yml中的 takeshi.log.sample-rate<br/>
+     * 出错或者慢请求总是会被记录
+     *
+     * @return double
+     */
+    double sampleRate() default -1;
+
+    /**
+     * 请求头，请求参数，响应内容每个字段最多保留的长度，小于0则使用yml中的 takeshi.log.max-field-size
+     *
+     * @return int
+     */
+    int maxFieldSize() default -1;
+
 }
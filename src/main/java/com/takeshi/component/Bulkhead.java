@@ -0,0 +1,284 @@
+package com.takeshi.component;
+
+import cn.hutool.core.thread.ThreadUtil;
+import com.takeshi.config.MdcTaskDecorator;
+import com.takeshi.config.properties.BulkheadProperties;
+import com.takeshi.enums.BulkheadRejectionEnum;
+import com.takeshi.exception.TakeshiException;
+import com.takeshi.pojo.vo.BulkheadVO;
+import lombok.SneakyThrows;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 隔离执行器<br/>
+ * 每个第三方集成使用自己的线程池和有界队列，一个集成变慢时只会占满它自己的线程和队列，不会拖慢其他集成和请求线程；
+ * 记录活跃线程数，排队数，拒绝数，超时数和任务耗时分布
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public final class Bulkhead {
+
+    /**
+     * 当前线程所属的隔离执行器，在执行器自己的线程中再次调用时直接执行，避免线程全部等待自己排队的任务
+     */
+    private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<>();
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private static final MdcTaskDecorator MDC_TASK_DECORATOR = new MdcTaskDecorator();
+
+    private final String name;
+    private final long timeoutNanos;
+    private final boolean interruptOnTimeout;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 任务从提交到执行完成的耗时，包括排队时间
+     */
+    private final LatencyHistogram latency;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * 构造函数
+     *
+     * @param name        名称
+     * @param properties  配置
+     * @param windowCount 耗时统计的时间窗口分为几段轮换
+     * @param windowNanos 耗时统计的时间窗口
+     */
+    Bulkhead(String name, BulkheadProperties properties, int windowCount, long windowNanos) {
+        this.name = name;
+        this.timeoutNanos = properties.getTimeout().toNanos();
+        this.interruptOnTimeout = properties.isInterruptOnTimeout();
+        this.latency = new LatencyHistogram(windowCount, windowNanos);
+        RejectedExecutionHandler delegate = properties.getRejection() == BulkheadRejectionEnum.CALLER_RUNS
+                ? new ThreadPoolExecutor.CallerRunsPolicy()
+                : new ThreadPoolExecutor.AbortPolicy();
+        BlockingQueue<Runnable> queue = properties.getQueueCapacity() > 0
+                ? new ArrayBlockingQueue<>(properties.getQueueCapacity())
+                : new SynchronousQueue<>();
+        this.executor = new ThreadPoolExecutor(properties.getCoreSize(), Math.max(properties.getCoreSize(), properties.getMaxSize()),
+                properties.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS, queue,
+                ThreadUtil.newNamedThreadFactory("bulkhead-" + name + "-", true),
+                (r, e) -> {
+                    this.rejected.increment();
+                    // 停止后CallerRunsPolicy会直接丢弃任务，调用者只能一直等到超时，这里直接抛出异常
+                    if (e.isShutdown()) {
+                        throw new RejectedExecutionException("Bulkhead [" + name + "] has been shut down");
+                    }
+                    delegate.rejectedExecution(r, e);
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 在隔离执行器中执行并等待结果，超过配置的timeout时取消任务并抛出异常；任务本身的异常原样抛出
+     *
+     * @param callable 要执行的方法
+     * @param <T>      T
+     * @return 执行结果
+     */
+    public <T> T call(Callable<T> callable) {
+        return this.call(callable, this.timeoutNanos);
+    }
+
+    /**
+     * 在隔离执行器中执行并等待结果，使用指定的超时时间代替配置的timeout，用于耗时与其他调用差别较大的任务，例如：S3的上传下载
+     *
+     * @param callable 要执行的方法
+     * @param timeout  等待结果的最大时间（包括排队时间）
+     * @param <T>      T
+     * @return 执行结果
+     */
+    public <T> T call(Callable<T> callable, Duration timeout) {
+        return this.call(callable, timeout.toNanos());
+    }
+
+    @SneakyThrows
+    private <T> T call(Callable<T> callable, long timeoutNanos) {
+        if (CURRENT.get() == this) {
+            return callable.call();
+        }
+        Future<T> future = this.submit(callable);
+        try {
+            return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            this.timeouts.increment();
+            future.cancel(this.interruptOnTimeout);
+            throw new TakeshiException("Bulkhead [" + this.name + "] timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms");
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 在调用者线程中等待已经由外部线程执行的异步结果，不占用隔离执行器的线程；
+     * 超过配置的timeout时取消（interruptOnTimeout为false时不中断）并抛出异常，计入超时数；异步任务本身的异常原样抛出
+     *
+     * @param future 异步结果
+     * @param <T>    T
+     * @return 执行结果
+     */
+    @SneakyThrows
+    public <T> T await(Future<T> future) {
+        long start = System.nanoTime();
+        try {
+            return future.get(this.timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            this.timeouts.increment();
+            future.cancel(this.interruptOnTimeout);
+            throw new TakeshiException("Bulkhead [" + this.name + "] timed out after " + TimeUnit.NANOSECONDS.toMillis(this.timeoutNanos) + "ms");
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } finally {
+            this.latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 在隔离执行器中执行并等待完成
+     *
+     * @param runnable 要执行的方法
+     */
+    public void run(Runnable runnable) {
+        this.call(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * 提交到隔离执行器中异步执行
+     *
+     * @param callable 要执行的方法
+     * @param <T>      T
+     * @return Future
+     */
+    public <T> Future<T> submit(Callable<T> callable) {
+        long submitNanos = System.nanoTime();
+        FutureTask<T> futureTask = new FutureTask<>(() -> {
+            Bulkhead previous = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                return callable.call();
+            } finally {
+                CURRENT.set(previous);
+                this.latency.record(System.nanoTime() - submitNanos);
+            }
+        });
+        this.executor.execute(MDC_TASK_DECORATOR.decorate(futureTask));
+        return futureTask;
+    }
+
+    /**
+     * 名称
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 正在执行任务的线程数
+     *
+     * @return int
+     */
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    /**
+     * 排队的任务数
+     *
+     * @return int
+     */
+    public int getQueueSize() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * 启动以来被拒绝的任务数
+     *
+     * @return long
+     */
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    /**
+     * 启动以来同步调用超时的任务数
+     *
+     * @return long
+     */
+    public long getTimeoutCount() {
+        return this.timeouts.sum();
+    }
+
+    /**
+     * 任务耗时分布
+     *
+     * @return LatencyHistogram
+     */
+    LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * 当前的统计数据
+     *
+     * @return BulkheadVO
+     */
+    public BulkheadVO snapshot() {
+        LatencyHistogram.Snapshot snapshot = this.latency.snapshot(QUANTILES);
+        return new BulkheadVO()
+                .setName(this.name)
+                .setActive(this.getActiveCount())
+                .setPoolSize(this.executor.getPoolSize())
+                .setMaxPoolSize(this.executor.getMaximumPoolSize())
+                .setQueued(this.getQueueSize())
+                .setQueueRemaining(this.executor.getQueue().remainingCapacity())
+                .setCompleted(this.executor.getCompletedTaskCount())
+                .setRejected(this.getRejectedCount())
+                .setTimeouts(this.getTimeoutCount())
+                .setCount(snapshot.count())
+                .setP50(snapshot.quantiles()[0])
+                .setP95(snapshot.quantiles()[1])
+                .setP99(snapshot.quantiles()[2])
+                .setMax(snapshot.max());
+    }
+
+    /**
+     * 停止接收新任务，已经提交的任务继续执行
+     */
+    void stopAccepting() {
+        this.executor.shutdown();
+    }
+
+    /**
+     * 等待已经提交的任务执行完成，最多等待到截止时间和配置的timeout中较早的一个，之后中断正在执行的任务并放弃排队的任务；
+     * interruptOnTimeout为false时（例如：S3的分段上传）任务的耗时不受timeout限制，一直等待到截止时间
+     *
+     * @param deadlineNanos 截止时间，System.nanoTime()
+     * @return 放弃的任务数（包括被中断的任务）
+     */
+    long drain(long deadlineNanos) {
+        long remainingNanos = ShutdownParticipant.remainingNanos(deadlineNanos);
+        long waitNanos = this.interruptOnTimeout ? Math.min(remainingNanos, this.timeoutNanos) : remainingNanos;
+        try {
+            if (this.executor.awaitTermination(waitNanos, TimeUnit.NANOSECONDS)) {
+                return 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int active = this.executor.getActiveCount();
+        return this.executor.shutdownNow().size() + active;
+    }
+
+}
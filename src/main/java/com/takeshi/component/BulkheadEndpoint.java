@@ -0,0 +1,33 @@
+package com.takeshi.component;
+
+import com.takeshi.pojo.vo.BulkheadVO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 隔离执行器统计的actuator端点，需要通过management.endpoints.web.exposure.include=bulkheads暴露
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Component
+@Endpoint(id = "bulkheads")
+@RequiredArgsConstructor
+public class BulkheadEndpoint {
+
+    private final BulkheadRegistry bulkheadRegistry;
+
+    /**
+     * 所有隔离执行器的统计
+     *
+     * @return 统计
+     */
+    @ReadOperation
+    public List<BulkheadVO> bulkheads() {
+        return bulkheadRegistry.snapshot();
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.takeshi.component;
+
+import com.takeshi.config.properties.BulkheadProperties;
+import com.takeshi.config.properties.MetricsProperties;
+import com.takeshi.config.properties.TakeshiProperties;
+import com.takeshi.enums.ShutdownPhaseEnum;
+import com.takeshi.pojo.vo.BulkheadVO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 按名称管理的隔离执行器，每个第三方集成一个，配置在takeshi.executors.{名称}下，没有配置的使用默认值<br/>
+ * 统计数据通过actuator的bulkheads端点查看，也会注册为Micrometer的指标：
+ * takeshi.bulkhead.active，takeshi.bulkhead.queued，takeshi.bulkhead.rejected，takeshi.bulkhead.timeouts，takeshi.bulkhead.latency（p50，p95，p99）
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+@Component
+public class BulkheadRegistry implements MeterBinder, ShutdownParticipant {
+
+    /**
+     * AWS S3的上传，下载和删除
+     */
+    public static final String S3 = "s3";
+
+    /**
+     * Firebase Database的同步读取和事务
+     */
+    public static final String FIREBASE = "firebase";
+
+    /**
+     * Mandrill发送邮件
+     */
+    public static final String MANDRILL = "mandrill";
+
+    /**
+     * 发送短信
+     */
+    public static final String SMS = "sms";
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    /**
+     * 没有配置时的默认值；S3的上传下载使用takeshi.aws-secrets.transfer-timeout作为超时时间，
+     * 超时后不中断进行中的分段上传，这里的timeout只用于删除等其他调用
+     */
+    private static final Map<String, BulkheadProperties> DEFAULTS = Map.of(
+            S3, new BulkheadProperties().setCoreSize(4).setMaxSize(16).setQueueCapacity(200).setInterruptOnTimeout(false),
+            FIREBASE, new BulkheadProperties().setMaxSize(8),
+            MANDRILL, new BulkheadProperties(),
+            SMS, new BulkheadProperties()
+    );
+
+    private final Map<String, BulkheadProperties> executors;
+    private final int windowCount;
+    private final long windowNanos;
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+
+    /**
+     * 构造函数
+     *
+     * @param takeshiProperties takeshiProperties
+     * @param metricsProperties metricsProperties
+     */
+    public BulkheadRegistry(TakeshiProperties takeshiProperties, MetricsProperties metricsProperties) {
+        this.executors = takeshiProperties.getExecutors();
+        this.windowCount = metricsProperties.getWindowCount();
+        this.windowNanos = Math.max(1, metricsProperties.getWindow().toNanos());
+    }
+
+    /**
+     * 获取隔离执行器，第一次获取时创建
+     *
+     * @param name 名称
+     * @return Bulkhead
+     */
+    public Bulkhead get(String name) {
+        Bulkhead bulkhead = this.bulkheads.get(name);
+        if (bulkhead == null) {
+            bulkhead = this.bulkheads.computeIfAbsent(name, this::create);
+        }
+        return bulkhead;
+    }
+
+    /**
+     * 所有隔离执行器的统计，按名称排序
+     *
+     * @return 统计
+     */
+    public List<BulkheadVO> snapshot() {
+        return this.bulkheads.values().stream()
+                .map(Bulkhead::snapshot)
+                .sorted(Comparator.comparing(BulkheadVO::getName))
+                .toList();
+    }
+
+    @Override
+    public String shutdownName() {
+        return "bulkheads";
+    }
+
+    @Override
+    public ShutdownPhaseEnum shutdownPhase() {
+        return ShutdownPhaseEnum.DRAIN;
+    }
+
+    /**
+     * 所有隔离执行器停止接收新任务
+     */
+    @Override
+    public void stopAccepting() {
+        this.bulkheads.values().forEach(Bulkhead::stopAccepting);
+    }
+
+    /**
+     * 等待所有隔离执行器中已经提交的任务执行完成，例如：进行中的S3分段上传，未发送的邮件和短信；
+     * 每个执行器最多等待到截止时间和它自己的timeout中较早的一个，S3等不中断的执行器一直等待到截止时间
+     *
+     * @param deadlineNanos 截止时间，System.nanoTime()
+     * @return 放弃的任务数
+     */
+    @Override
+    public long drain(long deadlineNanos) {
+        long dropped = 0;
+        for (Bulkhead bulkhead : this.bulkheads.values()) {
+            long count = bulkhead.drain(deadlineNanos);
+            if (count > 0) {
+                log.warn("BulkheadRegistry.drain --> bulkhead [{}] dropped {} tasks", bulkhead.getName(), count);
+            }
+            dropped += count;
+        }
+        return dropped;
+    }
+
+    /**
+     * 绑定到MeterRegistry，之后新创建的隔离执行器也会注册到这里
+     *
+     * @param registry registry
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        synchronized (this) {
+            this.registries.add(registry);
+            this.bulkheads.values().forEach(bulkhead -> register(registry, bulkhead));
+        }
+    }
+
+    private Bulkhead create(String name) {
+        BulkheadProperties properties = this.executors.getOrDefault(name, DEFAULTS.getOrDefault(name, new BulkheadProperties()));
+        Bulkhead bulkhead = new Bulkhead(name, properties, this.windowCount, this.windowNanos);
+        synchronized (this) {
+            for (MeterRegistry registry : this.registries) {
+                register(registry, bulkhead);
+            }
+        }
+        return bulkhead;
+    }
+
+    private static void register(MeterRegistry registry, Bulkhead bulkhead) {
+        String name = bulkhead.getName();
+        Gauge.builder("takeshi.bulkhead.active", bulkhead, Bulkhead::getActiveCount)
+                .tag("name", name)
+                .description("隔离执行器正在执行任务的线程数")
+                .register(registry);
+        Gauge.builder("takeshi.bulkhead.queued", bulkhead, Bulkhead::getQueueSize)
+                .tag("name", name)
+                .description("隔离执行器排队的任务数")
+                .register(registry);
+        FunctionCounter.builder("takeshi.bulkhead.rejected", bulkhead, Bulkhead::getRejectedCount)
+                .tag("name", name)
+                .description("隔离执行器累计被拒绝的任务数")
+                .register(registry);
+        FunctionCounter.builder("takeshi.bulkhead.timeouts", bulkhead, Bulkhead::getTimeoutCount)
+                .tag("name", name)
+                .description("隔离执行器累计超时的任务数")
+                .register(registry);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            int index = i;
+            Gauge.builder("takeshi.bulkhead.latency", bulkhead.getLatency(), h -> h.snapshot(QUANTILES).quantiles()[index])
+                    .tag("name", name)
+                    .tag("quantile", String.valueOf(QUANTILES[i]))
+                    .baseUnit("milliseconds")
+                    .description("隔离执行器任务耗时（包括排队时间）的百分位数")
+                    .register(registry);
+        }
+    }
+
+}
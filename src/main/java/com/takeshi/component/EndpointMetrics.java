@@ -0,0 +1,185 @@
+package com.takeshi.component;
+
+import com.takeshi.config.properties.MetricsProperties;
+import com.takeshi.pojo.vo.EndpointLatencyVO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 按接口（ParamBO.methodName）和返回的code统计耗时分布<br/>
+ * 请求线程只查找对应的{@link LatencyHistogram}并累加一个桶，没有锁，也不分配对象；
+ * 统计数据通过actuator的latency端点查看，也会注册为Micrometer的指标：
+ * takeshi.endpoint.requests（累计请求数），takeshi.endpoint.latency（p50，p95，p99），takeshi.endpoint.latency.max
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Component
+public class EndpointMetrics implements MeterBinder {
+
+    /**
+     * 统计的百分位数
+     */
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final boolean enabled;
+    private final int windowCount;
+    private final long windowNanos;
+    private final long startNanos = System.nanoTime();
+
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+
+    /**
+     * 构造函数
+     *
+     * @param metricsProperties metricsProperties
+     */
+    public EndpointMetrics(MetricsProperties metricsProperties) {
+        this.enabled = metricsProperties.isEnabled();
+        this.windowCount = metricsProperties.getWindowCount();
+        this.windowNanos = Math.max(1, metricsProperties.getWindow().toNanos());
+    }
+
+    /**
+     * 记录一次请求的耗时
+     *
+     * @param methodName 请求的方法，为null时（没有进入接口的请求）不记录
+     * @param code       返回的code或HTTP状态码
+     * @param nanos      耗时，纳秒
+     */
+    public void record(String methodName, int code, long nanos) {
+        if (!this.enabled || methodName == null) {
+            return;
+        }
+        Endpoint endpoint = this.endpoints.get(methodName);
+        if (endpoint == null) {
+            endpoint = this.endpoints.computeIfAbsent(methodName, Endpoint::new);
+        }
+        endpoint.histogram(code).record(nanos);
+    }
+
+    /**
+     * 所有接口的耗时统计，按p99从大到小排序
+     *
+     * @return 耗时统计
+     */
+    public List<EndpointLatencyVO> snapshot() {
+        // 启动后的第一个时间窗口内按实际经过的时间计算吞吐量
+        double seconds = Math.min(this.windowNanos, System.nanoTime() - this.startNanos) / 1e9;
+        List<EndpointLatencyVO> list = new ArrayList<>();
+        for (Endpoint endpoint : this.endpoints.values()) {
+            for (CodeHistogram codeHistogram : endpoint.histograms) {
+                LatencyHistogram.Snapshot snapshot = codeHistogram.histogram().snapshot(QUANTILES);
+                list.add(new EndpointLatencyVO()
+                        .setMethodName(endpoint.methodName)
+                        .setCode(codeHistogram.code())
+                        .setTotal(codeHistogram.histogram().total())
+                        .setCount(snapshot.count())
+                        .setThroughput(seconds > 0 ? snapshot.count() / seconds : 0)
+                        .setP50(snapshot.quantiles()[0])
+                        .setP95(snapshot.quantiles()[1])
+                        .setP99(snapshot.quantiles()[2])
+                        .setMax(snapshot.max()));
+            }
+        }
+        list.sort(Comparator.comparingDouble(EndpointLatencyVO::getP99).reversed());
+        return list;
+    }
+
+    /**
+     * 绑定到MeterRegistry，之后新出现的接口和code也会注册到这里
+     *
+     * @param registry registry
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        synchronized (this) {
+            this.registries.add(registry);
+            for (Endpoint endpoint : this.endpoints.values()) {
+                for (CodeHistogram codeHistogram : endpoint.histograms) {
+                    register(registry, endpoint.methodName, codeHistogram);
+                }
+            }
+        }
+    }
+
+    private static void register(MeterRegistry registry, String methodName, CodeHistogram codeHistogram) {
+        LatencyHistogram histogram = codeHistogram.histogram();
+        Tags tags = Tags.of("method", methodName, "code", String.valueOf(codeHistogram.code()));
+        FunctionCounter.builder("takeshi.endpoint.requests", histogram, LatencyHistogram::total)
+                .tags(tags)
+                .description("接口累计的请求数")
+                .register(registry);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            int index = i;
+            Gauge.builder("takeshi.endpoint.latency", histogram, h -> h.snapshot(QUANTILES).quantiles()[index])
+                    .tags(tags)
+                    .tag("quantile", String.valueOf(QUANTILES[i]))
+                    .baseUnit("milliseconds")
+                    .description("接口耗时的百分位数")
+                    .register(registry);
+        }
+        Gauge.builder("takeshi.endpoint.latency.max", histogram, h -> h.snapshot().max())
+                .tags(tags)
+                .baseUnit("milliseconds")
+                .description("接口的最大耗时")
+                .register(registry);
+    }
+
+    /**
+     * 一个接口按code区分的直方图
+     */
+    private final class Endpoint {
+
+        private final String methodName;
+
+        /**
+         * 一个接口返回的code通常只有几种，使用写时复制的数组顺序查找
+         */
+        private volatile CodeHistogram[] histograms = new CodeHistogram[0];
+
+        Endpoint(String methodName) {
+            this.methodName = methodName;
+        }
+
+        LatencyHistogram histogram(int code) {
+            for (CodeHistogram codeHistogram : this.histograms) {
+                if (codeHistogram.code() == code) {
+                    return codeHistogram.histogram();
+                }
+            }
+            synchronized (EndpointMetrics.this) {
+                for (CodeHistogram codeHistogram : this.histograms) {
+                    if (codeHistogram.code() == code) {
+                        return codeHistogram.histogram();
+                    }
+                }
+                CodeHistogram codeHistogram = new CodeHistogram(code, new LatencyHistogram(windowCount, windowNanos));
+                CodeHistogram[] histograms = Arrays.copyOf(this.histograms, this.histograms.length + 1);
+                histograms[histograms.length - 1] = codeHistogram;
+                this.histograms = histograms;
+                for (MeterRegistry registry : registries) {
+                    register(registry, this.methodName, codeHistogram);
+                }
+                return codeHistogram.histogram();
+            }
+        }
+
+    }
+
+    private record CodeHistogram(int code, LatencyHistogram histogram) {
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.takeshi.component;
+
+import com.takeshi.pojo.vo.EndpointLatencyVO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 接口耗时统计的actuator端点，需要通过management.endpoints.web.exposure.include=latency暴露
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Component
+@Endpoint(id = "latency")
+@RequiredArgsConstructor
+public class LatencyEndpoint {
+
+    private final EndpointMetrics endpointMetrics;
+
+    /**
+     * 所有接口的耗时统计，按p99从大到小排序
+     *
+     * @return 耗时统计
+     */
+    @ReadOperation
+    public List<EndpointLatencyVO> latency() {
+        return endpointMetrics.snapshot();
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.takeshi.component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的耗时直方图，参考HdrHistogram的对数线性分桶<br/>
+ * 以微秒记录，小于32微秒的值每微秒一个桶，之后每个2的幂区间分为32个桶，相对误差不超过1/32，最大约19小时；
+ * 时间窗口分为多段轮换，记录只写入当前段的一个桶，读取时合并所有段；到了轮换的时间由记录或读取的线程顺便轮换，不需要定时任务
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    /**
+     * 每段的计数，最后一个元素记录这一段的最大值
+     */
+    private final AtomicLongArray[] segments;
+
+    /**
+     * 当前写入的段
+     */
+    private volatile int current;
+
+    /**
+     * 每段的时长
+     */
+    private final long segmentNanos;
+
+    /**
+     * 下一次轮换的时间
+     */
+    private volatile long nextRotateNanos;
+
+    private final AtomicBoolean rotating = new AtomicBoolean();
+
+    /**
+     * 累计的请求数，不随时间窗口轮换
+     */
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * 构造函数
+     *
+     * @param segmentCount 时间窗口分为几段
+     * @param windowNanos  时间窗口的时长
+     */
+    public LatencyHistogram(int segmentCount, long windowNanos) {
+        this.segmentNanos = Math.max(1, windowNanos / segmentCount);
+        this.nextRotateNanos = System.nanoTime() + this.segmentNanos;
+        this.segments = new AtomicLongArray[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new AtomicLongArray(BUCKET_COUNT + 1);
+        }
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 纳秒
+     */
+    public void record(long nanos) {
+        this.rotateIfNecessary();
+        long micros = Math.min(MAX_VALUE, Math.max(0, nanos / 1000));
+        AtomicLongArray segment = this.segments[this.current];
+        segment.incrementAndGet(index(micros));
+        long max = segment.get(BUCKET_COUNT);
+        while (micros > max && !segment.compareAndSet(BUCKET_COUNT, max, micros)) {
+            max = segment.get(BUCKET_COUNT);
+        }
+        this.total.increment();
+    }
+
+    /**
+     * 到了轮换的时间时轮换到下一段，清空最旧的一段后再开始写入，很久没有轮换时一次轮换多段<br/>
+     * 清空时正在写入旧段的少量记录可能被丢弃，统计上可以忽略
+     */
+    private void rotateIfNecessary() {
+        long now = System.nanoTime();
+        if (now - this.nextRotateNanos < 0 || !this.rotating.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long elapsed = (now - this.nextRotateNanos) / this.segmentNanos + 1;
+            for (long i = 0; i < Math.min(elapsed, this.segments.length); i++) {
+                int next = (this.current + 1) % this.segments.length;
+                AtomicLongArray segment = this.segments[next];
+                for (int j = 0; j <= BUCKET_COUNT; j++) {
+                    segment.set(j, 0);
+                }
+                this.current = next;
+            }
+            this.nextRotateNanos += elapsed * this.segmentNanos;
+        } finally {
+            this.rotating.set(false);
+        }
+    }
+
+    /**
+     * 累计的请求数
+     *
+     * @return 请求数
+     */
+    public long total() {
+        return this.total.sum();
+    }
+
+    /**
+     * 合并所有段，计算时间窗口内的统计数据
+     *
+     * @param quantiles 百分位数，0~1，从小到大
+     * @return 时间窗口内的请求数，最大值（毫秒）以及每个百分位数对应的耗时（毫秒）
+     */
+    public Snapshot snapshot(double... quantiles) {
+        this.rotateIfNecessary();
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        long max = 0;
+        for (AtomicLongArray segment : this.segments) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long value = segment.get(i);
+                counts[i] += value;
+                count += value;
+            }
+            max = Math.max(max, segment.get(BUCKET_COUNT));
+        }
+        double[] values = new double[quantiles.length];
+        if (count > 0) {
+            int q = 0;
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT && q < quantiles.length; i++) {
+                seen += counts[i];
+                while (q < quantiles.length && seen >= Math.max(1, Math.ceil(quantiles[q] * count))) {
+                    // 取桶的上界，与HdrHistogram的highestEquivalentValue一致，但不超过最大值
+                    values[q++] = Math.min(upperBound(i), max) / 1000.0;
+                }
+            }
+        }
+        return new Snapshot(count, max / 1000.0, values);
+    }
+
+    private static int index(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * 时间窗口内的统计数据
+     *
+     * @param count     请求数
+     * @param max       最大耗时，毫秒
+     * @param quantiles 每个百分位数对应的耗时，毫秒
+     */
+    public record Snapshot(long count, double max, double[] quantiles) {
+    }
+
+}
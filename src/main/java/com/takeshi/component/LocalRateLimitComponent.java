@@ -0,0 +1,302 @@
+package com.takeshi.component;
+
+import com.takeshi.config.properties.RateLimitProperties;
+import com.takeshi.enums.RateLimitModeEnum;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地的IP速率限制，takeshi.rate.mode为local或hybrid时使用<br/>
+ * 每个IP（接口单独设置了IP速率时为IP + 接口）一个令牌桶，令牌桶只有一个AtomicLong，每次校验只需要一次CAS<br/>
+ * hybrid模式下还会分批从redis的令牌桶租借配额，配额快用完时异步预取下一批，保证集群的总数不超出速率<br/>
+ * redis不可用时不再租借，每个节点按速率 / takeshi.rate.expected-instances 在本地限制，直到redis恢复
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LocalRateLimitComponent {
+
+    /**
+     * 租借配额的lua脚本
+     */
+    private static final RedisScript<List> LEASE_SCRIPT = RedisScript.of(new ClassPathResource("lua/takeshi-rate-lease.lua"), List.class);
+
+    /**
+     * 每批配额至少有这么多时才异步预取下一批
+     */
+    private static final long MIN_PREFETCH_LEASE_SIZE = 8;
+
+    /**
+     * redis不可用时最多间隔这么久（毫秒）再尝试租借
+     */
+    private static final long DEGRADED_RETRY_MILLIS = 1000;
+
+    private final RedisComponent redisComponent;
+    private final RateLimitProperties rateLimitProperties;
+    private final ThreadPoolTaskExecutor threadPoolTaskExecutor;
+    private final ResourceLimiter resourceLimiter;
+
+    /**
+     * 令牌桶，ConcurrentHashMap内部分段，不同IP之间没有锁竞争
+     */
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>(256);
+
+    /**
+     * 获取一次请求的许可
+     *
+     * @param key    令牌桶的key，也是hybrid模式下租借配额的redis的key
+     * @param ipRate IP速率
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(String key, RateLimitProperties.IpRate ipRate) {
+        TokenBucket bucket = this.buckets.computeIfAbsent(key, k -> new TokenBucket(ipRate));
+        if (!bucket.tryAcquire()) {
+            return false;
+        }
+        return rateLimitProperties.getMode() != RateLimitModeEnum.HYBRID || this.tryAcquireLease(key, bucket);
+    }
+
+    /**
+     * 归还一次获取成功的许可，请求在IP速率之前的校验没有通过时使用
+     *
+     * @param key 令牌桶的key
+     */
+    public void release(String key) {
+        TokenBucket bucket = this.buckets.get(key);
+        if (bucket != null) {
+            bucket.release(rateLimitProperties.getMode() == RateLimitModeEnum.HYBRID);
+        }
+    }
+
+    /**
+     * 定时清理已经装满的令牌桶，装满的令牌桶与新建的令牌桶没有区别
+     */
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
+    public void purge() {
+        if (this.buckets.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long currentMillis = System.currentTimeMillis();
+        this.buckets.values().removeIf(bucket -> bucket.isIdle(now, currentMillis));
+    }
+
+    /**
+     * 从租借到的配额中获取一次许可，没有配额时同步租借，配额快用完时异步租借下一批
+     *
+     * @param key    令牌桶的key
+     * @param bucket 令牌桶
+     * @return 是否获取成功
+     */
+    private boolean tryAcquireLease(String key, TokenBucket bucket) {
+        long now = System.currentTimeMillis();
+        if (now < bucket.exhaustedUntil) {
+            // 集群的配额已经用完
+            return false;
+        }
+        if (now < bucket.degradedUntil) {
+            // redis不可用，只使用本地分摊的速率
+            return bucket.tryAcquireDegraded();
+        }
+        if (bucket.consumeLease(now)) {
+            if (bucket.permits.get() <= bucket.prefetchThreshold && bucket.refreshing.compareAndSet(false, true)) {
+                Thread caller = Thread.currentThread();
+                threadPoolTaskExecutor.execute(() -> {
+                    try {
+                        // 线程池已满时CallerRunsPolicy会在请求线程中执行，此时不预取，配额用完时再同步租借
+                        if (Thread.currentThread() != caller) {
+                            this.lease(key, bucket);
+                        }
+                    } finally {
+                        bucket.refreshing.set(false);
+                    }
+                });
+            }
+            return true;
+        }
+        synchronized (bucket) {
+            if (bucket.consumeLease(now)) {
+                return true;
+            }
+            this.lease(key, bucket);
+            long current = System.currentTimeMillis();
+            return current < bucket.degradedUntil ? bucket.tryAcquireDegraded() : bucket.consumeLease(current);
+        }
+    }
+
+    /**
+     * 从redis租借一批配额
+     *
+     * @param key    令牌桶的key
+     * @param bucket 令牌桶
+     */
+    private void lease(String key, TokenBucket bucket) {
+        try {
+            // 使用虚拟线程处理请求时，同时租借的数量不超过redis连接池的大小
+            List<?> result = resourceLimiter.call(ResourceLimiter.REDIS, () -> redisComponent.execute(LEASE_SCRIPT, List.of(key),
+                    String.valueOf(bucket.leaseSize), String.valueOf(bucket.rate), String.valueOf(bucket.intervalMillis)));
+            long granted = ((Number) result.get(0)).longValue();
+            // 租借到时是配额的有效时间，没有租借到时是下一个配额可用前的等待时间
+            long until = System.currentTimeMillis() + Math.max(1, ((Number) result.get(1)).longValue());
+            if (granted > 0) {
+                bucket.leaseExpireAt = until;
+                bucket.permits.addAndGet(granted);
+            } else {
+                bucket.exhaustedUntil = until;
+            }
+        } catch (Exception e) {
+            // redis不可用时不能凭空发放配额，每个节点只按分摊后的速率限制，一段时间后再尝试租借
+            log.error("LocalRateLimitComponent.lease --> e: ", e);
+            bucket.degradedUntil = System.currentTimeMillis() + Math.min(bucket.intervalMillis, DEGRADED_RETRY_MILLIS);
+        }
+    }
+
+    /**
+     * 令牌桶，使用GCRA算法，只需要保存下一个请求的理论到达时间
+     */
+    private final class TokenBucket {
+
+        /**
+         * 每个令牌的间隔（纳秒）
+         */
+        private final long emissionNanos;
+
+        /**
+         * 速率时间间隔（纳秒），也是令牌桶的容量
+         */
+        private final long intervalNanos;
+
+        /**
+         * redis不可用时每个令牌的间隔（纳秒），速率按节点数分摊
+         */
+        private final long degradedEmissionNanos;
+
+        /**
+         * 理论到达时间
+         */
+        private final AtomicLong tat;
+
+        /**
+         * redis不可用时分摊速率的理论到达时间
+         */
+        private final AtomicLong degradedTat;
+
+        private final int rate;
+
+        private final long intervalMillis;
+
+        private final long leaseSize;
+
+        /**
+         * 剩余配额不超过此数量时异步预取下一批，配额太小时预取和同步租借一样频繁，为0时不预取
+         */
+        private final long prefetchThreshold;
+
+        /**
+         * hybrid模式下剩余租借到的配额
+         */
+        private final AtomicLong permits = new AtomicLong();
+
+        /**
+         * 是否正在异步租借配额
+         */
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        /**
+         * 租借到的配额的过期时间
+         */
+        private volatile long leaseExpireAt;
+
+        /**
+         * 集群的配额已经用完，直到此时间前都不再租借
+         */
+        private volatile long exhaustedUntil;
+
+        /**
+         * redis不可用，直到此时间前都只使用分摊的速率
+         */
+        private volatile long degradedUntil;
+
+        TokenBucket(RateLimitProperties.IpRate ipRate) {
+            this.rate = ipRate.getRate();
+            this.intervalMillis = ipRate.getRateIntervalUnit().toMillis(ipRate.getRateInterval());
+            this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(this.intervalMillis);
+            this.emissionNanos = Math.max(1, this.intervalNanos / this.rate);
+            this.degradedEmissionNanos = this.emissionNanos * rateLimitProperties.getExpectedInstances();
+            this.tat = new AtomicLong(System.nanoTime());
+            this.degradedTat = new AtomicLong(this.tat.get());
+            this.leaseSize = Math.max(1, (long) Math.ceil(this.rate * rateLimitProperties.getLeaseRatio()));
+            this.prefetchThreshold = this.leaseSize >= MIN_PREFETCH_LEASE_SIZE ? this.leaseSize / 4 : 0;
+        }
+
+        boolean tryAcquire() {
+            return this.acquire(this.tat, this.emissionNanos);
+        }
+
+        boolean tryAcquireDegraded() {
+            return this.acquire(this.degradedTat, this.degradedEmissionNanos);
+        }
+
+        private boolean acquire(AtomicLong tat, long emissionNanos) {
+            long now = System.nanoTime();
+            while (true) {
+                long current = tat.get();
+                long next = (current - now > 0 ? current : now) + emissionNanos;
+                if (next - now > this.intervalNanos) {
+                    return false;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        void release(boolean leased) {
+            this.tat.addAndGet(-this.emissionNanos);
+            if (leased) {
+                // 配额过期时会在consumeLease中作废
+                this.permits.incrementAndGet();
+            }
+        }
+
+        boolean consumeLease(long now) {
+            while (true) {
+                long current = this.permits.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (now >= this.leaseExpireAt) {
+                    // 过期窗口的配额作废
+                    this.permits.compareAndSet(current, 0);
+                    return false;
+                }
+                if (this.permits.compareAndSet(current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean isIdle(long now, long currentMillis) {
+            // 过期窗口剩余的配额不再有效，不会再有请求把它清零，视为没有配额
+            boolean noPermits = this.permits.get() <= 0 || currentMillis >= this.leaseExpireAt;
+            return this.tat.get() - now <= 0 && this.degradedTat.get() - now <= 0 && noPermits
+                    && currentMillis >= this.exhaustedUntil && currentMillis >= this.degradedUntil;
+        }
+
+    }
+
+}
@@ -0,0 +1,283 @@
+package com.takeshi.component;
+
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.takeshi.config.properties.RateLimitProperties;
+import com.takeshi.config.security.EndpointPolicy;
+import com.takeshi.constants.TakeshiCode;
+import com.takeshi.enums.RateLimitModeEnum;
+import com.takeshi.enums.TakeshiRedisKeyEnum;
+import com.takeshi.pojo.bo.IpBlackInfoBO;
+import com.takeshi.pojo.bo.RetBO;
+import com.takeshi.util.GsonUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 接口速率限制<br/>
+ * IP黑名单，nonce，IP，参数签名，重复提交的校验通过一个lua脚本在redis中一次完成<br/>
+ * 本地缓存了IP黑名单和正常的IP，黑名单中的IP不会再访问redis，IP加入或移出黑名单时通过redis广播到所有节点<br/>
+ * takeshi.rate.mode为local或hybrid时IP速率在本地令牌桶中校验，参考{@link LocalRateLimitComponent}，校验结果仍然按原来的顺序（nonce之后）生效
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RateLimitComponent implements SmartInitializingSingleton {
+
+    /**
+     * 速率限制的lua脚本
+     */
+    private static final RedisScript<Long> RATE_LIMIT_SCRIPT = RedisScript.of(new ClassPathResource("lua/takeshi-rate-limit.lua"), Long.class);
+
+    private static final String ADD = "+";
+    private static final String REMOVE = "-";
+    private static final char SEPARATOR = '|';
+
+    private final RedisComponent redisComponent;
+    private final RateLimitProperties rateLimitProperties;
+    private final LocalRateLimitComponent localRateLimitComponent;
+
+    /**
+     * 本地缓存的黑名单IP，value是本地缓存的过期时间
+     */
+    private final Map<String, Long> blacklistCache = new ConcurrentHashMap<>(64);
+
+    /**
+     * 本地缓存的正常IP，value是本地缓存的过期时间
+     */
+    private final Map<String, Long> cleanCache = new ConcurrentHashMap<>(256);
+
+    /**
+     * 订阅IP加入或移出黑名单的广播
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (this.localCacheMillis() <= 0) {
+            return;
+        }
+        redisComponent.redissonClient()
+                .getTopic(TakeshiRedisKeyEnum.IP_BLACKLIST_TOPIC.projectKey(), StringCodec.INSTANCE)
+                .addListener(String.class, (channel, message) -> this.onBlacklistMessage(message));
+    }
+
+    /**
+     * 校验接口的速率限制
+     *
+     * @param endpointPolicy 接口的安全策略
+     * @param clientIp       请求的IP
+     * @param servletPath    请求的路径
+     * @param nonce          header里传递的nonce
+     * @param localRetBO     本地校验（请求时间）失败的结果，校验通过传null，IP在黑名单中时优先返回黑名单的结果
+     * @param signFailed     参数签名是否校验失败
+     * @param repeatDigest   重复提交校验的摘要，不需要校验重复提交时传null
+     * @return 校验不通过时返回对应的结果，通过返回null
+     */
+    public RetBO tryAcquire(EndpointPolicy endpointPolicy, String clientIp, String servletPath, String nonce,
+                            RetBO localRetBO, boolean signFailed, String repeatDigest) {
+        long now = System.currentTimeMillis();
+        if (this.cached(this.blacklistCache, clientIp, now)) {
+            // 本地缓存的黑名单中的IP
+            return TakeshiCode.RATE_LIMIT;
+        }
+        boolean nonceLimit = endpointPolicy.isSignVerify() && endpointPolicy.getNonceRateInterval() > 0;
+        long nonceInterval = nonceLimit ? endpointPolicy.getNonceRateIntervalUnit().toMillis(endpointPolicy.getNonceRateInterval()) : 0;
+        RateLimitProperties.IpRate ipRate = endpointPolicy.getIpRate();
+        long ipInterval = ipRate.getRateInterval() > 0 ? ipRate.getRateIntervalUnit().toMillis(ipRate.getRateInterval()) : 0;
+        String ipRateLimitKey = ipRateLimitKey(endpointPolicy, clientIp);
+        // 本地令牌桶是否获取到了许可，是否超过了IP速率
+        boolean ipAcquired = false;
+        boolean ipFailed = false;
+        if (ipInterval > 0 && rateLimitProperties.getMode() != RateLimitModeEnum.REDIS) {
+            if (localRetBO == null) {
+                // IP速率在本地令牌桶中校验，不再通过lua脚本计数，结果传给lua脚本在nonce之后生效
+                ipAcquired = localRateLimitComponent.tryAcquire(ipRateLimitKey, ipRate);
+                ipFailed = !ipAcquired;
+            }
+            ipInterval = 0;
+        }
+        boolean repeatLimit = endpointPolicy.isRepeatSubmit() && StrUtil.isNotBlank(repeatDigest);
+        long repeatInterval = repeatLimit ? endpointPolicy.getRepeatRateIntervalUnit().toMillis(endpointPolicy.getRepeatRateInterval()) : 0;
+        if (!nonceLimit && ipInterval <= 0 && !repeatLimit && this.cached(this.cleanCache, clientIp, now)) {
+            // 不需要redis计数并且本地缓存中是正常的IP，无需访问redis
+            if (ObjUtil.isNotNull(localRetBO)) {
+                return localRetBO;
+            }
+            if (ipFailed) {
+                if (ipRate.isOpenBlacklist()) {
+                    this.addBlacklist(new IpBlackInfoBO(clientIp, servletPath, ipRate, endpointPolicy.isIpOverwritten(), Instant.now()));
+                }
+                return TakeshiCode.RATE_LIMIT;
+            }
+            return signFailed ? TakeshiCode.SIGN_ERROR : null;
+        }
+
+        String blacklistValue = StrUtil.EMPTY;
+        long blacklistMillis = 0;
+        String blacklistMessage = StrUtil.EMPTY;
+        if ((ipInterval > 0 || ipFailed) && ipRate.isOpenBlacklist()) {
+            // 超过请求次数则将IP加入黑名单到当天结束时间释放（例如：2023-04-23 23:59:59）
+            ZonedDateTime dateTime = ZonedDateTime.now();
+            blacklistValue = GsonUtil.toJson(new IpBlackInfoBO(clientIp, servletPath, ipRate, endpointPolicy.isIpOverwritten(), Instant.now()));
+            blacklistMillis = Math.max(1, Duration.between(dateTime, dateTime.with(LocalTime.MAX)).toMillis());
+            blacklistMessage = blacklistMessage(ADD, clientIp, now + blacklistMillis);
+        }
+
+        Long verdict = redisComponent.execute(RATE_LIMIT_SCRIPT,
+                Arrays.asList(TakeshiRedisKeyEnum.IP_BLACKLIST.projectKey(clientIp),
+                        nonceLimit ? TakeshiRedisKeyEnum.NONCE_RATE_LIMIT.projectKey(nonce) : StrUtil.EMPTY,
+                        ipInterval > 0 ? ipRateLimitKey : StrUtil.EMPTY,
+                        repeatLimit ? TakeshiRedisKeyEnum.REPEAT_SUBMIT.projectKey(repeatDigest) : StrUtil.EMPTY),
+                localRetBO == null ? "0" : "1",
+                String.valueOf(endpointPolicy.getNonceRate()), String.valueOf(nonceInterval),
+                String.valueOf(ipRate.getRate()), String.valueOf(ipInterval),
+                blacklistValue, String.valueOf(blacklistMillis),
+                signFailed ? "1" : "0",
+                String.valueOf(repeatInterval),
+                TakeshiRedisKeyEnum.IP_BLACKLIST_TOPIC.projectKey(), blacklistMessage,
+                ipFailed ? "1" : "0");
+        int code = verdict == null ? 0 : verdict.intValue();
+        if (ipAcquired && code < 4) {
+            // 在IP速率之前的校验（黑名单，nonce）没有通过，与原来的顺序一致，不消耗IP速率
+            localRateLimitComponent.release(ipRateLimitKey);
+        }
+        if (code == 1) {
+            // redis中已经在黑名单中，不知道具体的过期时间，本地最多缓存ttl的时间
+            this.cacheBlacklist(clientIp, Long.MAX_VALUE, now);
+        } else if (code == 4 && ipRate.isOpenBlacklist()) {
+            this.cacheBlacklist(clientIp, now + blacklistMillis, now);
+        } else {
+            this.cache(this.cleanCache, clientIp, now + this.localCacheMillis(), now);
+        }
+        return switch (code) {
+            case 0 -> null;
+            case 2 -> localRetBO;
+            case 5 -> TakeshiCode.SIGN_ERROR;
+            case 6 -> endpointPolicy.getRepeatRetBO();
+            // 1：黑名单中的IP，3：nonce重复使用，4：超过IP速率
+            default -> TakeshiCode.RATE_LIMIT;
+        };
+    }
+
+    /**
+     * IP速率限制的key，redis模式下lua脚本计数和local，hybrid模式下的本地令牌桶与租借配额都使用这个key<br/>
+     * 接口通过RepeatSubmit单独设置了IP速率时每个接口单独限制
+     *
+     * @param endpointPolicy 接口的安全策略
+     * @param clientIp       请求的IP
+     * @return key
+     */
+    private static String ipRateLimitKey(EndpointPolicy endpointPolicy, String clientIp) {
+        return TakeshiRedisKeyEnum.IP_RATE_LIMIT.projectKey(endpointPolicy.isIpOverwritten() ? clientIp + SEPARATOR + endpointPolicy.getMethodName() : clientIp);
+    }
+
+    /**
+     * 将IP加入黑名单到当天结束时间（例如：2023-04-23 23:59:59），并通知所有节点
+     *
+     * @param ipBlackInfoBO 黑名单信息
+     */
+    public void addBlacklist(IpBlackInfoBO ipBlackInfoBO) {
+        String clientIp = ipBlackInfoBO.getClientIp();
+        ZonedDateTime dateTime = ZonedDateTime.now();
+        long expireAt = System.currentTimeMillis() + Duration.between(dateTime, dateTime.with(LocalTime.MAX)).toMillis();
+        redisComponent.saveToMidnight(TakeshiRedisKeyEnum.IP_BLACKLIST.projectKey(clientIp), GsonUtil.toJson(ipBlackInfoBO));
+        this.cacheBlacklist(clientIp, expireAt, System.currentTimeMillis());
+        this.publish(blacklistMessage(ADD, clientIp, expireAt));
+    }
+
+    /**
+     * 将IP移出黑名单，并通知所有节点
+     *
+     * @param clientIp IP
+     */
+    public void removeBlacklist(String clientIp) {
+        redisComponent.delete(TakeshiRedisKeyEnum.IP_BLACKLIST.projectKey(clientIp));
+        this.publish(blacklistMessage(REMOVE, clientIp, 0));
+    }
+
+    /**
+     * 处理IP加入或移出黑名单的广播
+     *
+     * @param message 格式：+|过期时间|IP 或者 -|0|IP
+     */
+    private void onBlacklistMessage(String message) {
+        List<String> parts = StrUtil.split(message, SEPARATOR, 3);
+        if (parts.size() != 3) {
+            log.warn("RateLimitComponent.onBlacklistMessage --> invalid message: {}", message);
+            return;
+        }
+        String clientIp = parts.get(2);
+        if (ADD.equals(parts.get(0))) {
+            long expireAt = NumberUtil.parseLong(parts.get(1), 0L);
+            this.cacheBlacklist(clientIp, expireAt, System.currentTimeMillis());
+        } else {
+            this.blacklistCache.remove(clientIp);
+        }
+    }
+
+    private void publish(String message) {
+        if (this.localCacheMillis() > 0) {
+            redisComponent.redisTemplate().convertAndSend(TakeshiRedisKeyEnum.IP_BLACKLIST_TOPIC.projectKey(), message);
+        }
+    }
+
+    private static String blacklistMessage(String operation, String clientIp, long expireAt) {
+        return operation + SEPARATOR + expireAt + SEPARATOR + clientIp;
+    }
+
+    /**
+     * 本地缓存黑名单中的IP，最多缓存ttl的时间，避免redis中直接删除的黑名单一直不生效
+     *
+     * @param clientIp IP
+     * @param expireAt 黑名单的过期时间
+     * @param now      当前时间
+     */
+    private void cacheBlacklist(String clientIp, long expireAt, long now) {
+        this.cleanCache.remove(clientIp);
+        this.cache(this.blacklistCache, clientIp, Math.min(expireAt, now + this.localCacheMillis()), now);
+    }
+
+    private void cache(Map<String, Long> cache, String clientIp, long expireAt, long now) {
+        if (expireAt <= now) {
+            return;
+        }
+        if (cache.size() >= rateLimitProperties.getIpCache().getCapacity()) {
+            // 超过容量时清空，避免大量不同的IP占用过多内存
+            cache.clear();
+        }
+        cache.put(clientIp, expireAt);
+    }
+
+    private boolean cached(Map<String, Long> cache, String clientIp, long now) {
+        Long expireAt = cache.get(clientIp);
+        if (expireAt == null) {
+            return false;
+        }
+        if (expireAt <= now) {
+            cache.remove(clientIp, expireAt);
+            return false;
+        }
+        return true;
+    }
+
+    private long localCacheMillis() {
+        return rateLimitProperties.getIpCache().getTtl().toMillis();
+    }
+
+}
@@ -9,6 +9,7 @@ import org.springframework.data.domain.Range;
 import org.springframework.data.geo.*;
 import org.springframework.data.redis.connection.RedisGeoCommands;
 import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
 import java.time.*;
@@ -1157,6 +1158,19 @@ public class RedisComponent {
         return this.boundGeoOps(key).hash(members);
     }
 
+    /**
+     * 执行lua脚本
+     *
+     * @param script 脚本
+     * @param keys   脚本中用到的key
+     * @param args   脚本参数
+     * @param <T>    T
+     * @return 脚本的返回值
+     */
+    public <T> T execute(RedisScript<T> script, List<String> keys, String... args) {
+        return stringRedisTemplate.execute(script, keys, (Object[]) args);
+    }
+
     /*--------------------------------------------StringRedisTemplate end---------------------------------------------*/
 
 
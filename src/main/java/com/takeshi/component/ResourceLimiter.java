@@ -0,0 +1,120 @@
+package com.takeshi.component;
+
+import com.takeshi.config.properties.ExecutorProperties;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.jdbc.metadata.CompositeDataSourcePoolMetadataProvider;
+import org.springframework.boot.jdbc.metadata.DataSourcePoolMetadata;
+import org.springframework.boot.jdbc.metadata.DataSourcePoolMetadataProvider;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 按资源限制同时执行的数量<br/>
+ * 虚拟线程没有数量限制，大量的虚拟线程同时访问数据库或redis时会在连接池上排队直到获取连接超时，
+ * 使用信号量把同时访问的数量限制在连接池大小以内，超出的虚拟线程在信号量上挂起，不占用平台线程<br/>
+ * takeshi.executor.mode=VIRTUAL时MyBatis在事务外执行的SQL由{@link com.takeshi.mybatisplus.ResourceLimitInterceptor}在db的限制内执行，
+ * IP速率的配额租借在redis的限制内执行；业务代码中其他阻塞访问数据库的地方可以通过call(ResourceLimiter.DB, ...)加入同一个限制
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+@Component
+public class ResourceLimiter {
+
+    /**
+     * 数据库
+     */
+    public static final String DB = "db";
+
+    /**
+     * redis
+     */
+    public static final String REDIS = "redis";
+
+    /**
+     * 没有配置redis时的默认值，与Redisson默认的连接池大小一致
+     */
+    private static final int DEFAULT_REDIS_LIMIT = 64;
+
+    private final Map<String, Semaphore> semaphores = new ConcurrentHashMap<>();
+
+    /**
+     * 构造函数
+     *
+     * @param executorProperties executorProperties
+     * @param dataSourceProvider dataSourceProvider
+     * @param metadataProviders  连接池信息，由Spring Boot根据使用的连接池（Hikari，Tomcat，DBCP2等）提供
+     */
+    public ResourceLimiter(ExecutorProperties executorProperties, ObjectProvider<DataSource> dataSourceProvider,
+                           ObjectProvider<DataSourcePoolMetadataProvider> metadataProviders) {
+        executorProperties.getResourceLimits().forEach((resource, limit) -> this.semaphores.put(resource, new Semaphore(limit)));
+        DataSource dataSource = dataSourceProvider.getIfUnique();
+        if (!this.semaphores.containsKey(DB) && dataSource != null) {
+            // 不直接依赖具体的连接池，无法获取最大连接数时需要通过takeshi.executor.resource-limits.db配置
+            DataSourcePoolMetadata metadata = new CompositeDataSourcePoolMetadataProvider(metadataProviders.orderedStream().toList())
+                    .getDataSourcePoolMetadata(dataSource);
+            Integer max = metadata == null ? null : metadata.getMax();
+            if (max != null && max > 0) {
+                this.semaphores.put(DB, new Semaphore(max));
+            }
+        }
+        this.semaphores.putIfAbsent(REDIS, new Semaphore(DEFAULT_REDIS_LIMIT));
+        log.info("ResourceLimiter --> resource limits: {}", this.semaphores.entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue().availablePermits())
+                .toList());
+    }
+
+    /**
+     * 在资源的限制内执行，没有配置限制的资源直接执行
+     *
+     * @param resource 资源名称
+     * @param callable 要执行的方法
+     * @param <T>      T
+     * @return 执行结果
+     */
+    @SneakyThrows
+    public <T> T call(String resource, Callable<T> callable) {
+        Semaphore semaphore = this.semaphores.get(resource);
+        if (semaphore == null) {
+            return callable.call();
+        }
+        semaphore.acquire();
+        try {
+            return callable.call();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * 在资源的限制内执行，没有配置限制的资源直接执行
+     *
+     * @param resource 资源名称
+     * @param runnable 要执行的方法
+     */
+    public void run(String resource, Runnable runnable) {
+        this.call(resource, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * 资源当前可用的数量
+     *
+     * @param resource 资源名称
+     * @return 可用的数量，没有配置限制的资源返回-1
+     */
+    public int availablePermits(String resource) {
+        Semaphore semaphore = this.semaphores.get(resource);
+        return semaphore == null ? -1 : semaphore.availablePermits();
+    }
+
+}
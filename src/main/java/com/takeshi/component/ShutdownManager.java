@@ -1,51 +1,140 @@
 package com.takeshi.component;
 
 import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
 import com.amazonaws.services.s3.transfer.TransferManager;
+import com.google.firebase.FirebaseApp;
 import com.takeshi.config.StaticConfig;
+import com.takeshi.enums.ShutdownPhaseEnum;
 import com.takeshi.util.AmazonS3Util;
-import com.takeshi.util.TakeshiThreadUtil;
+import com.takeshi.util.FirebaseUtil;
 import jakarta.annotation.PreDestroy;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * 确保应用退出时关闭一些东西
+ * 确保应用退出时关闭一些东西<br/>
+ * 在Web服务器优雅关闭（不再接收请求并等待进行中的请求）之后执行，按阶段关闭所有的{@link ShutdownParticipant}：
+ * 先让所有子系统停止接收新任务，然后依次执行{@link ShutdownPhaseEnum}的每个阶段，
+ * 所有阶段加起来最多等待takeshi.max-executor-close-timeout秒，每个阶段到自己的截止时间后放弃剩余的任务；
+ * 最后打印每个子系统的耗时和放弃的任务数
  *
  * @author 七濑武【Nanase Takeshi】
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class ShutdownManager {
 
-    private final ScheduledExecutorService scheduledExecutorService;
-    private final RedissonClient redissonClient;
+    private final List<ShutdownParticipant> participants;
+
+    /**
+     * 构造函数
+     *
+     * @param scheduledExecutorService scheduledExecutorService
+     * @param threadPoolTaskExecutor   threadPoolTaskExecutor
+     * @param redissonClient           redissonClient
+     * @param participants             其他实现了ShutdownParticipant的Bean
+     */
+    public ShutdownManager(@Qualifier("scheduledExecutorService") ScheduledExecutorService scheduledExecutorService,
+                           @Qualifier("threadPoolTaskExecutor") ThreadPoolTaskExecutor threadPoolTaskExecutor,
+                           RedissonClient redissonClient,
+                           List<ShutdownParticipant> participants) {
+        List<ShutdownParticipant> list = new ArrayList<>(participants);
+        list.add(ShutdownParticipant.of("scheduled-executor", ShutdownPhaseEnum.DRAIN, scheduledExecutorService));
+        list.add(ShutdownParticipant.of("task-executor", ShutdownPhaseEnum.DRAIN, threadPoolTaskExecutor.getThreadPoolExecutor()));
+        // S3的上传下载在隔离执行器中执行，DRAIN阶段已经等待进行中的传输完成，这里只释放资源，没有使用过时不会为了关闭而初始化
+        list.add(ShutdownParticipant.of("s3-transfer-manager", ShutdownPhaseEnum.CLOSE, () -> {
+            TransferManager transferManager = AmazonS3Util.transferManagerHolder().getIfReady();
+            if (ObjUtil.isNotNull(transferManager)) {
+                transferManager.shutdownNow();
+            }
+        }));
+        list.add(ShutdownParticipant.of("firebase-app", ShutdownPhaseEnum.CLOSE, () -> {
+            FirebaseApp firebaseApp = FirebaseUtil.firebaseAppHolder().getIfReady();
+            if (ObjUtil.isNotNull(firebaseApp)) {
+                firebaseApp.delete();
+            }
+        }));
+        if (ObjUtil.isNotNull(redissonClient)) {
+            list.add(ShutdownParticipant.of("redisson", ShutdownPhaseEnum.CLOSE, redissonClient::shutdown));
+        }
+        list.sort(Comparator.comparing(ShutdownParticipant::shutdownPhase));
+        this.participants = List.copyOf(list);
+    }
 
     /**
      * destroy
      */
     @PreDestroy
     public void destroy() {
-        try {
-            log.info("Close the background task in the task thread pool...");
-            TakeshiThreadUtil.shutdownAndAwaitTermination(scheduledExecutorService, StaticConfig.takeshiProperties.getMaxExecutorCloseTimeout());
-            if (ObjUtil.isNotNull(redissonClient)) {
-                log.info("Close the Redisson client connection...");
-                redissonClient.shutdown();
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(StaticConfig.takeshiProperties.getMaxExecutorCloseTimeout());
+        long start = System.nanoTime();
+        log.info("ShutdownManager.destroy --> stop accepting new tasks...");
+        for (ShutdownParticipant participant : this.participants) {
+            try {
+                participant.stopAccepting();
+            } catch (Exception e) {
+                log.error("ShutdownManager.destroy --> {} stop accepting failed, e: ", participant.shutdownName(), e);
             }
-            // 关闭 TransferManager，释放资源
-            TransferManager transferManager = AmazonS3Util.transferManager;
-            if (ObjUtil.isNotNull(transferManager)) {
-                transferManager.shutdownNow();
+        }
+        List<ParticipantResult> results = new ArrayList<>(this.participants.size());
+        for (ShutdownPhaseEnum phase : ShutdownPhaseEnum.values()) {
+            // 截止时间从开始关闭算起，不会因为阶段数量而延长整体的关闭时间
+            long deadlineNanos = start + timeoutNanos / 100 * phase.getDeadlinePercent();
+            for (ShutdownParticipant participant : this.participants) {
+                if (participant.shutdownPhase() != phase) {
+                    continue;
+                }
+                long participantStart = System.nanoTime();
+                long dropped;
+                boolean successful = true;
+                try {
+                    dropped = participant.drain(deadlineNanos);
+                } catch (Exception e) {
+                    log.error("ShutdownManager.destroy --> {} shutdown failed, e: ", participant.shutdownName(), e);
+                    dropped = 0;
+                    successful = false;
+                }
+                results.add(new ParticipantResult(phase, participant.shutdownName(), System.nanoTime() - participantStart, dropped, successful));
             }
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
         }
+        StringJoiner joiner = new StringJoiner(System.lineSeparator());
+        long totalDropped = 0;
+        for (ParticipantResult item : results) {
+            totalDropped += item.dropped();
+            joiner.add(StrUtil.format("  {} {} : took {}ms, dropped {}{}", item.phase(), item.name(),
+                    Duration.ofNanos(item.durationNanos()).toMillis(), item.dropped(), item.successful() ? "" : " (failed)"));
+        }
+        String message = StrUtil.format("ShutdownManager.destroy --> shutdown finished in {}ms, dropped {}:{}{}",
+                Duration.ofNanos(System.nanoTime() - start).toMillis(), totalDropped, System.lineSeparator(), joiner);
+        if (totalDropped > 0) {
+            log.warn(message);
+        } else {
+            log.info(message);
+        }
+    }
+
+    /**
+     * 子系统的关闭结果
+     *
+     * @param phase         阶段
+     * @param name          名称
+     * @param durationNanos 耗时
+     * @param dropped       放弃的任务数
+     * @param successful    是否成功
+     */
+    private record ParticipantResult(ShutdownPhaseEnum phase, String name, long durationNanos, long dropped, boolean successful) {
     }
 
-}
\ No newline at end of file
+}
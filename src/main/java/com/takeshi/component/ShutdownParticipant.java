@@ -0,0 +1,122 @@
+package com.takeshi.component;
+
+import com.takeshi.enums.ShutdownPhaseEnum;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 参与应用关闭的子系统，实现此接口的Bean会由{@link ShutdownManager}按阶段关闭
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public interface ShutdownParticipant {
+
+    /**
+     * 名称，用于记录关闭耗时
+     *
+     * @return 名称
+     */
+    String shutdownName();
+
+    /**
+     * 在哪个阶段关闭
+     *
+     * @return ShutdownPhaseEnum
+     */
+    ShutdownPhaseEnum shutdownPhase();
+
+    /**
+     * 停止接收新任务，所有子系统在第一个阶段之前调用，不能阻塞
+     */
+    default void stopAccepting() {
+    }
+
+    /**
+     * 等待已经接收的任务完成，超过截止时间时放弃剩余的任务
+     *
+     * @param deadlineNanos 截止时间，System.nanoTime()
+     * @return 放弃的任务数（包括被中断的任务）
+     */
+    long drain(long deadlineNanos);
+
+    /**
+     * 距离截止时间剩余的纳秒数
+     *
+     * @param deadlineNanos 截止时间，System.nanoTime()
+     * @return 剩余的纳秒数，已经过了截止时间时为0
+     */
+    static long remainingNanos(long deadlineNanos) {
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * 线程池：停止接收新任务，等待已经提交的任务执行完成，超过截止时间时中断正在执行的任务并放弃排队的任务
+     *
+     * @param name            名称
+     * @param phase           阶段
+     * @param executorService 线程池
+     * @return ShutdownParticipant
+     */
+    static ShutdownParticipant of(String name, ShutdownPhaseEnum phase, ExecutorService executorService) {
+        return new ShutdownParticipant() {
+            @Override
+            public String shutdownName() {
+                return name;
+            }
+
+            @Override
+            public ShutdownPhaseEnum shutdownPhase() {
+                return phase;
+            }
+
+            @Override
+            public void stopAccepting() {
+                executorService.shutdown();
+            }
+
+            @Override
+            public long drain(long deadlineNanos) {
+                try {
+                    if (executorService.awaitTermination(remainingNanos(deadlineNanos), TimeUnit.NANOSECONDS)) {
+                        return 0;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                int active = executorService instanceof ThreadPoolExecutor threadPoolExecutor ? threadPoolExecutor.getActiveCount() : 0;
+                return executorService.shutdownNow().size() + active;
+            }
+        };
+    }
+
+    /**
+     * 只需要关闭，没有需要等待的任务
+     *
+     * @param name  名称
+     * @param phase 阶段
+     * @param close 关闭的方法
+     * @return ShutdownParticipant
+     */
+    static ShutdownParticipant of(String name, ShutdownPhaseEnum phase, Runnable close) {
+        return new ShutdownParticipant() {
+            @Override
+            public String shutdownName() {
+                return name;
+            }
+
+            @Override
+            public ShutdownPhaseEnum shutdownPhase() {
+                return phase;
+            }
+
+            @Override
+            public long drain(long deadlineNanos) {
+                close.run();
+                return 0;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.takeshi.component;
+
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.StrUtil;
+import com.takeshi.config.StaticConfig;
+import com.takeshi.config.properties.StartupProperties;
+import com.takeshi.config.properties.TakeshiProperties;
+import com.takeshi.util.AmazonS3Util;
+import com.takeshi.util.FirebaseUtil;
+import com.takeshi.util.LazyHolder;
+import com.takeshi.util.MandrillUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 启动编排<br/>
+ * 启动时耗时的初始化任务（TakeshiCode响应状态码的扫描，第三方客户端的预热）提交到这里在后台并行执行，
+ * 不再阻塞Spring容器创建其他Bean，需要结果的地方在开始处理请求前等待对应的任务完成；
+ * 应用就绪时打印每个阶段的耗时
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+@Component
+public class StartupOrchestrator implements SmartInitializingSingleton {
+
+    private final StartupProperties startupProperties;
+
+    private final ExecutorService executorService;
+
+    /**
+     * 创建时的时间，各阶段的开始时间相对于它计算
+     */
+    private final long createdNanos = System.nanoTime();
+
+    private final Queue<PhaseTiming> timings = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 构造函数
+     *
+     * @param startupProperties startupProperties
+     */
+    public StartupOrchestrator(StartupProperties startupProperties) {
+        this.startupProperties = startupProperties;
+        this.executorService = Executors.newFixedThreadPool(startupProperties.getParallelism(), ThreadUtil.newNamedThreadFactory("startup-", true));
+    }
+
+    /**
+     * 在后台执行一个启动阶段
+     *
+     * @param phase 阶段名称
+     * @param task  任务
+     * @param <T>   T
+     * @return CompletableFuture
+     */
+    public <T> CompletableFuture<T> submit(String phase, Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            boolean successful = false;
+            try {
+                T result = task.call();
+                successful = true;
+                return result;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                timings.add(new PhaseTiming(phase, Thread.currentThread().getName(), start - createdNanos, System.nanoTime() - start, successful));
+            }
+        }, executorService);
+    }
+
+    /**
+     * 等待启动阶段完成，失败时抛出阶段本身的异常
+     *
+     * @param future 阶段的CompletableFuture
+     * @param <T>    T
+     * @return 阶段的结果
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 所有单例Bean创建完成后，按配置在后台预热第三方客户端
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!startupProperties.isWarmUpClients()) {
+            return;
+        }
+        TakeshiProperties takeshiProperties = StaticConfig.takeshiProperties;
+        if (StrUtil.isNotBlank(takeshiProperties.getAwsSecrets().getSecretId())) {
+            this.warmUp(AmazonS3Util.transferManagerHolder());
+        }
+        if (resourceExists(takeshiProperties.getFirebase().getJsonFileName())) {
+            this.warmUp(FirebaseUtil.firebaseAppHolder());
+        }
+        if (!StrUtil.isAllBlank(takeshiProperties.getMandrill().getApiKey(), takeshiProperties.getMandrill().getApiKeySecrets())) {
+            this.warmUp(MandrillUtil.clientHolder());
+        }
+    }
+
+    /**
+     * 资源文件是否存在
+     *
+     * @param path 资源路径
+     * @return boolean
+     */
+    private static boolean resourceExists(String path) {
+        if (StrUtil.isBlank(path)) {
+            return false;
+        }
+        InputStream inputStream = ResourceUtil.getStreamSafe(path);
+        IoUtil.close(inputStream);
+        return inputStream != null;
+    }
+
+    /**
+     * 在后台初始化一个第三方客户端，失败时由LazyHolder记录日志，不影响启动
+     *
+     * @param holder holder
+     */
+    private void warmUp(LazyHolder<?> holder) {
+        this.submit("warm-up " + holder.getName(), holder::get);
+    }
+
+    /**
+     * 应用就绪时打印各阶段的耗时，并关闭启动线程池（已提交的预热任务会继续执行完）
+     *
+     * @param event event
+     */
+    @EventListener
+    public void applicationReadyEvent(ApplicationReadyEvent event) {
+        executorService.shutdown();
+        StringJoiner joiner = new StringJoiner(System.lineSeparator());
+        timings.stream()
+                .sorted(Comparator.comparingLong(PhaseTiming::startNanos))
+                .forEach(item -> joiner.add(StrUtil.format("  {} : start +{}ms, took {}ms on {}{}",
+                        item.phase(), Duration.ofNanos(item.startNanos()).toMillis(), Duration.ofNanos(item.durationNanos()).toMillis(),
+                        item.threadName(), item.successful() ? "" : " (failed)")));
+        log.info("StartupOrchestrator.applicationReadyEvent --> application ready in {}ms, background startup phases:{}{}",
+                event.getTimeTaken() == null ? -1 : event.getTimeTaken().toMillis(), System.lineSeparator(), joiner);
+    }
+
+    /**
+     * 启动阶段的耗时
+     *
+     * @param phase         阶段名称
+     * @param threadName    执行的线程
+     * @param startNanos    相对于启动编排创建时的开始时间
+     * @param durationNanos 耗时
+     * @param successful    是否成功
+     */
+    private record PhaseTiming(String phase, String threadName, long startNanos, long durationNanos, boolean successful) {
+    }
+
+}
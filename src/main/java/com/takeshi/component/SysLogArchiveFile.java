@@ -0,0 +1,577 @@
+package com.takeshi.component;
+
+import com.takeshi.pojo.basic.TbSysLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 接口日志归档文件的列式格式<br/>
+ * 文件由多个行组组成，每个行组中每一列单独编码后用Deflate压缩：整数列按差值ZigZag变长编码，重复度高的字符串列使用字典编码（字典和数据分开压缩），
+ * 其它字符串列按长度前缀编码；文件末尾的footer记录每个行组的偏移量和统计信息（log_id，request_time的最小最大值，成功失败的条数），
+ * 查询时先用footer的统计信息和字典跳过不满足条件的行组，再只解压需要的列
+ * <pre>
+ * "TSLA" 版本号(1字节) [行组的列数据...] footer footer长度(int) "TSLA"
+ * </pre>
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public final class SysLogArchiveFile {
+
+    /**
+     * 归档文件的后缀
+     */
+    public static final String SUFFIX = ".tsla";
+
+    private static final byte[] MAGIC = {'T', 'S', 'L', 'A'};
+    private static final byte VERSION = 1;
+
+    /**
+     * 列的编号，log_type是分区字段，不在文件中存储
+     */
+    public static final int LOG_ID = 0;
+    public static final int LOGIN_ID = 1;
+    public static final int CLIENT_IP = 2;
+    public static final int CLIENT_IP_ADDRESS = 3;
+    public static final int USER_AGENT = 4;
+    public static final int HTTP_METHOD = 5;
+    public static final int METHOD_NAME = 6;
+    public static final int REQUEST_URL = 7;
+    public static final int REQUEST_HEADER = 8;
+    public static final int REQUEST_PARAMS = 9;
+    public static final int RESPONSE_DATA = 10;
+    public static final int TRACE_ID = 11;
+    public static final int SUCCESSFUL = 12;
+    public static final int REQUEST_TIME = 13;
+    public static final int COST_TIME = 14;
+    public static final int CREATE_TIME = 15;
+    public static final int UPDATE_TIME = 16;
+
+    /**
+     * 列的数量
+     */
+    public static final int COLUMN_COUNT = 17;
+
+    private static final byte LONG = 1;
+    private static final byte DICTIONARY = 2;
+    private static final byte STRING = 3;
+    private static final byte BOOLEAN = 4;
+
+    private static final byte[] TYPES = {LONG, DICTIONARY, LONG, DICTIONARY, DICTIONARY, DICTIONARY, DICTIONARY, DICTIONARY,
+            STRING, STRING, STRING, STRING, BOOLEAN, LONG, LONG, LONG, LONG};
+
+    private SysLogArchiveFile() {
+    }
+
+    /**
+     * 行组的统计信息和列的位置
+     *
+     * @param rowCount       行数
+     * @param minLogId       最小的log_id
+     * @param maxLogId       最大的log_id
+     * @param minRequestTime 最小的请求时间
+     * @param maxRequestTime 最大的请求时间
+     * @param successCount   成功的条数
+     * @param failCount      失败的条数
+     * @param offsets        每列在文件中的偏移量
+     * @param dictLengths    每列字典压缩后的长度，非字典列为0
+     * @param dataLengths    每列数据压缩后的长度
+     */
+    public record RowGroup(int rowCount, long minLogId, long maxLogId, long minRequestTime, long maxRequestTime,
+                           int successCount, int failCount, long[] offsets, int[] dictLengths, int[] dataLengths) {
+    }
+
+    /**
+     * 归档文件的写入，非线程安全
+     */
+    public static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final int rowGroupSize;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final List<TbSysLog> rows;
+        private final List<RowGroup> rowGroups = new ArrayList<>();
+        private final byte[] buffer = new byte[8192];
+        private long position;
+
+        /**
+         * 构造函数
+         *
+         * @param path         文件路径，文件必须不存在
+         * @param rowGroupSize 每个行组的行数
+         * @throws IOException IOException
+         */
+        public Writer(Path path, int rowGroupSize) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            this.rowGroupSize = rowGroupSize;
+            this.rows = new ArrayList<>(rowGroupSize);
+            this.writeFully(ByteBuffer.wrap(MAGIC));
+            this.writeFully(ByteBuffer.wrap(new byte[]{VERSION}));
+        }
+
+        /**
+         * 追加一行，满一个行组后写入文件
+         *
+         * @param tbSysLog 日志
+         * @throws IOException IOException
+         */
+        public void add(TbSysLog tbSysLog) throws IOException {
+            this.rows.add(tbSysLog);
+            if (this.rows.size() >= this.rowGroupSize) {
+                this.flushRowGroup();
+            }
+        }
+
+        /**
+         * 写入剩余的行和footer，刷到磁盘后关闭
+         *
+         * @throws IOException IOException
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                this.flushRowGroup();
+                ByteArrayOutputStream footer = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(footer);
+                out.writeInt(this.rowGroups.size());
+                for (RowGroup rowGroup : this.rowGroups) {
+                    out.writeInt(rowGroup.rowCount());
+                    out.writeLong(rowGroup.minLogId());
+                    out.writeLong(rowGroup.maxLogId());
+                    out.writeLong(rowGroup.minRequestTime());
+                    out.writeLong(rowGroup.maxRequestTime());
+                    out.writeInt(rowGroup.successCount());
+                    out.writeInt(rowGroup.failCount());
+                    for (int column = 0; column < COLUMN_COUNT; column++) {
+                        out.writeLong(rowGroup.offsets()[column]);
+                        out.writeInt(rowGroup.dictLengths()[column]);
+                        out.writeInt(rowGroup.dataLengths()[column]);
+                    }
+                }
+                out.writeInt(footer.size());
+                out.write(MAGIC);
+                this.writeFully(ByteBuffer.wrap(footer.toByteArray()));
+                this.channel.force(true);
+            } finally {
+                this.deflater.end();
+                this.channel.close();
+            }
+        }
+
+        private void flushRowGroup() throws IOException {
+            if (this.rows.isEmpty()) {
+                return;
+            }
+            long minLogId = Long.MAX_VALUE, maxLogId = Long.MIN_VALUE, minRequestTime = Long.MAX_VALUE, maxRequestTime = Long.MIN_VALUE;
+            int successCount = 0, failCount = 0;
+            for (TbSysLog row : this.rows) {
+                long logId = Objects.requireNonNullElse(row.getLogId(), 0L);
+                long requestTime = Objects.requireNonNullElse(row.getRequestTime(), 0L);
+                minLogId = Math.min(minLogId, logId);
+                maxLogId = Math.max(maxLogId, logId);
+                minRequestTime = Math.min(minRequestTime, requestTime);
+                maxRequestTime = Math.max(maxRequestTime, requestTime);
+                if (Boolean.TRUE.equals(row.getSuccessful())) {
+                    successCount++;
+                } else if (Boolean.FALSE.equals(row.getSuccessful())) {
+                    failCount++;
+                }
+            }
+            long[] offsets = new long[COLUMN_COUNT];
+            int[] dictLengths = new int[COLUMN_COUNT];
+            int[] dataLengths = new int[COLUMN_COUNT];
+            ByteArrayOutputStream dict = new ByteArrayOutputStream();
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                dict.reset();
+                data.reset();
+                switch (TYPES[column]) {
+                    case LONG -> {
+                        long previous = 0;
+                        int nulls = 0;
+                        byte[] bitmap = new byte[(this.rows.size() + 7) >>> 3];
+                        for (int i = 0; i < this.rows.size(); i++) {
+                            Long value = (Long) value(this.rows.get(i), column);
+                            if (value == null) {
+                                bitmap[i >>> 3] |= (byte) (1 << (i & 7));
+                                nulls++;
+                            }
+                        }
+                        writeVarLong(data, nulls);
+                        if (nulls > 0) {
+                            data.write(bitmap);
+                        }
+                        for (TbSysLog row : this.rows) {
+                            Long value = (Long) value(row, column);
+                            if (value != null) {
+                                long delta = value - previous;
+                                writeVarLong(data, delta << 1 ^ delta >> 63);
+                                previous = value;
+                            }
+                        }
+                    }
+                    case DICTIONARY -> {
+                        Map<String, Integer> ids = new HashMap<>();
+                        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+                        for (TbSysLog row : this.rows) {
+                            String value = (String) value(row, column);
+                            if (value == null) {
+                                writeVarLong(data, 0);
+                                continue;
+                            }
+                            Integer id = ids.get(value);
+                            if (id == null) {
+                                id = ids.size();
+                                ids.put(value, id);
+                                writeString(entries, value);
+                            }
+                            writeVarLong(data, id + 1);
+                        }
+                        writeVarLong(dict, ids.size());
+                        dict.writeBytes(entries.toByteArray());
+                    }
+                    case STRING -> {
+                        for (TbSysLog row : this.rows) {
+                            writeString(data, (String) value(row, column));
+                        }
+                    }
+                    default -> {
+                        for (TbSysLog row : this.rows) {
+                            Boolean value = row.getSuccessful();
+                            data.write(value == null ? 0 : value ? 2 : 1);
+                        }
+                    }
+                }
+                offsets[column] = this.position;
+                if (dict.size() > 0) {
+                    dictLengths[column] = this.deflate(dict.toByteArray());
+                }
+                dataLengths[column] = this.deflate(data.toByteArray());
+            }
+            this.rowGroups.add(new RowGroup(this.rows.size(), minLogId, maxLogId, minRequestTime, maxRequestTime,
+                    successCount, failCount, offsets, dictLengths, dataLengths));
+            this.rows.clear();
+        }
+
+        private int deflate(byte[] bytes) throws IOException {
+            this.deflater.reset();
+            this.deflater.setInput(bytes);
+            this.deflater.finish();
+            int length = 0;
+            while (!this.deflater.finished()) {
+                int count = this.deflater.deflate(this.buffer);
+                this.writeFully(ByteBuffer.wrap(this.buffer, 0, count));
+                length += count;
+            }
+            return length;
+        }
+
+        private void writeFully(ByteBuffer byteBuffer) throws IOException {
+            while (byteBuffer.hasRemaining()) {
+                this.position += this.channel.write(byteBuffer);
+            }
+        }
+
+    }
+
+    /**
+     * 归档文件的读取，非线程安全
+     */
+    public static final class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final List<RowGroup> rowGroups;
+        private final Inflater inflater = new Inflater();
+
+        /**
+         * 构造函数，只读取footer
+         *
+         * @param path 文件路径
+         * @throws IOException IOException
+         */
+        public Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = this.channel.size();
+                if (size < MAGIC.length + 9) {
+                    throw new IOException("Not a sys log archive file: " + path);
+                }
+                ByteBuffer tail = this.read(size - 8, 8);
+                if (!Arrays.equals(Arrays.copyOfRange(tail.array(), 4, 8), MAGIC)) {
+                    throw new IOException("Not a sys log archive file: " + path);
+                }
+                int footerLength = tail.getInt(0);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(this.read(size - 8 - footerLength, footerLength).array()));
+                int count = in.readInt();
+                List<RowGroup> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int rowCount = in.readInt();
+                    long minLogId = in.readLong();
+                    long maxLogId = in.readLong();
+                    long minRequestTime = in.readLong();
+                    long maxRequestTime = in.readLong();
+                    int successCount = in.readInt();
+                    int failCount = in.readInt();
+                    long[] offsets = new long[COLUMN_COUNT];
+                    int[] dictLengths = new int[COLUMN_COUNT];
+                    int[] dataLengths = new int[COLUMN_COUNT];
+                    for (int column = 0; column < COLUMN_COUNT; column++) {
+                        offsets[column] = in.readLong();
+                        dictLengths[column] = in.readInt();
+                        dataLengths[column] = in.readInt();
+                    }
+                    list.add(new RowGroup(rowCount, minLogId, maxLogId, minRequestTime, maxRequestTime, successCount, failCount,
+                            offsets, dictLengths, dataLengths));
+                }
+                this.rowGroups = List.copyOf(list);
+            } catch (IOException | RuntimeException e) {
+                this.close();
+                throw e;
+            }
+        }
+
+        /**
+         * 获取所有的行组
+         *
+         * @return 行组
+         */
+        public List<RowGroup> getRowGroups() {
+            return this.rowGroups;
+        }
+
+        /**
+         * 只读取字典编码列的字典
+         *
+         * @param rowGroup 行组
+         * @param column   列
+         * @return 字典
+         * @throws IOException IOException
+         */
+        public String[] readDictionary(RowGroup rowGroup, int column) throws IOException {
+            if (rowGroup.dictLengths()[column] == 0) {
+                return new String[0];
+            }
+            ByteBuffer in = this.inflate(rowGroup.offsets()[column], rowGroup.dictLengths()[column]);
+            String[] dictionary = new String[(int) readVarLong(in)];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString(in);
+            }
+            return dictionary;
+        }
+
+        /**
+         * 读取一列的所有值
+         *
+         * @param rowGroup 行组
+         * @param column   列
+         * @return Long[]，String[]或Boolean[]
+         * @throws IOException IOException
+         */
+        public Object[] readColumn(RowGroup rowGroup, int column) throws IOException {
+            int rowCount = rowGroup.rowCount();
+            ByteBuffer in = this.inflate(rowGroup.offsets()[column] + rowGroup.dictLengths()[column], rowGroup.dataLengths()[column]);
+            switch (TYPES[column]) {
+                case LONG -> {
+                    Long[] values = new Long[rowCount];
+                    int nulls = (int) readVarLong(in);
+                    byte[] bitmap = null;
+                    if (nulls > 0) {
+                        bitmap = new byte[(rowCount + 7) >>> 3];
+                        in.get(bitmap);
+                    }
+                    long previous = 0;
+                    for (int i = 0; i < rowCount; i++) {
+                        if (bitmap == null || (bitmap[i >>> 3] & 1 << (i & 7)) == 0) {
+                            long zigzag = readVarLong(in);
+                            previous += zigzag >>> 1 ^ -(zigzag & 1);
+                            values[i] = previous;
+                        }
+                    }
+                    return values;
+                }
+                case DICTIONARY -> {
+                    String[] dictionary = this.readDictionary(rowGroup, column);
+                    String[] values = new String[rowCount];
+                    for (int i = 0; i < rowCount; i++) {
+                        int id = (int) readVarLong(in);
+                        values[i] = id == 0 ? null : dictionary[id - 1];
+                    }
+                    return values;
+                }
+                case STRING -> {
+                    String[] values = new String[rowCount];
+                    for (int i = 0; i < rowCount; i++) {
+                        values[i] = readString(in);
+                    }
+                    return values;
+                }
+                default -> {
+                    Boolean[] values = new Boolean[rowCount];
+                    for (int i = 0; i < rowCount; i++) {
+                        byte b = in.get();
+                        values[i] = b == 0 ? null : b == 2;
+                    }
+                    return values;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.inflater.end();
+            this.channel.close();
+        }
+
+        private ByteBuffer inflate(long offset, int length) throws IOException {
+            byte[] compressed = this.read(offset, length).array();
+            this.inflater.reset();
+            this.inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length * 4));
+            byte[] buffer = new byte[8192];
+            try {
+                while (!this.inflater.finished()) {
+                    int count = this.inflater.inflate(buffer);
+                    if (count == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary())) {
+                        throw new IOException("Truncated sys log archive column");
+                    }
+                    out.write(buffer, 0, count);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+
+        private ByteBuffer read(long offset, int length) throws IOException {
+            ByteBuffer byteBuffer = ByteBuffer.allocate(length);
+            while (byteBuffer.hasRemaining()) {
+                if (this.channel.read(byteBuffer, offset + byteBuffer.position()) < 0) {
+                    throw new IOException("Unexpected end of sys log archive file");
+                }
+            }
+            return byteBuffer.flip();
+        }
+
+    }
+
+    /**
+     * 获取TbSysLog对应列的值
+     *
+     * @param tbSysLog 日志
+     * @param column   列
+     * @return 值
+     */
+    private static Object value(TbSysLog tbSysLog, int column) {
+        return switch (column) {
+            case LOG_ID -> tbSysLog.getLogId();
+            case LOGIN_ID -> tbSysLog.getLoginId() == null ? null : tbSysLog.getLoginId().toString();
+            case CLIENT_IP -> tbSysLog.getClientIp();
+            case CLIENT_IP_ADDRESS -> tbSysLog.getClientIpAddress();
+            case USER_AGENT -> tbSysLog.getUserAgent();
+            case HTTP_METHOD -> tbSysLog.getHttpMethod();
+            case METHOD_NAME -> tbSysLog.getMethodName();
+            case REQUEST_URL -> tbSysLog.getRequestUrl();
+            case REQUEST_HEADER -> tbSysLog.getRequestHeader();
+            case REQUEST_PARAMS -> tbSysLog.getRequestParams();
+            case RESPONSE_DATA -> tbSysLog.getResponseData();
+            case TRACE_ID -> tbSysLog.getTraceId();
+            case SUCCESSFUL -> tbSysLog.getSuccessful();
+            case REQUEST_TIME -> tbSysLog.getRequestTime();
+            case COST_TIME -> tbSysLog.getCostTime();
+            case CREATE_TIME -> tbSysLog.getCreateTime();
+            case UPDATE_TIME -> tbSysLog.getUpdateTime();
+            default -> throw new IllegalArgumentException("Unknown column: " + column);
+        };
+    }
+
+    /**
+     * 将读取的列值设置到TbSysLog
+     *
+     * @param tbSysLog 日志
+     * @param column   列
+     * @param value    值
+     */
+    public static void setValue(TbSysLog tbSysLog, int column, Object value) {
+        switch (column) {
+            case LOG_ID -> tbSysLog.setLogId((Long) value);
+            case LOGIN_ID -> tbSysLog.setLoginId(value);
+            case CLIENT_IP -> tbSysLog.setClientIp((Long) value);
+            case CLIENT_IP_ADDRESS -> tbSysLog.setClientIpAddress((String) value);
+            case USER_AGENT -> tbSysLog.setUserAgent((String) value);
+            case HTTP_METHOD -> tbSysLog.setHttpMethod((String) value);
+            case METHOD_NAME -> tbSysLog.setMethodName((String) value);
+            case REQUEST_URL -> tbSysLog.setRequestUrl((String) value);
+            case REQUEST_HEADER -> tbSysLog.setRequestHeader((String) value);
+            case REQUEST_PARAMS -> tbSysLog.setRequestParams((String) value);
+            case RESPONSE_DATA -> tbSysLog.setResponseData((String) value);
+            case TRACE_ID -> tbSysLog.setTraceId((String) value);
+            case SUCCESSFUL -> tbSysLog.setSuccessful((Boolean) value);
+            case REQUEST_TIME -> tbSysLog.setRequestTime((Long) value);
+            case COST_TIME -> tbSysLog.setCostTime((Long) value);
+            case CREATE_TIME -> tbSysLog.setCreateTime((Long) value);
+            case UPDATE_TIME -> tbSysLog.setUpdateTime((Long) value);
+            default -> throw new IllegalArgumentException("Unknown column: " + column);
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * 字符串按长度+1的变长整数前缀编码，null写入0
+     */
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length - 1, StandardCharsets.UTF_8);
+        in.position(in.position() + length - 1);
+        return value;
+    }
+
+}
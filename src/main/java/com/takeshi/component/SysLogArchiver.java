@@ -0,0 +1,521 @@
+package com.takeshi.component;
+
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.takeshi.config.properties.LogProperties;
+import com.takeshi.enums.TakeshiRedisKeyEnum;
+import com.takeshi.pojo.basic.TbSysLog;
+import com.takeshi.pojo.bo.SysLogArchiveQueryBO;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
+
+/**
+ * 接口日志（TbSysLog）的归档和查询<br/>
+ * 定时将数据库中已经结束的日期的日志按天和日志类型写入本地的列式压缩文件{@link SysLogArchiveFile}，写入并刷到磁盘后再按文件中的log_id从数据库删除：
+ * <pre>
+ * {takeshi.log.archive.dir}/day=2023-06-29/log_type=SELECT/part-{第一条log_id}-{最后一条log_id}.tsla
+ * </pre>
+ * 查询时先按目录跳过不在时间范围内的日期和不需要的日志类型，再用文件中行组的统计信息和字典跳过行组，
+ * 最后只解码过滤条件的列，有满足条件的行时才解码其它的列<br/>
+ * 查询只提供了{@link #query(SysLogArchiveQueryBO)}方法，没有对外的接口，需要时由项目自己的管理接口调用
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+@Component
+public class SysLogArchiver {
+
+    private static final String DAY_PREFIX = "day=";
+    private static final String LOG_TYPE_PREFIX = "log_type=";
+    private static final String PART_PREFIX = "part-";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * 每条DELETE语句最多删除的条数
+     */
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    private static final String MIN_REQUEST_TIME_SQL = "SELECT MIN(request_time) FROM tb_sys_log";
+
+    private static final String EXISTS_SQL = "SELECT 1 FROM tb_sys_log WHERE request_time >= ? AND request_time < ? LIMIT 1";
+
+    private static final String SELECT_SQL = "SELECT log_id, log_type, login_id, client_ip, client_ip_address, user_agent, http_method, method_name, "
+            + "request_url, request_header, request_params, response_data, trace_id, successful, request_time, cost_time, create_time, update_time "
+            + "FROM tb_sys_log WHERE request_time >= ? AND request_time < ? AND log_id > ? ORDER BY log_id LIMIT ?";
+
+    private static final String DELETE_SQL = deleteSql(DELETE_BATCH_SIZE);
+
+    private final DataSource dataSource;
+    private final RedisComponent redisComponent;
+    private final LogProperties.Archive archive;
+    private final Path dir;
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    /**
+     * 构造函数
+     *
+     * @param dataSource     dataSource
+     * @param redisComponent redisComponent
+     * @param logProperties  logProperties
+     */
+    public SysLogArchiver(DataSource dataSource, RedisComponent redisComponent, LogProperties logProperties) {
+        this.dataSource = dataSource;
+        this.redisComponent = redisComponent;
+        this.archive = logProperties.getArchive();
+        this.dir = Paths.get(this.archive.getDir());
+    }
+
+    /**
+     * 定时归档，多个实例时只有拿到锁的实例执行
+     */
+    @Scheduled(cron = "${takeshi.log.archive.cron:0 30 2 * * ?}")
+    public void scheduledArchive() {
+        if (!this.archive.isEnabled()) {
+            return;
+        }
+        RLock lock = this.redisComponent.getLock(TakeshiRedisKeyEnum.LOCK_SYS_LOG_ARCHIVE.projectKey());
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            int count = this.archive();
+            log.info("SysLogArchiver.scheduledArchive --> {} sys logs archived", count);
+        } catch (Exception e) {
+            log.error("SysLogArchiver.scheduledArchive --> e: ", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 归档数据库中takeshi.log.archive.retain-days之前的日志
+     *
+     * @return 归档的条数
+     * @throws SQLException SQLException
+     * @throws IOException  IOException
+     */
+    public int archive() throws SQLException, IOException {
+        Long minRequestTime;
+        try (Connection connection = this.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(MIN_REQUEST_TIME_SQL)) {
+            minRequestTime = resultSet.next() ? getLong(resultSet, 1) : null;
+        }
+        if (ObjUtil.isNull(minRequestTime)) {
+            return 0;
+        }
+        LocalDate cutoff = LocalDate.now(this.zoneId).minusDays(this.archive.getRetainDays() - 1L);
+        int count = 0;
+        for (LocalDate day = this.toDay(minRequestTime); day.isBefore(cutoff); day = day.plusDays(1)) {
+            count += this.archiveDay(day);
+        }
+        return count;
+    }
+
+    /**
+     * 查询归档的日志，按日期，日志类型，log_id的顺序返回
+     *
+     * @param query 查询条件
+     * @return 日志
+     * @throws IOException IOException
+     */
+    public List<TbSysLog> query(SysLogArchiveQueryBO query) throws IOException {
+        List<TbSysLog> result = new ArrayList<>();
+        if (query.getLimit() <= 0 || !Files.isDirectory(this.dir)) {
+            return result;
+        }
+        LocalDate from = ObjUtil.isNull(query.getStartTime()) ? null : this.toDay(query.getStartTime());
+        LocalDate to = ObjUtil.isNull(query.getEndTime()) ? null : this.toDay(query.getEndTime() - 1);
+        for (Path dayDir : list(this.dir, DAY_PREFIX)) {
+            LocalDate day;
+            try {
+                day = LocalDate.parse(dayDir.getFileName().toString().substring(DAY_PREFIX.length()));
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            if ((from != null && day.isBefore(from)) || (to != null && day.isAfter(to))) {
+                continue;
+            }
+            for (Path logTypeDir : list(dayDir, LOG_TYPE_PREFIX)) {
+                String logType = logTypeDir.getFileName().toString().substring(LOG_TYPE_PREFIX.length());
+                if (query.getLogType() != null && !query.getLogType().equals(logType)) {
+                    continue;
+                }
+                for (Path part : list(logTypeDir, PART_PREFIX)) {
+                    if (part.getFileName().toString().endsWith(SysLogArchiveFile.SUFFIX) && this.scan(part, logType, query, result)) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 扫描一个归档文件
+     *
+     * @return 是否已经达到最多返回的条数
+     */
+    private boolean scan(Path part, String logType, SysLogArchiveQueryBO query, List<TbSysLog> result) throws IOException {
+        Long startTime = query.getStartTime();
+        Long endTime = query.getEndTime();
+        Boolean successful = query.getSuccessful();
+        try (SysLogArchiveFile.Reader reader = new SysLogArchiveFile.Reader(part)) {
+            for (SysLogArchiveFile.RowGroup rowGroup : reader.getRowGroups()) {
+                // 用行组的统计信息和字典跳过整个行组
+                if ((startTime != null && rowGroup.maxRequestTime() < startTime)
+                        || (endTime != null && rowGroup.minRequestTime() >= endTime)
+                        || (successful != null && (successful ? rowGroup.successCount() : rowGroup.failCount()) == 0)
+                        || (query.getLoginId() != null && !ArrayUtil.contains(reader.readDictionary(rowGroup, SysLogArchiveFile.LOGIN_ID), query.getLoginId()))
+                        || (query.getMethodName() != null && !ArrayUtil.contains(reader.readDictionary(rowGroup, SysLogArchiveFile.METHOD_NAME), query.getMethodName()))) {
+                    continue;
+                }
+                // 只解码过滤条件的列
+                Object[][] columns = new Object[SysLogArchiveFile.COLUMN_COUNT][];
+                if (startTime != null || endTime != null) {
+                    columns[SysLogArchiveFile.REQUEST_TIME] = reader.readColumn(rowGroup, SysLogArchiveFile.REQUEST_TIME);
+                }
+                if (query.getLoginId() != null) {
+                    columns[SysLogArchiveFile.LOGIN_ID] = reader.readColumn(rowGroup, SysLogArchiveFile.LOGIN_ID);
+                }
+                if (query.getMethodName() != null) {
+                    columns[SysLogArchiveFile.METHOD_NAME] = reader.readColumn(rowGroup, SysLogArchiveFile.METHOD_NAME);
+                }
+                if (successful != null) {
+                    columns[SysLogArchiveFile.SUCCESSFUL] = reader.readColumn(rowGroup, SysLogArchiveFile.SUCCESSFUL);
+                }
+                int limit = query.getLimit() - result.size();
+                int[] selected = new int[Math.min(limit, rowGroup.rowCount())];
+                int count = 0;
+                for (int i = 0; i < rowGroup.rowCount() && count < selected.length; i++) {
+                    if (matches(columns, i, query)) {
+                        selected[count++] = i;
+                    }
+                }
+                if (count == 0) {
+                    continue;
+                }
+                TbSysLog[] rows = new TbSysLog[count];
+                for (int j = 0; j < count; j++) {
+                    rows[j] = new TbSysLog().setLogType(logType);
+                }
+                for (int column = 0; column < SysLogArchiveFile.COLUMN_COUNT; column++) {
+                    Object[] values = columns[column] != null ? columns[column] : reader.readColumn(rowGroup, column);
+                    for (int j = 0; j < count; j++) {
+                        SysLogArchiveFile.setValue(rows[j], column, values[selected[j]]);
+                    }
+                }
+                result.addAll(Arrays.asList(rows));
+                if (result.size() >= query.getLimit()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(Object[][] columns, int row, SysLogArchiveQueryBO query) {
+        Object[] requestTimes = columns[SysLogArchiveFile.REQUEST_TIME];
+        if (requestTimes != null) {
+            Long requestTime = (Long) requestTimes[row];
+            if (requestTime == null
+                    || (query.getStartTime() != null && requestTime < query.getStartTime())
+                    || (query.getEndTime() != null && requestTime >= query.getEndTime())) {
+                return false;
+            }
+        }
+        return (columns[SysLogArchiveFile.LOGIN_ID] == null || query.getLoginId().equals(columns[SysLogArchiveFile.LOGIN_ID][row]))
+                && (columns[SysLogArchiveFile.METHOD_NAME] == null || query.getMethodName().equals(columns[SysLogArchiveFile.METHOD_NAME][row]))
+                && (columns[SysLogArchiveFile.SUCCESSFUL] == null || query.getSuccessful().equals(columns[SysLogArchiveFile.SUCCESSFUL][row]));
+    }
+
+    /**
+     * 归档一天的日志<br/>
+     * 文件先写入临时文件，全部刷到磁盘并重命名后，只删除文件中的log_id，查询和删除之间才提交的日志（log_id更小）不会被误删；
+     * 上次归档后没有删除成功时，先按已经归档的文件删除，数据库中剩下的都是没有归档过的日志，下次和晚提交的日志一起归档
+     *
+     * @param day 日期
+     * @return 归档的条数
+     */
+    private int archiveDay(LocalDate day) throws SQLException, IOException {
+        long startTime = day.atStartOfDay(this.zoneId).toInstant().toEpochMilli();
+        long endTime = day.plusDays(1).atStartOfDay(this.zoneId).toInstant().toEpochMilli();
+        if (!this.exists(startTime, endTime)) {
+            return 0;
+        }
+        Path dayDir = this.dir.resolve(DAY_PREFIX + day);
+        for (Path part : this.archivedParts(dayDir)) {
+            this.deleteArchived(part);
+        }
+        Map<String, Part> parts = new LinkedHashMap<>();
+        List<Path> published = new ArrayList<>();
+        int count = 0;
+        try {
+            try (Connection connection = this.dataSource.getConnection();
+                 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_SQL)) {
+                long lastLogId = Long.MIN_VALUE;
+                int rows;
+                do {
+                    preparedStatement.setLong(1, startTime);
+                    preparedStatement.setLong(2, endTime);
+                    preparedStatement.setLong(3, lastLogId);
+                    preparedStatement.setInt(4, this.archive.getRowGroupSize());
+                    rows = 0;
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            TbSysLog tbSysLog = toTbSysLog(resultSet);
+                            Part part = parts.get(tbSysLog.getLogType());
+                            if (part == null) {
+                                part = new Part(dayDir.resolve(LOG_TYPE_PREFIX + tbSysLog.getLogType()), tbSysLog.getLogId(), this.archive.getRowGroupSize());
+                                parts.put(tbSysLog.getLogType(), part);
+                            }
+                            part.add(tbSysLog);
+                            lastLogId = tbSysLog.getLogId();
+                            rows++;
+                        }
+                    }
+                    count += rows;
+                } while (rows == this.archive.getRowGroupSize());
+            }
+            // 全部刷到磁盘后再重命名，重命名失败时删除这次已经重命名的文件，避免下次归档时重复
+            for (Part part : parts.values()) {
+                part.close();
+            }
+            try {
+                for (Part part : parts.values()) {
+                    published.add(part.publish());
+                }
+            } catch (IOException e) {
+                for (Path path : published) {
+                    Files.deleteIfExists(path);
+                }
+                throw e;
+            }
+        } finally {
+            for (Part part : parts.values()) {
+                part.discard();
+            }
+        }
+        for (Path part : published) {
+            this.deleteArchived(part);
+        }
+        if (count > 0) {
+            log.info("SysLogArchiver.archiveDay --> day: {}, archived: {}", day, count);
+        }
+        return count;
+    }
+
+    /**
+     * 数据库中这一天是否还有日志
+     */
+    private boolean exists(long startTime, long endTime) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(EXISTS_SQL)) {
+            preparedStatement.setLong(1, startTime);
+            preparedStatement.setLong(2, endTime);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    /**
+     * 从数据库删除归档文件中的日志，只按log_id删除
+     *
+     * @param part 归档文件
+     */
+    private void deleteArchived(Path part) throws SQLException, IOException {
+        try (SysLogArchiveFile.Reader reader = new SysLogArchiveFile.Reader(part);
+             Connection connection = this.dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(DELETE_SQL)) {
+            for (SysLogArchiveFile.RowGroup rowGroup : reader.getRowGroups()) {
+                Object[] logIds = reader.readColumn(rowGroup, SysLogArchiveFile.LOG_ID);
+                for (int from = 0; from < logIds.length; from += DELETE_BATCH_SIZE) {
+                    int size = Math.min(DELETE_BATCH_SIZE, logIds.length - from);
+                    if (size == DELETE_BATCH_SIZE) {
+                        delete(preparedStatement, logIds, from, size);
+                    } else {
+                        try (PreparedStatement lastStatement = connection.prepareStatement(deleteSql(size))) {
+                            delete(lastStatement, logIds, from, size);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void delete(PreparedStatement preparedStatement, Object[] logIds, int from, int size) throws SQLException {
+        for (int i = 0; i < size; i++) {
+            preparedStatement.setObject(i + 1, logIds[from + i]);
+        }
+        preparedStatement.executeUpdate();
+    }
+
+    /**
+     * 这一天已经归档的文件，同时删除上次中断时留下的临时文件
+     *
+     * @param dayDir 日期的目录
+     * @return 归档文件
+     */
+    private List<Path> archivedParts(Path dayDir) throws IOException {
+        List<Path> archived = new ArrayList<>();
+        for (Path logTypeDir : list(dayDir, LOG_TYPE_PREFIX)) {
+            for (Path part : list(logTypeDir, PART_PREFIX)) {
+                String name = part.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(part);
+                } else if (name.endsWith(SysLogArchiveFile.SUFFIX)) {
+                    archived.add(part);
+                }
+            }
+        }
+        return archived;
+    }
+
+    private LocalDate toDay(long epochMilli) {
+        return Instant.ofEpochMilli(epochMilli).atZone(this.zoneId).toLocalDate();
+    }
+
+    /**
+     * 按名称排序列出目录中指定前缀的文件
+     */
+    private static List<Path> list(Path dir, String prefix) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(dir)) {
+            return stream.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    private static String deleteSql(int rows) {
+        StringJoiner placeholders = new StringJoiner(StrUtil.COMMA, "DELETE FROM tb_sys_log WHERE log_id IN (", ")");
+        for (int i = 0; i < rows; i++) {
+            placeholders.add("?");
+        }
+        return placeholders.toString();
+    }
+
+    private static TbSysLog toTbSysLog(ResultSet resultSet) throws SQLException {
+        TbSysLog tbSysLog = new TbSysLog();
+        tbSysLog.setLogId(resultSet.getLong("log_id"));
+        tbSysLog.setLogType(Objects.toString(resultSet.getString("log_type")));
+        Object loginId = resultSet.getObject("login_id");
+        tbSysLog.setLoginId(loginId == null ? null : loginId.toString());
+        tbSysLog.setClientIp(getLong(resultSet, "client_ip"));
+        tbSysLog.setClientIpAddress(resultSet.getString("client_ip_address"));
+        tbSysLog.setUserAgent(resultSet.getString("user_agent"));
+        tbSysLog.setHttpMethod(resultSet.getString("http_method"));
+        tbSysLog.setMethodName(resultSet.getString("method_name"));
+        tbSysLog.setRequestUrl(resultSet.getString("request_url"));
+        tbSysLog.setRequestHeader(resultSet.getString("request_header"));
+        tbSysLog.setRequestParams(resultSet.getString("request_params"));
+        tbSysLog.setResponseData(resultSet.getString("response_data"));
+        tbSysLog.setTraceId(resultSet.getString("trace_id"));
+        boolean successful = resultSet.getBoolean("successful");
+        tbSysLog.setSuccessful(resultSet.wasNull() ? null : successful);
+        tbSysLog.setRequestTime(getLong(resultSet, "request_time"));
+        tbSysLog.setCostTime(getLong(resultSet, "cost_time"));
+        tbSysLog.setCreateTime(getLong(resultSet, "create_time"));
+        tbSysLog.setUpdateTime(getLong(resultSet, "update_time"));
+        return tbSysLog;
+    }
+
+    private static Long getLong(ResultSet resultSet, String columnLabel) throws SQLException {
+        long value = resultSet.getLong(columnLabel);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    private static Long getLong(ResultSet resultSet, int columnIndex) throws SQLException {
+        long value = resultSet.getLong(columnIndex);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    /**
+     * 一个日志类型正在写入的归档文件
+     */
+    private static final class Part {
+
+        private final Path logTypeDir;
+        private final Path tempPath;
+        private final long firstLogId;
+        private final SysLogArchiveFile.Writer writer;
+        private long lastLogId;
+        private boolean closed;
+
+        Part(Path logTypeDir, long firstLogId, int rowGroupSize) throws IOException {
+            this.logTypeDir = Files.createDirectories(logTypeDir);
+            this.firstLogId = firstLogId;
+            this.tempPath = logTypeDir.resolve(PART_PREFIX + String.format("%020d", firstLogId) + TEMP_SUFFIX);
+            this.writer = new SysLogArchiveFile.Writer(this.tempPath, rowGroupSize);
+        }
+
+        void add(TbSysLog tbSysLog) throws IOException {
+            this.writer.add(tbSysLog);
+            this.lastLogId = tbSysLog.getLogId();
+        }
+
+        /**
+         * 写入footer并刷到磁盘
+         */
+        void close() throws IOException {
+            this.closed = true;
+            this.writer.close();
+        }
+
+        /**
+         * 临时文件重命名为正式的归档文件
+         *
+         * @return 归档文件
+         */
+        Path publish() throws IOException {
+            Path path = this.logTypeDir.resolve(PART_PREFIX + String.format("%020d-%020d", this.firstLogId, this.lastLogId) + SysLogArchiveFile.SUFFIX);
+            Files.move(this.tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+            return path;
+        }
+
+        /**
+         * 关闭并删除临时文件，已经重命名的文件不受影响
+         */
+        void discard() {
+            try {
+                if (!this.closed) {
+                    this.closed = true;
+                    this.writer.close();
+                }
+                Files.deleteIfExists(this.tempPath);
+            } catch (IOException e) {
+                log.error("SysLogArchiver.Part.discard --> e: ", e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,306 @@
+package com.takeshi.component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.takeshi.pojo.basic.TbSysLog;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 接口日志的本地日志文件，数据库写入失败或者来不及写入时先追加到这里，数据库恢复后再重新写入数据库<br/>
+ * 日志文件分为多个固定大小的内存映射的段文件，每条记录的格式为：长度（int）+ CRC32（int）+ TbSysLog的JSON，
+ * 段文件中剩余的部分都是0；checkpoint文件记录已经重新写入数据库的位置，每次commit后刷到磁盘，重启后从这里继续，段文件全部写入数据库后删除<br/>
+ * 非线程安全，只在SysLogWriter的写入线程中使用
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+public final class SysLogJournal implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final int HEADER_SIZE = 8;
+    private static final int CHECKPOINT_SIZE = 12;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final ObjectMapper objectMapper;
+    private final CRC32 crc32 = new CRC32();
+    private final FileChannel checkpointChannel;
+    private final ByteBuffer checkpointBuffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+
+    /**
+     * 正在追加的段，第一次追加时才创建
+     */
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+
+    /**
+     * 下一条需要重新写入数据库的位置
+     */
+    private long readSegment;
+    private int readPosition;
+    private long readMappedSegment = -1;
+    private ByteBuffer readBuffer;
+
+    /**
+     * peek读取到的位置，commit后才会成为readSegment和readPosition
+     */
+    private long peekSegment;
+    private int peekPosition;
+
+    /**
+     * 构造函数，打开日志文件目录，重启前最后一个段文件的末尾可能是不完整的记录，新的记录总是追加到新的段文件中
+     *
+     * @param dir          日志文件目录
+     * @param segmentSize  段文件的大小
+     * @param objectMapper objectMapper
+     * @throws IOException IOException
+     */
+    public SysLogJournal(Path dir, int segmentSize, ObjectMapper objectMapper) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.segmentSize = segmentSize;
+        this.objectMapper = objectMapper;
+        TreeSet<Long> segments = new TreeSet<>();
+        try (Stream<Path> stream = Files.list(this.dir)) {
+            stream.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> segments.add(Long.parseLong(name, SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length(), 10)));
+        }
+        this.checkpointChannel = FileChannel.open(this.dir.resolve(CHECKPOINT), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (this.checkpointChannel.size() >= CHECKPOINT_SIZE) {
+            this.checkpointChannel.read(this.checkpointBuffer.clear(), 0);
+            this.readSegment = this.checkpointBuffer.getLong(0);
+            this.readPosition = this.checkpointBuffer.getInt(8);
+        }
+        for (long segment : segments.headSet(this.readSegment)) {
+            // checkpoint已经刷到磁盘，但是删除段文件前崩溃了，这些段文件已经全部写入数据库
+            Files.deleteIfExists(this.segmentPath(segment));
+        }
+        NavigableSet<Long> pending = segments.tailSet(this.readSegment, true);
+        if (pending.isEmpty()) {
+            // 没有需要重新写入数据库的日志，从新的段开始追加和读取
+            this.writeSegment = this.readSegment + 1;
+            this.readSegment = this.writeSegment;
+            this.readPosition = 0;
+        } else {
+            if (this.readSegment < pending.first()) {
+                this.readSegment = pending.first();
+                this.readPosition = 0;
+            }
+            this.writeSegment = pending.last() + 1;
+        }
+        this.peekSegment = this.readSegment;
+        this.peekPosition = this.readPosition;
+        if (this.hasPending()) {
+            log.info("SysLogJournal --> sys logs pending in journal: {}", this.dir.toAbsolutePath());
+        }
+    }
+
+    /**
+     * 是否还有没有重新写入数据库的日志
+     *
+     * @return boolean
+     */
+    public boolean hasPending() {
+        if (this.readSegment < this.writeSegment - 1) {
+            return true;
+        }
+        if (this.readSegment == this.writeSegment - 1) {
+            // 重启前的最后一个段文件，或者已经写满的上一个段
+            return Files.exists(this.segmentPath(this.readSegment));
+        }
+        // 读取的位置就在正在追加的段中
+        return this.writeBuffer != null && this.readPosition < this.writeBuffer.position();
+    }
+
+    /**
+     * 追加日志，追加完成后刷到磁盘
+     *
+     * @param logs 日志
+     * @return 追加成功的数量
+     */
+    public int append(List<TbSysLog> logs) {
+        int appended = 0;
+        try {
+            for (TbSysLog tbSysLog : logs) {
+                byte[] bytes = this.objectMapper.writeValueAsBytes(tbSysLog);
+                if (bytes.length + HEADER_SIZE > this.segmentSize) {
+                    log.warn("SysLogJournal.append --> sys log is larger than the segment size, discarded: {}", tbSysLog.getTraceId());
+                    continue;
+                }
+                if (this.writeBuffer == null || this.writeBuffer.remaining() < bytes.length + HEADER_SIZE) {
+                    this.nextWriteSegment();
+                }
+                this.crc32.reset();
+                this.crc32.update(bytes);
+                int position = this.writeBuffer.position();
+                // 先写内容和CRC，最后写长度，读取时长度为0表示后面没有记录
+                this.writeBuffer.putInt(position + 4, (int) this.crc32.getValue());
+                this.writeBuffer.put(position + HEADER_SIZE, bytes);
+                this.writeBuffer.putInt(position, bytes.length);
+                this.writeBuffer.position(position + HEADER_SIZE + bytes.length);
+                appended++;
+            }
+        } catch (IOException e) {
+            log.error("SysLogJournal.append --> e: ", e);
+        }
+        if (this.writeBuffer != null) {
+            this.writeBuffer.force();
+        }
+        return appended;
+    }
+
+    /**
+     * 从上一次commit的位置读取日志，不改变读取的位置
+     *
+     * @param max 最多读取的条数
+     * @return 日志，损坏的记录会被跳过
+     */
+    public List<TbSysLog> peek(int max) {
+        List<TbSysLog> logs = new ArrayList<>(max);
+        long segment = this.readSegment;
+        int position = this.readPosition;
+        while (logs.size() < max) {
+            ByteBuffer buffer = this.readBuffer(segment);
+            int limit = segment == this.writeSegment ? (this.writeBuffer == null ? 0 : this.writeBuffer.position())
+                    : buffer == null ? 0 : buffer.capacity();
+            int length = position + HEADER_SIZE <= limit ? buffer.getInt(position) : 0;
+            if (length > 0 && position + HEADER_SIZE + length > limit) {
+                log.warn("SysLogJournal.peek --> corrupted sys log journal, segment: {}, position: {}", segment, position);
+                length = 0;
+            }
+            if (length <= 0) {
+                if (segment >= this.writeSegment) {
+                    break;
+                }
+                segment++;
+                position = 0;
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(position + HEADER_SIZE, bytes);
+            this.crc32.reset();
+            this.crc32.update(bytes);
+            if ((int) this.crc32.getValue() != buffer.getInt(position + 4)) {
+                // 重启前没有写完整的记录，这个段文件后面的内容都不可信
+                log.warn("SysLogJournal.peek --> crc mismatch, skip the rest of segment: {}, position: {}", segment, position);
+                if (segment >= this.writeSegment) {
+                    break;
+                }
+                segment++;
+                position = 0;
+                continue;
+            }
+            position += HEADER_SIZE + length;
+            try {
+                logs.add(this.objectMapper.readValue(bytes, TbSysLog.class));
+            } catch (IOException e) {
+                log.error("SysLogJournal.peek --> e: ", e);
+            }
+        }
+        this.peekSegment = segment;
+        this.peekPosition = position;
+        return logs;
+    }
+
+    /**
+     * 上一次peek读取到的日志已经写入数据库，保存读取的位置并刷到磁盘，然后删除已经全部写入数据库的段文件<br/>
+     * checkpoint刷到磁盘后才删除段文件，崩溃重启后不会把已经写入数据库的日志再写入一次
+     */
+    public void commit() {
+        long committedSegment = this.readSegment;
+        this.readSegment = this.peekSegment;
+        this.readPosition = this.peekPosition;
+        try {
+            this.checkpointBuffer.clear();
+            this.checkpointBuffer.putLong(this.readSegment).putInt(this.readPosition).flip();
+            this.checkpointChannel.write(this.checkpointBuffer, 0);
+            this.checkpointChannel.force(false);
+        } catch (IOException e) {
+            log.error("SysLogJournal.commit --> e: ", e);
+        }
+        for (long segment = committedSegment; segment < this.peekSegment; segment++) {
+            if (segment == this.readMappedSegment) {
+                this.readMappedSegment = -1;
+                this.readBuffer = null;
+            }
+            try {
+                Files.deleteIfExists(this.segmentPath(segment));
+            } catch (IOException e) {
+                log.error("SysLogJournal.commit --> e: ", e);
+            }
+        }
+    }
+
+    /**
+     * 关闭日志文件
+     */
+    @Override
+    public void close() {
+        try {
+            if (this.writeBuffer != null) {
+                this.writeBuffer.force();
+            }
+            this.checkpointChannel.force(true);
+            this.checkpointChannel.close();
+        } catch (IOException e) {
+            log.error("SysLogJournal.close --> e: ", e);
+        }
+    }
+
+    private void nextWriteSegment() throws IOException {
+        if (this.writeBuffer != null) {
+            this.writeBuffer.force();
+            this.writeSegment++;
+        }
+        try (FileChannel channel = FileChannel.open(this.segmentPath(this.writeSegment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.writeBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+        }
+    }
+
+    /**
+     * 获取需要读取的段文件，正在追加的段直接使用写入的内存映射
+     *
+     * @param segment 段
+     * @return ByteBuffer，段文件不存在时返回null
+     */
+    private ByteBuffer readBuffer(long segment) {
+        if (segment == this.writeSegment) {
+            return this.writeBuffer;
+        }
+        if (segment != this.readMappedSegment) {
+            this.readMappedSegment = segment;
+            this.readBuffer = null;
+            Path path = this.segmentPath(segment);
+            if (Files.exists(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    this.readBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } catch (IOException e) {
+                    log.error("SysLogJournal.readBuffer --> e: ", e);
+                }
+            }
+        }
+        return this.readBuffer;
+    }
+
+    private Path segmentPath(long segment) {
+        return this.dir.resolve(SEGMENT_PREFIX + String.format("%020d", segment) + SEGMENT_SUFFIX);
+    }
+
+}
@@ -0,0 +1,521 @@
+package com.takeshi.component;
+
+import cn.hutool.core.net.Ipv4Util;
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.db.StatementUtil;
+import cn.hutool.http.Header;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.takeshi.annotation.TakeshiLog;
+import com.takeshi.config.TraceContext;
+import com.takeshi.config.properties.LogProperties;
+import com.takeshi.config.security.EndpointPolicy;
+import com.takeshi.config.security.LogPolicy;
+import com.takeshi.constants.TakeshiCode;
+import com.takeshi.enums.ShutdownPhaseEnum;
+import com.takeshi.pojo.basic.TbSysLog;
+import com.takeshi.pojo.bo.ParamBO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 接口日志（TbSysLog）写入数据库<br/>
+ * 请求线程只把日志放进有界的无锁环形缓冲区，由单独的一个线程取出后按条数或时间间隔批量的多行INSERT写入数据库，
+ * 不再每个请求占用一次数据库连接；缓冲区满时按takeshi.log.sys-log.offer-timeout等待或丢弃，应用关闭时写入剩余的日志<br/>
+ * 数据库写入失败或者来不及写入时先追加到本地日志文件{@link SysLogJournal}，数据库恢复后由写入线程重新写入数据库
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+@Component
+public class SysLogWriter implements SmartInitializingSingleton, ShutdownParticipant {
+
+    /**
+     * 排除敏感属性字段
+     */
+    public static final String[] EXCLUSION_FIELD_NAME = {"password", "oldPassword", "newPassword", "confirmPassword"};
+
+    private static final String TABLE_NAME = "tb_sys_log";
+
+    private static final String CODE = "code";
+
+    /**
+     * 写入线程退出时把tail设置为这个值，之后请求线程不能再占用位置
+     */
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private static final String[] COLUMNS = {"log_type", "login_id", "client_ip", "client_ip_address", "user_agent", "http_method", "method_name",
+            "request_url", "request_header", "request_params", "response_data", "trace_id", "successful", "request_time", "cost_time",
+            "create_time", "update_time"};
+
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+
+    private final int batchSize;
+    private final int maxFieldSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+
+    /**
+     * 环形缓冲区，容量是2的幂，多个请求线程写入，只有写入线程读取
+     */
+    private final AtomicReferenceArray<SysLogRecord> ring;
+    private final int mask;
+
+    /**
+     * 请求线程下一个写入的位置，写入线程退出后为CLOSED
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * 写入线程下一个读取的位置，只有写入线程修改
+     */
+    private volatile long head;
+
+    /**
+     * 缓冲区满或者已经停止写入时丢弃的日志数量
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * 满批次的INSERT语句
+     */
+    private final String batchSql;
+
+    /**
+     * 本地日志文件，没有配置目录时为null
+     */
+    private final SysLogJournal journal;
+
+    private final long journalRetryIntervalNanos;
+
+    /**
+     * 数据库写入失败后，到这个时间前都直接写入本地日志文件
+     */
+    private long nextReplayNanos;
+
+    private volatile boolean running = true;
+
+    private Thread writerThread;
+
+    /**
+     * 构造函数
+     *
+     * @param dataSource    dataSource
+     * @param objectMapper  objectMapper
+     * @param logProperties logProperties
+     */
+    public SysLogWriter(DataSource dataSource, ObjectMapper objectMapper, LogProperties logProperties) {
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        LogProperties.SysLog sysLog = logProperties.getSysLog();
+        this.maxFieldSize = (int) Math.min(Integer.MAX_VALUE, logProperties.getMaxFieldSize().toBytes());
+        int capacity = sysLog.getBufferSize() <= 1 ? 1 : Integer.highestOneBit(sysLog.getBufferSize() - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.batchSize = Math.min(sysLog.getBatchSize(), capacity);
+        this.flushIntervalNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), sysLog.getFlushInterval().toNanos());
+        this.offerTimeoutNanos = sysLog.getOfferTimeout().toNanos();
+        this.batchSql = insertSql(this.batchSize);
+        this.journal = openJournal(sysLog, objectMapper);
+        this.journalRetryIntervalNanos = sysLog.getJournalRetryInterval().toNanos();
+        this.nextReplayNanos = System.nanoTime();
+    }
+
+    /**
+     * 启动写入线程
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        this.writerThread = new Thread(this::run, "takeshi-sys-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * 新增一条接口请求相关信息到数据库，只放入缓冲区，由写入线程批量写入
+     *
+     * @param paramBO         paramBO，需要先调用resolveAll解析完所有的参数
+     * @param startTimeMillis 请求时间
+     * @param totalTimeMillis 接口总耗时
+     * @param responseData    接口响应数据
+     * @param responseCode    接口返回的ResponseData的状态码，不是ResponseData时传null
+     */
+    public void write(ParamBO paramBO, long startTimeMillis, long totalTimeMillis, String responseData, Integer responseCode) {
+        if (ObjUtil.isNull(paramBO) || ObjUtil.isNull(paramBO.getTakeshiLog())) {
+            return;
+        }
+        SysLogRecord record = new SysLogRecord(paramBO, startTimeMillis, totalTimeMillis, responseData, responseCode,
+                TraceContext.currentTraceId(), Instant.now().toEpochMilli());
+        if (!this.offer(record)) {
+            long count = this.dropped.incrementAndGet();
+            if ((count & (count - 1)) == 0) {
+                // 只在丢弃数量为2的幂时打印，避免日志刷屏
+                log.warn("SysLogWriter.write --> sys log buffer is full or writer is stopped, dropped: {}", count);
+            }
+        }
+    }
+
+    /**
+     * 停止写入线程，等待剩余的日志写入数据库
+     *
+     * @param timeout 最多等待的时间（单位：秒）
+     * @return 没有写入的日志数量
+     */
+    public long shutdown(long timeout) {
+        return this.drain(System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout));
+    }
+
+    @Override
+    public String shutdownName() {
+        return "sys-log-writer";
+    }
+
+    /**
+     * 任务执行完成后才停止写入线程，'@Async'任务在关闭时写入的日志也能写入数据库
+     *
+     * @return ShutdownPhaseEnum
+     */
+    @Override
+    public ShutdownPhaseEnum shutdownPhase() {
+        return ShutdownPhaseEnum.FLUSH;
+    }
+
+    /**
+     * 停止写入线程，等待剩余的日志写入数据库
+     *
+     * @param deadlineNanos 截止时间，System.nanoTime()
+     * @return 没有写入的日志数量
+     */
+    @Override
+    public long drain(long deadlineNanos) {
+        this.running = false;
+        Thread thread = this.writerThread;
+        if (ObjUtil.isNotNull(thread)) {
+            LockSupport.unpark(thread);
+            try {
+                long millis = TimeUnit.NANOSECONDS.toMillis(ShutdownParticipant.remainingNanos(deadlineNanos));
+                thread.join(Math.max(1, millis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long current = this.tail.get();
+        long remaining = current == CLOSED ? 0 : current - this.head;
+        if (remaining > 0) {
+            log.warn("SysLogWriter.drain --> {} sys logs were not written", remaining);
+        }
+        return remaining;
+    }
+
+    /**
+     * 放入缓冲区，停止写入后不再放入<br/>
+     * 写入线程退出前通过CAS把tail设置为CLOSED，与请求线程占用位置的CAS互斥，占用到位置的日志一定会被写入线程取出
+     *
+     * @param record 日志
+     * @return 是否放入成功
+     */
+    private boolean offer(SysLogRecord record) {
+        long deadline = 0;
+        boolean waiting = false;
+        while (true) {
+            long current = this.tail.get();
+            if (current == CLOSED || !this.running) {
+                return false;
+            }
+            if (current - this.head > this.mask) {
+                if (this.offerTimeoutNanos <= 0) {
+                    return false;
+                }
+                long now = System.nanoTime();
+                if (!waiting) {
+                    waiting = true;
+                    deadline = now + this.offerTimeoutNanos;
+                } else if (now - deadline >= 0) {
+                    return false;
+                }
+                LockSupport.unpark(this.writerThread);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            if (this.tail.compareAndSet(current, current + 1)) {
+                this.ring.set((int) current & this.mask, record);
+                if (current + 1 - this.head == this.batchSize) {
+                    // 刚好攒够一批时唤醒写入线程
+                    LockSupport.unpark(this.writerThread);
+                }
+                return true;
+            }
+        }
+    }
+
+    private SysLogRecord poll() {
+        long current = this.head;
+        int index = (int) current & this.mask;
+        SysLogRecord record = this.ring.get(index);
+        if (record == null) {
+            // 缓冲区为空，或者请求线程占了位置还没有放入日志
+            return null;
+        }
+        this.ring.lazySet(index, null);
+        this.head = current + 1;
+        return record;
+    }
+
+    private void run() {
+        List<SysLogRecord> batch = new ArrayList<>(this.batchSize);
+        long firstNanos = 0;
+        while (true) {
+            boolean active = this.running;
+            SysLogRecord record;
+            while (batch.size() < this.batchSize && (record = this.poll()) != null) {
+                if (batch.isEmpty()) {
+                    firstNanos = System.nanoTime();
+                }
+                batch.add(record);
+            }
+            long waited = batch.isEmpty() ? 0 : System.nanoTime() - firstNanos;
+            boolean flushed = false;
+            if (!batch.isEmpty() && (batch.size() >= this.batchSize || !active || waited >= this.flushIntervalNanos)) {
+                this.flush(batch);
+                batch.clear();
+                flushed = true;
+            }
+            if (active && this.replay()) {
+                continue;
+            }
+            if (flushed) {
+                continue;
+            }
+            if (!active) {
+                if (this.tail.compareAndSet(this.head, CLOSED)) {
+                    break;
+                }
+                Thread.onSpinWait();
+                continue;
+            }
+            LockSupport.parkNanos(this.flushIntervalNanos - waited);
+        }
+        if (ObjUtil.isNotNull(this.journal)) {
+            this.journal.close();
+        }
+    }
+
+    /**
+     * 写入一批日志，数据库写入失败、缓冲区已经超过一半或者本地日志文件中还有没写入数据库的日志时，追加到本地日志文件
+     *
+     * @param batch 日志
+     */
+    private void flush(List<SysLogRecord> batch) {
+        List<TbSysLog> logs = new ArrayList<>(batch.size());
+        for (SysLogRecord record : batch) {
+            try {
+                logs.add(this.toTbSysLog(record));
+            } catch (Exception e) {
+                log.error("SysLogWriter.flush --> e: ", e);
+            }
+        }
+        if (logs.isEmpty()) {
+            return;
+        }
+        if (ObjUtil.isNotNull(this.journal)) {
+            boolean behind = this.tail.get() - this.head > (this.mask + 1) / 2;
+            if (behind || this.journal.hasPending() || System.nanoTime() - this.nextReplayNanos < 0) {
+                this.journal(logs);
+                return;
+            }
+        }
+        if (!this.insert(logs) && ObjUtil.isNotNull(this.journal)) {
+            this.nextReplayNanos = System.nanoTime() + this.journalRetryIntervalNanos;
+            this.journal(logs);
+        }
+    }
+
+    /**
+     * 将本地日志文件中的一批日志重新写入数据库
+     *
+     * @return 是否写入成功
+     */
+    private boolean replay() {
+        if (ObjUtil.isNull(this.journal) || System.nanoTime() - this.nextReplayNanos < 0 || !this.journal.hasPending()) {
+            return false;
+        }
+        List<TbSysLog> logs = this.journal.peek(this.batchSize);
+        if (logs.isEmpty() || this.insert(logs)) {
+            this.journal.commit();
+            if (!this.journal.hasPending()) {
+                log.info("SysLogWriter.replay --> all sys logs in journal have been written to the database");
+            }
+            return true;
+        }
+        this.nextReplayNanos = System.nanoTime() + this.journalRetryIntervalNanos;
+        return false;
+    }
+
+    private void journal(List<TbSysLog> logs) {
+        int appended = this.journal.append(logs);
+        if (appended < logs.size()) {
+            log.error("SysLogWriter.journal --> {} sys logs were not written", logs.size() - appended);
+        }
+    }
+
+    /**
+     * 一条多行INSERT语句写入一批日志
+     *
+     * @param logs 日志
+     * @return 是否写入成功
+     */
+    private boolean insert(List<TbSysLog> logs) {
+        Object[] params = new Object[logs.size() * COLUMNS.length];
+        int index = 0;
+        for (TbSysLog tbSysLog : logs) {
+            params[index++] = tbSysLog.getLogType();
+            params[index++] = tbSysLog.getLoginId();
+            params[index++] = tbSysLog.getClientIp();
+            params[index++] = tbSysLog.getClientIpAddress();
+            params[index++] = tbSysLog.getUserAgent();
+            params[index++] = tbSysLog.getHttpMethod();
+            params[index++] = tbSysLog.getMethodName();
+            params[index++] = tbSysLog.getRequestUrl();
+            params[index++] = tbSysLog.getRequestHeader();
+            params[index++] = tbSysLog.getRequestParams();
+            params[index++] = tbSysLog.getResponseData();
+            params[index++] = tbSysLog.getTraceId();
+            params[index++] = tbSysLog.getSuccessful();
+            params[index++] = tbSysLog.getRequestTime();
+            params[index++] = tbSysLog.getCostTime();
+            params[index++] = tbSysLog.getCreateTime();
+            params[index++] = tbSysLog.getUpdateTime();
+        }
+        String sql = logs.size() == this.batchSize ? this.batchSql : insertSql(logs.size());
+        // 只有一个写入线程，同时最多占用一个数据库连接
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            StatementUtil.fillParams(preparedStatement, params);
+            preparedStatement.executeUpdate();
+            return true;
+        } catch (Exception e) {
+            log.error("SysLogWriter.insert --> {} sys logs were not written to the database, e: ", logs.size(), e);
+            return false;
+        }
+    }
+
+    private TbSysLog toTbSysLog(SysLogRecord record) {
+        ParamBO paramBO = record.paramBO();
+        TakeshiLog takeshiLog = paramBO.getTakeshiLog();
+        EndpointPolicy endpointPolicy = paramBO.getEndpointPolicy();
+        String[] exclusionFieldName = ObjUtil.isNotNull(endpointPolicy) ? endpointPolicy.getLogExclusionFieldName()
+                : ArrayUtil.addAll(EXCLUSION_FIELD_NAME, takeshiLog.exclusionFieldName());
+        int maxFieldSize = ObjUtil.isNotNull(endpointPolicy) ? endpointPolicy.getLogMaxFieldSize() : this.maxFieldSize;
+        TbSysLog tbSysLog = new TbSysLog();
+        tbSysLog.setLogType(takeshiLog.logType().name());
+        tbSysLog.setLoginId(paramBO.getLoginId());
+        tbSysLog.setClientIp(Ipv4Util.ipv4ToLong(paramBO.getClientIp()));
+        Map<String, String> headerParam = paramBO.getHeaderParam();
+        tbSysLog.setClientIpAddress(paramBO.getClientIpAddress());
+        tbSysLog.setUserAgent(headerParam.get(Header.USER_AGENT.getValue()));
+        tbSysLog.setHttpMethod(paramBO.getHttpMethod());
+        tbSysLog.setMethodName(paramBO.getMethodName());
+        tbSysLog.setRequestUrl(paramBO.getRequestUrl());
+        tbSysLog.setRequestHeader(LogPolicy.toJson(LogPolicy.filterHeaders(headerParam), maxFieldSize));
+        tbSysLog.setRequestParams(LogPolicy.toJson(paramBO.getParamObjectNode(exclusionFieldName), maxFieldSize));
+        tbSysLog.setResponseData(StrUtil.emptyToNull(record.responseData()));
+        tbSysLog.setTraceId(record.traceId());
+        tbSysLog.setSuccessful(this.successful(record));
+        tbSysLog.setRequestTime(record.startTimeMillis());
+        tbSysLog.setCostTime(record.totalTimeMillis());
+        tbSysLog.setCreateTime(record.createTime());
+        tbSysLog.setUpdateTime(record.createTime());
+        return tbSysLog;
+    }
+
+    /**
+     * 判断返回结果是否是成功的，优先使用ResponseCodeAdvice记录的状态码，
+     * 没有时只读取响应内容第一层的code字段，读到后就不再继续解析
+     *
+     * @param record 日志
+     * @return boolean
+     */
+    private boolean successful(SysLogRecord record) {
+        if (ObjUtil.isNotNull(record.responseCode())) {
+            return record.responseCode() == TakeshiCode.SUCCESS.getCode();
+        }
+        String responseData = record.responseData();
+        if (StrUtil.isEmpty(responseData)) {
+            return true;
+        }
+        try (JsonParser parser = objectMapper.createParser(responseData)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return true;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (CODE.equals(fieldName)) {
+                    return token != JsonToken.VALUE_NUMBER_INT || parser.getIntValue() == TakeshiCode.SUCCESS.getCode();
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException ignored) {
+            // 响应内容被截断或者不是JSON
+        }
+        return true;
+    }
+
+    private static SysLogJournal openJournal(LogProperties.SysLog sysLog, ObjectMapper objectMapper) {
+        if (StrUtil.isBlank(sysLog.getJournalDir())) {
+            return null;
+        }
+        try {
+            int segmentSize = (int) Math.min(Integer.MAX_VALUE, sysLog.getJournalSegmentSize().toBytes());
+            return new SysLogJournal(Path.of(sysLog.getJournalDir()), segmentSize, objectMapper);
+        } catch (Exception e) {
+            log.error("SysLogWriter.openJournal --> e: ", e);
+            return null;
+        }
+    }
+
+    private static String insertSql(int rows) {
+        StringJoiner placeholders = new StringJoiner(StrUtil.COMMA, "(", ")");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            placeholders.add("?");
+        }
+        String row = placeholders.toString();
+        StringBuilder sql = new StringBuilder(64 + COLUMNS.length * 20 + rows * (row.length() + 1))
+                .append("INSERT INTO ").append(TABLE_NAME).append(" (").append(String.join(StrUtil.COMMA, COLUMNS)).append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(StrUtil.C_COMMA);
+            }
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 等待写入的日志，只保存引用，请求线程不做序列化
+     */
+    private record SysLogRecord(ParamBO paramBO, long startTimeMillis, long totalTimeMillis, String responseData,
+                                Integer responseCode, String traceId, long createTime) {
+    }
+
+}
@@ -2,12 +2,12 @@ package com.takeshi.config;
 
 import cn.hutool.core.util.ArrayUtil;
 import com.takeshi.exception.TakeshiException;
-import lombok.RequiredArgsConstructor;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.Arrays;
 import java.util.concurrent.Executor;
@@ -19,17 +19,25 @@ import java.util.concurrent.Executor;
  */
 @EnableAsync
 @AutoConfiguration
-@RequiredArgsConstructor
 public class AsyncConfig implements AsyncConfigurer {
 
-    private final ThreadPoolTaskExecutor threadPoolTaskExecutor;
+    private final AsyncTaskExecutor asyncTaskExecutor;
 
     /**
-     * 自定义 @Async 注解使用系统线程池
+     * 构造函数
+     *
+     * @param asyncTaskExecutor asyncTaskExecutor
+     */
+    public AsyncConfig(@Qualifier("asyncTaskExecutor") AsyncTaskExecutor asyncTaskExecutor) {
+        this.asyncTaskExecutor = asyncTaskExecutor;
+    }
+
+    /**
+     * 自定义 @Async 注解使用系统线程池，takeshi.executor.mode=VIRTUAL时使用虚拟线程
      */
     @Override
     public Executor getAsyncExecutor() {
-        return threadPoolTaskExecutor;
+        return asyncTaskExecutor;
     }
 
     /**
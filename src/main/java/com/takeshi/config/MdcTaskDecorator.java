@@ -1,15 +1,10 @@
 package com.takeshi.config;
 
-import cn.hutool.core.util.IdUtil;
-import cn.hutool.core.util.StrUtil;
-import com.takeshi.constants.TakeshiConstants;
-import org.slf4j.MDC;
 import org.springframework.core.task.TaskDecorator;
 
-import java.util.Map;
-
 /**
- * MdcTaskDecorator
+ * MdcTaskDecorator<br/>
+ * 只捕获提交任务时的{@link TraceContext}，不再复制整个MDC，执行任务时恢复traceId；提交时没有traceId则新建一个
  *
  * @author 七濑武【Nanase Takeshi】
  */
@@ -17,18 +12,7 @@ public class MdcTaskDecorator implements TaskDecorator {
 
     @Override
     public Runnable decorate(Runnable runnable) {
-        Map<String, String> copyOfContextMap = MDC.getCopyOfContextMap();
-        return () -> {
-            try {
-                MDC.setContextMap(copyOfContextMap);
-                if (StrUtil.isBlank(MDC.get(TakeshiConstants.TRACE_ID_KEY))) {
-                    MDC.put(TakeshiConstants.TRACE_ID_KEY, IdUtil.fastSimpleUUID());
-                }
-                runnable.run();
-            } finally {
-                MDC.remove(TakeshiConstants.TRACE_ID_KEY);
-            }
-        };
+        return TraceContext.wrap(runnable);
     }
 
 }
@@ -2,11 +2,12 @@ package com.takeshi.config;
 
 import cn.dev33.satoken.config.SaTokenConfig;
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.util.ClassUtil;
+import cn.hutool.core.util.ClassLoaderUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.core.util.StrUtil;
 import com.takeshi.annotation.ApiVersion;
+import com.takeshi.component.StartupOrchestrator;
 import com.takeshi.constants.TakeshiCode;
 import com.takeshi.pojo.bo.RetBO;
 import io.swagger.v3.oas.models.Components;
@@ -21,15 +22,19 @@ import io.swagger.v3.oas.models.security.SecurityScheme;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springdoc.core.models.GroupedOpenApi;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.type.filter.AssignableTypeFilter;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * OpenApiConfig
@@ -44,24 +49,49 @@ public class OpenApiConfig {
     private final MessageSource messageSource;
     private final SaTokenConfig saTokenConfig;
     private final ApplicationContext applicationContext;
+    private final StartupOrchestrator startupOrchestrator;
 
     @Value("${spring.application.name}")
     private String applicationName;
 
-    private List<RetBO> retBOList;
+    /**
+     * 响应状态码信息，启动时在后台扫描
+     */
+    private CompletableFuture<List<RetBO>> retBOListFuture;
 
     /**
      * 初始化响应状态码信息
      */
     @PostConstruct
     public void init() {
+        // 获取主启动类所在的包名
+        String packageName = applicationContext.getBeansWithAnnotation(SpringBootApplication.class).values().toArray()[0].getClass().getPackageName();
+        retBOListFuture = startupOrchestrator.submit("takeshi-code-scan", () -> this.scanRetBO(packageName));
+    }
+
+    /**
+     * 查询TakeshiCode子类中的响应状态码信息<br/>
+     * 只读取class文件的元数据，不加载包下的所有类；有编译时生成的META-INF/spring.components索引时直接使用索引，不扫描包
+     *
+     * @param packageName 主启动类所在的包名
+     * @return 响应状态码信息
+     */
+    private List<RetBO> scanRetBO(String packageName) {
         // 查询TakeshiCode子类集合
         Set<Class<?>> classSet = new HashSet<>();
         classSet.add(TakeshiCode.class);
-        // 获取主启动类所在的包名
-        String packageName = applicationContext.getBeansWithAnnotation(SpringBootApplication.class).values().toArray()[0].getClass().getPackageName();
-        classSet.addAll(ClassUtil.scanPackageBySuper(packageName, TakeshiCode.class));
-        retBOList = classSet.stream()
+        ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false, applicationContext.getEnvironment()) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+                // TakeshiCode的子类一般是接口，默认只接受具体类
+                return true;
+            }
+        };
+        provider.setResourceLoader(applicationContext);
+        provider.addIncludeFilter(new AssignableTypeFilter(TakeshiCode.class));
+        provider.findCandidateComponents(packageName)
+                .forEach(beanDefinition -> classSet.add(ClassLoaderUtil.loadClass(beanDefinition.getBeanClassName(), applicationContext.getClassLoader(), false)));
+        return classSet.stream()
                 .flatMap(item -> Arrays.stream(ReflectUtil.getFields(item, f -> f.getType().isAssignableFrom(RetBO.class))))
                 .map(item -> (RetBO) ReflectUtil.getStaticFieldValue(item))
                 .sorted(Comparator.comparing(RetBO::getCode))
@@ -107,7 +137,7 @@ public class OpenApiConfig {
                 .addOperationCustomizer((operation, handlerMethod) -> {
                     // 生成通用响应信息
                     ApiResponses apiResponses = operation.getResponses();
-                    retBOList.forEach(retBO -> {
+                    StartupOrchestrator.await(retBOListFuture).forEach(retBO -> {
                         apiResponses.compute(String.valueOf(retBO.getCode()), (k, v) -> ObjUtil.defaultIfNull(v, new ApiResponse()).description(retBO.getMessage()));
                     });
                     return operation;
@@ -6,9 +6,15 @@ import cn.hutool.crypto.SecureUtil;
 import cn.hutool.crypto.asymmetric.AsymmetricAlgorithm;
 import cn.hutool.crypto.asymmetric.RSA;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.takeshi.component.BulkheadRegistry;
+import com.takeshi.component.RateLimitComponent;
 import com.takeshi.component.RedisComponent;
+import com.takeshi.component.StartupOrchestrator;
 import com.takeshi.config.properties.TakeshiProperties;
+import com.takeshi.config.security.ColumnCipher;
+import com.takeshi.config.security.RsaCipher;
 import com.takeshi.enums.TakeshiRedisKeyEnum;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigureOrder;
@@ -18,6 +24,7 @@ import org.springframework.data.redis.core.BoundValueOperations;
 
 import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * StaticConfig
@@ -27,7 +34,7 @@ import java.security.KeyPair;
  */
 @AutoConfiguration(before = TakeshiConfig.class)
 @AutoConfigureOrder(Ordered.HIGHEST_PRECEDENCE)
-public class StaticConfig {
+public class StaticConfig implements SmartInitializingSingleton {
 
     /**
      * ObjectMapper
@@ -44,6 +51,16 @@ public class StaticConfig {
      */
     public static RedisComponent redisComponent;
 
+    /**
+     * RateLimitComponent
+     */
+    public static RateLimitComponent rateLimitComponent;
+
+    /**
+     * 第三方集成的隔离执行器
+     */
+    public static BulkheadRegistry bulkheadRegistry;
+
     /**
      * 自定义额外属性值
      */
@@ -75,20 +92,38 @@ public class StaticConfig {
     public static String publicKeyBase64;
 
     /**
-     * RSA
+     * RSA，启动时在后台初始化，完成前为null，需要等待初始化完成时使用{@link #rsa()}
      */
     public static RSA rsa;
 
+    /**
+     * 线程安全的RSA加解密，代替内部加锁的rsa，启动时在后台初始化，完成前为null，需要等待初始化完成时使用{@link #rsaCipher()}
+     */
+    public static RsaCipher rsaCipher;
+
+    /**
+     * 数据库字段的确定性加密和盲索引，启动时在后台初始化，完成前为null，需要等待初始化完成时使用{@link #columnCipher()}
+     */
+    public static ColumnCipher columnCipher;
+
+    /**
+     * 后台初始化RSA密钥的任务，完成后rsa，rsaCipher和columnCipher才有值
+     */
+    private static volatile CompletableFuture<Void> rsaKeysFuture;
+
     /**
      * 构造函数
      *
-     * @param applicationName   applicationName
-     * @param active            active
-     * @param serverPort        serverPort
-     * @param objectMapper      objectMapper
-     * @param messageSource     messageSource
-     * @param redisComponent    redisComponent
-     * @param takeshiProperties takeshiProperties
+     * @param applicationName     applicationName
+     * @param active              active
+     * @param serverPort          serverPort
+     * @param objectMapper        objectMapper
+     * @param messageSource       messageSource
+     * @param redisComponent      redisComponent
+     * @param rateLimitComponent  rateLimitComponent
+     * @param takeshiProperties   takeshiProperties
+     * @param bulkheadRegistry    bulkheadRegistry
+     * @param startupOrchestrator startupOrchestrator
      */
     public StaticConfig(@Value("${spring.application.name}") String applicationName,
                         @Value("${spring.profiles.active}") String active,
@@ -96,14 +131,82 @@ public class StaticConfig {
                         ObjectMapper objectMapper,
                         MessageSource messageSource,
                         RedisComponent redisComponent,
-                        TakeshiProperties takeshiProperties) {
+                        RateLimitComponent rateLimitComponent,
+                        TakeshiProperties takeshiProperties,
+                        BulkheadRegistry bulkheadRegistry,
+                        StartupOrchestrator startupOrchestrator) {
         StaticConfig.applicationName = applicationName;
         StaticConfig.active = active;
         StaticConfig.serverPort = serverPort;
         StaticConfig.objectMapper = objectMapper;
         StaticConfig.messageSource = messageSource;
         StaticConfig.redisComponent = redisComponent;
+        StaticConfig.rateLimitComponent = rateLimitComponent;
         StaticConfig.takeshiProperties = takeshiProperties;
+        StaticConfig.bulkheadRegistry = bulkheadRegistry;
+        // RSA密钥需要访问Redis，首次启动时还要生成密钥，放到后台执行；
+        // 类型处理器和其他Bean的@PostConstruct中通过rsaCipher()等方法使用时会等待完成
+        StaticConfig.rsaKeysFuture = startupOrchestrator.submit("rsa-keys", () -> {
+            initRsaKeys(redisComponent, takeshiProperties);
+            return null;
+        });
+    }
+
+    /**
+     * 所有单例Bean创建完成后等待RSA密钥初始化完成，保证开始处理请求前已经可以加解密，初始化失败时启动失败
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        awaitRsaKeys();
+    }
+
+    /**
+     * 获取RSA，还在后台初始化时等待完成
+     *
+     * @return RSA
+     */
+    public static RSA rsa() {
+        awaitRsaKeys();
+        return StaticConfig.rsa;
+    }
+
+    /**
+     * 获取线程安全的RSA加解密，还在后台初始化时等待完成
+     *
+     * @return RsaCipher
+     */
+    public static RsaCipher rsaCipher() {
+        awaitRsaKeys();
+        return StaticConfig.rsaCipher;
+    }
+
+    /**
+     * 获取数据库字段的确定性加密和盲索引，还在后台初始化时等待完成
+     *
+     * @return ColumnCipher
+     */
+    public static ColumnCipher columnCipher() {
+        awaitRsaKeys();
+        return StaticConfig.columnCipher;
+    }
+
+    /**
+     * 等待后台初始化RSA密钥完成，没有通过Spring启动（直接给字段赋值）时不等待
+     */
+    private static void awaitRsaKeys() {
+        CompletableFuture<Void> future = StaticConfig.rsaKeysFuture;
+        if (future != null) {
+            StartupOrchestrator.await(future);
+        }
+    }
+
+    /**
+     * 从redis中读取项目的RSA公钥和私钥，没有时（只有项目第一次启动时）生成并保存到redis中
+     *
+     * @param redisComponent    redisComponent
+     * @param takeshiProperties takeshiProperties
+     */
+    private static void initRsaKeys(RedisComponent redisComponent, TakeshiProperties takeshiProperties) {
         // 保存rsa算法的公钥和私钥到redis中
         String projectPrivateKey = TakeshiRedisKeyEnum.PRIVATE_KEY_BASE64.projectKey();
         String projectPublicKey = TakeshiRedisKeyEnum.PUBLIC_KEY_BASE64.projectKey();
@@ -120,7 +223,10 @@ public class StaticConfig {
         }
         StaticConfig.privateKeyBase64 = privateKeyValue;
         StaticConfig.publicKeyBase64 = publicKeyValue;
-        StaticConfig.rsa = SecureUtil.rsa(privateKeyValue, publicKeyValue);
+        RSA rsa = SecureUtil.rsa(privateKeyValue, publicKeyValue);
+        StaticConfig.columnCipher = new ColumnCipher(takeshiProperties.getColumnCrypto(), rsa.getPrivateKey());
+        StaticConfig.rsaCipher = new RsaCipher(rsa.getPrivateKey(), rsa.getPublicKey());
+        StaticConfig.rsa = rsa;
     }
 
     /**
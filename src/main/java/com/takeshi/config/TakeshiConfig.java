@@ -3,6 +3,7 @@ package com.takeshi.config;
 import cn.dev33.satoken.config.SaTokenConfig;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.takeshi.config.security.TakeshiJsonHttpMessageConverter;
 import com.takeshi.jackson.SimpleJavaTimeModule;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -17,6 +18,7 @@ import org.springframework.context.support.ResourceBundleMessageSource;
 import org.springframework.core.Ordered;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.retry.annotation.EnableRetry;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -110,6 +112,17 @@ public class TakeshiConfig {
                 .registerModule(new SimpleJavaTimeModule());
     }
 
+    /**
+     * json消息转换器，请求body已经被解析成JsonNode时直接复用，不再重复解析
+     *
+     * @param objectMapper objectMapper
+     * @return MappingJackson2HttpMessageConverter
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new TakeshiJsonHttpMessageConverter(objectMapper);
+    }
+
     /**
      * 配置cache缓存到redis
      *
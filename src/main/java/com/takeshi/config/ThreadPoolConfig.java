@@ -1,18 +1,27 @@
 package com.takeshi.config;
 
 import cn.hutool.core.thread.ThreadUtil;
-import cn.hutool.core.util.IdUtil;
-import com.takeshi.constants.TakeshiConstants;
+import cn.hutool.core.util.ObjUtil;
+import com.takeshi.config.properties.ExecutorProperties;
+import com.takeshi.enums.ExecutorModeEnum;
 import com.takeshi.util.TakeshiThreadUtil;
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.MDC;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
@@ -55,6 +64,30 @@ public class ThreadPoolConfig {
         return executor;
     }
 
+    /**
+     * '@Async'注解使用的执行器，takeshi.executor.mode=VIRTUAL时每个任务一个虚拟线程，否则就是threadPoolTaskExecutor
+     *
+     * @param executorProperties     executorProperties
+     * @param threadPoolTaskExecutor threadPoolTaskExecutor
+     * @return AsyncTaskExecutor
+     */
+    @Bean("asyncTaskExecutor")
+    public AsyncTaskExecutor asyncTaskExecutor(ExecutorProperties executorProperties,
+                                               @Qualifier("threadPoolTaskExecutor") ThreadPoolTaskExecutor threadPoolTaskExecutor) {
+        if (executorProperties.getMode() != ExecutorModeEnum.VIRTUAL) {
+            return threadPoolTaskExecutor;
+        }
+        ThreadFactory threadFactory = TakeshiThreadUtil.newVirtualThreadFactory("async-" + serverPort + "-virtual-");
+        if (ObjUtil.isNull(threadFactory)) {
+            log.warn("ThreadPoolConfig.asyncTaskExecutor --> virtual threads require JDK 21+, running on Java {}, fall back to the platform thread pool", Runtime.version());
+            return threadPoolTaskExecutor;
+        }
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadFactory);
+        executor.setTaskDecorator(new MdcTaskDecorator());
+        executor.setConcurrencyLimit(executorProperties.getVirtualConcurrencyLimit());
+        return executor;
+    }
+
     /**
      * 执行周期性或定时任务
      *
@@ -67,7 +100,7 @@ public class ThreadPoolConfig {
                 new ThreadPoolExecutor.CallerRunsPolicy()) {
             @Override
             protected void beforeExecute(Thread t, Runnable r) {
-                MDC.put(TakeshiConstants.TRACE_ID_KEY, IdUtil.fastSimpleUUID());
+                TraceContext.newRoot().attach();
                 super.beforeExecute(t, r);
             }
 
@@ -75,9 +108,42 @@ public class ThreadPoolConfig {
             protected void afterExecute(Runnable r, Throwable t) {
                 super.afterExecute(r, t);
                 TakeshiThreadUtil.printException(r, t);
-                MDC.remove(TakeshiConstants.TRACE_ID_KEY);
+                TraceContext.clear();
             }
         };
     }
 
+    /**
+     * takeshi.executor.tomcat-virtual-threads=true时Tomcat使用虚拟线程处理请求，只在takeshi.executor.mode=VIRTUAL时生效
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.apache.coyote.ProtocolHandler")
+    @ConditionalOnProperty(prefix = "takeshi.executor", name = "tomcat-virtual-threads", havingValue = "true")
+    static class TomcatVirtualThreadConfig {
+
+        /**
+         * 把Tomcat的请求处理线程池替换为每个请求一个虚拟线程
+         *
+         * @param executorProperties executorProperties
+         * @param serverPort         serverPort
+         * @return TomcatProtocolHandlerCustomizer
+         */
+        @Bean
+        public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(ExecutorProperties executorProperties,
+                                                                                                       @Value("${server.port}") String serverPort) {
+            return protocolHandler -> {
+                if (executorProperties.getMode() != ExecutorModeEnum.VIRTUAL) {
+                    return;
+                }
+                ThreadFactory threadFactory = TakeshiThreadUtil.newVirtualThreadFactory("http-" + serverPort + "-virtual-");
+                if (ObjUtil.isNull(threadFactory)) {
+                    log.warn("TomcatVirtualThreadConfig --> virtual threads require JDK 21+, running on Java {}, keep the Tomcat thread pool", Runtime.version());
+                    return;
+                }
+                protocolHandler.setExecutor(command -> threadFactory.newThread(command).start());
+            };
+        }
+
+    }
+
 }
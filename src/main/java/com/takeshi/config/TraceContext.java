@@ -0,0 +1,273 @@
+package com.takeshi.config;
+
+import com.takeshi.constants.TakeshiConstants;
+import org.slf4j.MDC;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 链路追踪上下文，兼容W3C Trace Context（traceparent请求头）<br/>
+ * 128位的traceId和64位的spanId保存为long，不再每个请求和每个任务生成UUID字符串；traceId的十六进制字符串在第一次需要时生成一次并缓存<br/>
+ * 当前线程的上下文保存在ThreadLocal中，提交任务时只需要读取一次ThreadLocal捕获上下文，不再复制整个MDC；
+ * MDC中只放入缓存的traceId字符串，日志格式中继续使用%X{traceId}
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public final class TraceContext {
+
+    /**
+     * W3C Trace Context的版本
+     */
+    private static final String VERSION = "00";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final boolean sampled;
+
+    /**
+     * traceId的十六进制字符串，第一次使用时生成，多个线程同时生成时结果相同
+     */
+    private String traceId;
+
+    private TraceContext(long traceIdHigh, long traceIdLow, long spanId, boolean sampled) {
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.sampled = sampled;
+    }
+
+    /**
+     * 新建一个链路
+     *
+     * @return TraceContext
+     */
+    public static TraceContext newRoot() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high = random.nextLong();
+        long low = random.nextLong();
+        if (high == 0 && low == 0) {
+            // 全0的traceId是无效的
+            low = 1;
+        }
+        return new TraceContext(high, low, nextSpanId(random), true);
+    }
+
+    /**
+     * 根据上游服务传递的traceparent请求头继续链路，格式为：00-{32位traceId}-{16位parentId}-{2位flags}
+     *
+     * @param traceparent traceparent请求头
+     * @return 当前服务的TraceContext，请求头为空或格式不正确时新建一个链路
+     */
+    public static TraceContext fromTraceparent(String traceparent) {
+        if (traceparent == null || traceparent.length() < 55 || traceparent.charAt(2) != '-'
+                || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-' || traceparent.startsWith("ff")) {
+            return newRoot();
+        }
+        try {
+            long high = Long.parseUnsignedLong(traceparent, 3, 19, 16);
+            long low = Long.parseUnsignedLong(traceparent, 19, 35, 16);
+            long parentId = Long.parseUnsignedLong(traceparent, 36, 52, 16);
+            int flags = Integer.parseInt(traceparent, 53, 55, 16);
+            if ((high == 0 && low == 0) || parentId == 0) {
+                return newRoot();
+            }
+            return new TraceContext(high, low, nextSpanId(ThreadLocalRandom.current()), (flags & 1) == 1);
+        } catch (NumberFormatException e) {
+            return newRoot();
+        }
+    }
+
+    /**
+     * 当前线程的上下文
+     *
+     * @return TraceContext，没有时为null
+     */
+    public static TraceContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 当前线程的traceId，没有上下文时从MDC读取（兼容直接写入MDC的代码）
+     *
+     * @return traceId
+     */
+    public static String currentTraceId() {
+        TraceContext context = CURRENT.get();
+        return context != null ? context.traceId() : MDC.get(TakeshiConstants.TRACE_ID_KEY);
+    }
+
+    /**
+     * 调用下游服务时传递的traceparent请求头，当前线程没有上下文时返回null
+     *
+     * @return traceparent
+     */
+    public static String currentTraceparent() {
+        TraceContext context = CURRENT.get();
+        return context != null ? context.child().traceparent() : null;
+    }
+
+    /**
+     * 在当前线程中设置为当前上下文，并把traceId放入MDC；关闭返回的Scope时恢复之前的上下文
+     *
+     * @return Scope
+     */
+    public Scope attach() {
+        TraceContext previous = CURRENT.get();
+        CURRENT.set(this);
+        MDC.put(TakeshiConstants.TRACE_ID_KEY, this.traceId());
+        return new Scope(previous);
+    }
+
+    /**
+     * 清除当前线程的上下文
+     */
+    public static void clear() {
+        CURRENT.remove();
+        MDC.remove(TakeshiConstants.TRACE_ID_KEY);
+    }
+
+    /**
+     * 捕获当前线程的上下文，在执行任务的线程中恢复；提交时没有上下文则执行时新建一个链路
+     *
+     * @param runnable runnable
+     * @return Runnable
+     */
+    public static Runnable wrap(Runnable runnable) {
+        TraceContext captured = CURRENT.get();
+        return () -> {
+            try (Scope ignored = (captured != null ? captured : newRoot()).attach()) {
+                runnable.run();
+            }
+        };
+    }
+
+    /**
+     * 捕获当前线程的上下文，在执行任务的线程中恢复；提交时没有上下文则执行时新建一个链路
+     *
+     * @param callable callable
+     * @param <T>      T
+     * @return Callable
+     */
+    public static <T> Callable<T> wrap(Callable<T> callable) {
+        TraceContext captured = CURRENT.get();
+        return () -> {
+            try (Scope ignored = (captured != null ? captured : newRoot()).attach()) {
+                return callable.call();
+            }
+        };
+    }
+
+    /**
+     * 包装Executor，提交的任务都会带上提交时的上下文，可以用于CompletableFuture.supplyAsync(supplier, executor)
+     *
+     * @param executor executor
+     * @return Executor
+     */
+    public static Executor wrapExecutor(Executor executor) {
+        return command -> executor.execute(wrap(command));
+    }
+
+    /**
+     * 同一个链路中的下一个span，用于调用下游服务
+     *
+     * @return TraceContext
+     */
+    public TraceContext child() {
+        return new TraceContext(this.traceIdHigh, this.traceIdLow, nextSpanId(ThreadLocalRandom.current()), this.sampled);
+    }
+
+    /**
+     * 32位十六进制的traceId
+     *
+     * @return traceId
+     */
+    public String traceId() {
+        String traceId = this.traceId;
+        if (traceId == null) {
+            char[] chars = new char[32];
+            writeHex(chars, 0, this.traceIdHigh);
+            writeHex(chars, 16, this.traceIdLow);
+            traceId = new String(chars);
+            this.traceId = traceId;
+        }
+        return traceId;
+    }
+
+    /**
+     * W3C traceparent，parentId为当前的spanId
+     *
+     * @return traceparent
+     */
+    public String traceparent() {
+        char[] chars = new char[55];
+        VERSION.getChars(0, 2, chars, 0);
+        chars[2] = '-';
+        this.traceId().getChars(0, 32, chars, 3);
+        chars[35] = '-';
+        writeHex(chars, 36, this.spanId);
+        chars[52] = '-';
+        chars[53] = '0';
+        chars[54] = this.sampled ? '1' : '0';
+        return new String(chars);
+    }
+
+    /**
+     * 是否被上游采样
+     *
+     * @return boolean
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    @Override
+    public String toString() {
+        return this.traceparent();
+    }
+
+    private static long nextSpanId(ThreadLocalRandom random) {
+        long spanId;
+        do {
+            spanId = random.nextLong();
+        } while (spanId == 0);
+        return spanId;
+    }
+
+    private static void writeHex(char[] chars, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    /**
+     * 上下文的作用范围，关闭时恢复之前的上下文
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final TraceContext previous;
+
+        private Scope(TraceContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (this.previous == null) {
+                TraceContext.clear();
+            } else {
+                CURRENT.set(this.previous);
+                MDC.put(TakeshiConstants.TRACE_ID_KEY, this.previous.traceId());
+            }
+        }
+
+    }
+
+}
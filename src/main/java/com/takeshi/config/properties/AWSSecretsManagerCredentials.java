@@ -50,6 +50,12 @@ public class AWSSecretsManagerCredentials implements AWSCredentials {
      */
     private Duration expirationTime = Duration.ofDays(7);
 
+    /**
+     * S3上传和下载等待完成的最大时间（包括在s3隔离执行器中排队的时间），默认30分钟，可以按照文件的大小和带宽调整；
+     * 与takeshi.executors.s3.timeout分开配置，超时后调用者收到异常，进行中的传输不会被中断
+     */
+    private Duration transferTimeout = Duration.ofMinutes(30);
+
     /**
      * 存储在AWS Secrets Manager中的 AWS s3 密钥ID名称
      */
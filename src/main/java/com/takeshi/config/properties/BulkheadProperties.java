@@ -0,0 +1,58 @@
+package com.takeshi.config.properties;
+
+import com.takeshi.enums.BulkheadRejectionEnum;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.Duration;
+
+/**
+ * 隔离执行器配置，配置在takeshi.executors.{名称}下，例如：takeshi.executors.mandrill.max-size
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Data
+@Accessors(chain = true)
+public class BulkheadProperties {
+
+    /**
+     * 核心线程数
+     */
+    @Positive
+    private int coreSize = 2;
+
+    /**
+     * 最大线程数
+     */
+    @Positive
+    private int maxSize = 4;
+
+    /**
+     * 队列最大长度
+     */
+    @PositiveOrZero
+    private int queueCapacity = 100;
+
+    /**
+     * 队列满时的拒绝策略，执行器停止后（应用关闭中）总是抛出RejectedExecutionException
+     */
+    private BulkheadRejectionEnum rejection = BulkheadRejectionEnum.ABORT;
+
+    /**
+     * 同步调用时等待结果的最大时间（包括排队时间），超时后取消任务
+     */
+    private Duration timeout = Duration.ofSeconds(30);
+
+    /**
+     * 同步调用超时后是否中断正在执行的任务，为false时只取消还在排队的任务，已经开始的任务继续执行完成
+     */
+    private boolean interruptOnTimeout = true;
+
+    /**
+     * 超出核心线程数的线程允许的空闲时间
+     */
+    private Duration keepAlive = Duration.ofMinutes(1);
+
+}
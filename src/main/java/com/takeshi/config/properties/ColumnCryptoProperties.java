@@ -0,0 +1,41 @@
+package com.takeshi.config.properties;
+
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 数据库字段加密配置（AesCiphertextTypeHandler和盲索引）
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Data
+@AutoConfiguration
+@ConfigurationProperties(prefix = "takeshi.column-crypto")
+@Validated
+public class ColumnCryptoProperties {
+
+    /**
+     * 加密新数据时使用的密钥版本，旧版本的密钥保留在keys中用于解密已有的数据
+     */
+    @PositiveOrZero
+    private int currentVersion = 1;
+
+    /**
+     * 密钥版本 -> Base64编码的AES密钥（16，24或32字节）<br/>
+     * 没有配置时由项目的RSA私钥派生出currentVersion对应的密钥
+     */
+    private Map<Integer, String> keys = new LinkedHashMap<>();
+
+    /**
+     * 计算盲索引使用的Base64编码的HMAC密钥，不随数据密钥轮换，修改后需要重新计算所有盲索引<br/>
+     * 没有配置时由项目的RSA私钥派生
+     */
+    private String indexKey;
+
+}
@@ -0,0 +1,44 @@
+package com.takeshi.config.properties;
+
+import com.takeshi.enums.ExecutorModeEnum;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 异步任务执行器配置
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Data
+@AutoConfiguration
+@ConfigurationProperties(prefix = "takeshi.executor")
+@Validated
+public class ExecutorProperties {
+
+    /**
+     * '@Async'注解使用的执行器模式
+     */
+    private ExecutorModeEnum mode = ExecutorModeEnum.PLATFORM;
+
+    /**
+     * VIRTUAL模式下同时执行的异步任务的最大数量，-1表示不限制
+     */
+    private int virtualConcurrencyLimit = -1;
+
+    /**
+     * VIRTUAL模式下Tomcat是否也使用虚拟线程处理请求
+     */
+    private boolean tomcatVirtualThreads;
+
+    /**
+     * 每种资源同时使用的最大数量，例如：db: 10，redis: 64，通过{@link com.takeshi.component.ResourceLimiter}限制<br/>
+     * 没有配置db时使用连接池的最大连接数（Hikari，Tomcat，DBCP2等Spring Boot能识别的连接池），没有配置redis时为64（Redisson默认的连接池大小）
+     */
+    private Map<String, Integer> resourceLimits = new HashMap<>();
+
+}
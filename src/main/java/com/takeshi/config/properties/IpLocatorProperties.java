@@ -0,0 +1,44 @@
+package com.takeshi.config.properties;
+
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * 离线IP地址库配置
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Data
+@AutoConfiguration
+@ConfigurationProperties(prefix = "takeshi.ip-locator")
+@Validated
+public class IpLocatorProperties {
+
+    /**
+     * ip2region的xdb格式的IP地址库文件路径，以classpath:开头则从classpath中读取（classpath中的文件不支持热加载）<br/>
+     * 文件需要自行下载放到此路径，框架中不包含
+     */
+    private String dbPath = "ip2region.xdb";
+
+    /**
+     * 找不到地址库文件时是否使用在线接口查询，每次查询都是一次同步的HTTP请求，放好地址库文件后自动切换为离线查询
+     */
+    private boolean onlineFallback = true;
+
+    /**
+     * 最近查询过的IP的缓存数量
+     */
+    @Positive
+    private int cacheSize = 4096;
+
+    /**
+     * 检查IP地址库文件是否有更新的时间间隔，文件有变化时将重新加载，无需重启
+     */
+    private Duration reloadInterval = Duration.ofMinutes(1);
+
+}
@@ -0,0 +1,154 @@
+package com.takeshi.config.properties;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * 请求日志配置
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Data
+@AutoConfiguration
+@ConfigurationProperties(prefix = "takeshi.log")
+@Validated
+public class LogProperties {
+
+    /**
+     * 响应内容直接写回客户端，只截取前面这部分用于打印日志和记录到数据库，超出的部分不会记录
+     */
+    private DataSize responseCaptureSize = DataSize.ofKilobytes(64);
+
+    /**
+     * 可以记录为文本的响应类型，支持通配符，其他类型（例如：application/pdf，image/png）视为二进制内容，不会记录响应内容
+     */
+    private String[] textContentTypes = {"text/*", "application/json", "application/*+json", "application/xml", "application/*+xml", "application/javascript", "application/x-www-form-urlencoded"};
+
+    /**
+     * 打印请求参数和响应内容，以及记录接口日志（TbSysLog）的采样率，0~1，可以通过@TakeshiLog单独设置<br/>
+     * 没有被采样的请求，出错或者慢请求仍然会在请求结束时打印和记录
+     */
+    @DecimalMin("0")
+    @DecimalMax("1")
+    private double sampleRate = 1;
+
+    /**
+     * 超过这个耗时的请求视为慢请求，总是会打印和记录日志
+     */
+    private Duration slowThreshold = Duration.ofSeconds(3);
+
+    /**
+     * 打印和记录日志时请求头，请求参数，响应内容每个字段最多保留的长度，超出的部分截断，可以通过@TakeshiLog单独设置
+     */
+    private DataSize maxFieldSize = DataSize.ofKilobytes(64);
+
+    /**
+     * 记录的请求头，不区分大小写，为空则记录所有不在headerDenyList中的请求头
+     */
+    private String[] headerAllowList = {};
+
+    /**
+     * 不记录的请求头，不区分大小写
+     */
+    private String[] headerDenyList = {"Authorization", "Cookie"};
+
+    /**
+     * 接口日志（TbSysLog）批量写入数据库的配置
+     */
+    private SysLog sysLog = new SysLog();
+
+    /**
+     * 接口日志（TbSysLog）归档的配置
+     */
+    private Archive archive = new Archive();
+
+    /**
+     * 接口日志批量写入数据库的配置
+     */
+    @Data
+    public static class SysLog {
+
+        /**
+         * 等待写入的日志最多缓存的条数，会向上取整为2的幂
+         */
+        @Positive
+        private int bufferSize = 8192;
+
+        /**
+         * 每次批量写入的最大条数
+         */
+        @Positive
+        private int batchSize = 200;
+
+        /**
+         * 未达到批量写入的条数时，最多等待这么久写入一次
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        /**
+         * 缓存已满时请求线程最多等待的时间，设置0则直接丢弃这条日志
+         */
+        private Duration offerTimeout = Duration.ZERO;
+
+        /**
+         * 本地日志文件的目录，数据库写入失败或者来不及写入时先写入本地日志文件，数据库恢复后再重新写入数据库<br/>
+         * 设置为空则不使用本地日志文件，数据库写入失败的日志会被丢弃
+         */
+        private String journalDir = "sys-log-journal";
+
+        /**
+         * 本地日志文件每个段文件的大小
+         */
+        private DataSize journalSegmentSize = DataSize.ofMegabytes(16);
+
+        /**
+         * 数据库写入失败后，间隔多久再尝试将本地日志文件重新写入数据库
+         */
+        private Duration journalRetryInterval = Duration.ofSeconds(10);
+
+    }
+
+    /**
+     * 接口日志归档的配置，定时将数据库中已经结束的日期的日志按天和日志类型移动到本地的列式压缩文件中
+     */
+    @Data
+    public static class Archive {
+
+        /**
+         * 是否开启归档
+         */
+        private boolean enabled;
+
+        /**
+         * 归档文件的目录，多个实例时需要使用共享的存储，否则每个实例只能查询到自己归档的日志
+         */
+        private String dir = "sys-log-archive";
+
+        /**
+         * 数据库中保留最近几天（包含今天）的日志，更早的日志会被归档
+         */
+        @Positive
+        private int retainDays = 7;
+
+        /**
+         * 归档任务执行的cron表达式，使用takeshi.log.archive.cron配置
+         */
+        private String cron = "0 30 2 * * ?";
+
+        /**
+         * 归档文件每个行组的行数，也是每次从数据库读取的条数
+         */
+        @Positive
+        private int rowGroupSize = 8192;
+
+    }
+
+}
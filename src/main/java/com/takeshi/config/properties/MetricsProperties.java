@@ -0,0 +1,38 @@
+package com.takeshi.config.properties;
+
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * 接口耗时统计配置
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Data
+@AutoConfiguration
+@ConfigurationProperties(prefix = "takeshi.metrics")
+@Validated
+public class MetricsProperties {
+
+    /**
+     * 是否按接口统计耗时分布
+     */
+    private boolean enabled = true;
+
+    /**
+     * 百分位数，最大值和吞吐量统计的时间窗口，窗口分为windowCount段轮换，统计的是最近这段时间内的请求
+     */
+    private Duration window = Duration.ofMinutes(1);
+
+    /**
+     * 时间窗口分为几段轮换，越多越平滑，每段会多占用一份直方图的内存
+     */
+    @Positive
+    private int windowCount = 3;
+
+}
@@ -1,5 +1,8 @@
 package com.takeshi.config.properties;
 
+import com.takeshi.enums.RateLimitModeEnum;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
@@ -8,6 +11,8 @@ import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
+
 /**
  * RateLimitProperties
  *
@@ -26,6 +31,25 @@ public class RateLimitProperties {
     @PositiveOrZero
     private int maxTimeDiff = 0;
 
+    /**
+     * IP速率限制的模式，nonce和重复提交始终在redis中校验
+     */
+    private RateLimitModeEnum mode = RateLimitModeEnum.REDIS;
+
+    /**
+     * hybrid模式下每次从redis租借的配额占速率的比例（例如：速率100，比例0.2则每次租借20个）<br/>
+     * 比例越大访问redis的次数越少，但是节点空闲时未用完的配额越多，集群总数不会超出速率
+     */
+    @DecimalMin("0.01")
+    @DecimalMax("1")
+    private double leaseRatio = 0.2;
+
+    /**
+     * 集群的节点数，hybrid模式下redis不可用时每个节点只允许速率 / 节点数的请求，避免集群的总数成倍超出速率
+     */
+    @Positive
+    private int expectedInstances = 1;
+
     /**
      * 接口header里传递的nonce限制
      */
@@ -36,6 +60,11 @@ public class RateLimitProperties {
      */
     private IpRate ip = new IpRate();
 
+    /**
+     * 本地缓存的IP黑名单和正常的IP，减少每次请求对redis的访问，IP加入或移出黑名单时会通过redis广播到所有节点
+     */
+    private IpCache ipCache = new IpCache();
+
     /**
      * 接口header里传递的nonce限制，例如：设置一天内nonce只能使用一次
      */
@@ -91,4 +120,23 @@ public class RateLimitProperties {
 
     }
 
+    /**
+     * 本地缓存的IP黑名单和正常的IP
+     */
+    @Data
+    public static class IpCache {
+
+        /**
+         * 最多缓存的IP数量
+         */
+        @Positive
+        private int capacity = 10000;
+
+        /**
+         * 缓存时间，设置0则不使用本地缓存
+         */
+        private Duration ttl = Duration.ofMinutes(1);
+
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.takeshi.config.properties;
+
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * 启动配置
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Data
+@AutoConfiguration
+@ConfigurationProperties(prefix = "takeshi.startup")
+@Validated
+public class StartupProperties {
+
+    /**
+     * 启动时并行执行初始化任务（RSA密钥，响应状态码扫描，第三方客户端预热）的线程数
+     */
+    @Positive
+    private int parallelism = 4;
+
+    /**
+     * 是否在启动时后台预热已配置的第三方客户端（AWS S3，Firebase，Mandrill），不预热时在第一次使用时才初始化
+     */
+    private boolean warmUpClients;
+
+}
@@ -8,8 +8,12 @@ import jakarta.validation.constraints.Positive;
 import lombok.Data;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.annotation.Validated;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * 自定义额外属性值
  *
@@ -43,11 +47,17 @@ public class TakeshiProperties {
     private boolean includeErrorFieldName = true;
 
     /**
-     * 优雅关闭时，定时任务关闭的最大超时时间（单位：秒）
+     * 优雅关闭时，所有关闭阶段（等待任务完成，写入缓冲的日志，关闭客户端）加起来的最大超时时间（单位：秒），
+     * 等待任务完成最多到60%，写入缓冲的日志最多到90%，参考{@link com.takeshi.enums.ShutdownPhaseEnum}
      */
     @Positive
     private long maxExecutorCloseTimeout = 30;
 
+    /**
+     * 请求body允许的最大大小，超出时直接返回413，上传文件的请求不受此限制
+     */
+    private DataSize maxRequestBodySize = DataSize.ofMegabytes(10);
+
     /**
      * 默认会排除{@link TakeshiConstants#EXCLUDE_URL}<br/>
      * 需要额外排除的URL，排除的URL将不会进入TakeshiFilter和TakeshiInterceptor和TakeshiSaTokenConfig逻辑
@@ -91,4 +101,47 @@ public class TakeshiProperties {
     @Resource
     private TwilioProperties twilio;
 
+    /**
+     * 离线IP地址库配置
+     */
+    @Resource
+    private IpLocatorProperties ipLocator;
+
+    /**
+     * 请求日志配置
+     */
+    @Resource
+    private LogProperties log;
+
+    /**
+     * 接口耗时统计配置
+     */
+    @Resource
+    private MetricsProperties metrics;
+
+    /**
+     * 数据库字段加密配置
+     */
+    @Resource
+    private ColumnCryptoProperties columnCrypto;
+
+    /**
+     * 启动配置
+     */
+    @Resource
+    @Valid
+    private StartupProperties startup;
+
+    /**
+     * 异步任务执行器配置
+     */
+    @Resource
+    private ExecutorProperties executor;
+
+    /**
+     * 每个第三方集成（s3，firebase，mandrill，sms）单独的隔离执行器配置，没有配置的使用默认值
+     */
+    @Valid
+    private Map<String, BulkheadProperties> executors = new HashMap<>();
+
 }
@@ -1,12 +1,8 @@
 package com.takeshi.config.satoken;
 
-import cn.hutool.core.util.ArrayUtil;
-import com.takeshi.config.StaticConfig;
-import com.takeshi.constants.TakeshiConstants;
 import com.takeshi.jackson.BigDecimalFormatAnnotationFormatterFactory;
 import com.takeshi.jackson.NumZeroFormatAnnotationFormatterFactory;
 import org.springframework.format.FormatterRegistry;
-import org.springframework.web.servlet.config.annotation.InterceptorRegistration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -33,13 +29,8 @@ public interface TakeshiSaTokenConfig extends WebMvcConfigurer {
      */
     @Override
     default void addInterceptors(InterceptorRegistry registry) {
-        // 注册注解拦截器
-        InterceptorRegistration interceptorRegistration = registry.addInterceptor(this.saRouteBuild());
-        interceptorRegistration.addPathPatterns("/**").excludePathPatterns(TakeshiConstants.EXCLUDE_URL);
-        String[] excludeUrl = StaticConfig.takeshiProperties.getExcludeUrl();
-        if (ArrayUtil.isNotEmpty(excludeUrl)) {
-            interceptorRegistration.excludePathPatterns(excludeUrl);
-        }
+        // 注册注解拦截器，排除的URL在拦截器中使用与TakeshiFilter相同的ExcludeUrlMatcher判断
+        registry.addInterceptor(this.saRouteBuild()).addPathPatterns("/**");
     }
 
     /**
@@ -0,0 +1,219 @@
+package com.takeshi.config.security;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.CryptoException;
+import com.takeshi.config.properties.ColumnCryptoProperties;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 数据库字段的确定性加密和盲索引<br/>
+ * 加密使用SIV（合成IV）结构，JDK没有提供AES-GCM-SIV，GCM也不允许同一个密钥重复使用IV：
+ * SIV = HMAC-SHA256(版本 + 明文)的前16字节，以SIV作为计数器的初始值使用AES-CTR加密，解密后重新计算SIV校验，数据被篡改时解密失败；
+ * 相同版本的密钥下相同的明文得到相同的密文，密文格式为 v{版本}:Base64(SIV + 密文)，
+ * 解密时按版本选择密钥，轮换密钥后旧数据仍然可以解密<br/>
+ * 盲索引为HMAC-SHA256(明文)的前16字节的Hex，使用单独的密钥且不随数据密钥轮换，可以存到单独的字段并建立索引用于等值查询
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public final class ColumnCipher {
+
+    /**
+     * 密文的前缀
+     */
+    public static final String VERSION_PREFIX = "v";
+
+    private static final char VERSION_SEPARATOR = ':';
+    private static final String AES = "AES";
+    private static final String HMAC = "HmacSHA256";
+    private static final String TRANSFORMATION = "AES/CTR/NoPadding";
+    private static final int SIV_LENGTH = 16;
+    private static final int INDEX_LENGTH = 16;
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    });
+
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(HMAC);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    });
+
+    private final int currentVersion;
+    private final Map<Integer, VersionKey> keys = new HashMap<>();
+    private final SecretKey indexKey;
+
+    /**
+     * 构造函数
+     *
+     * @param properties 字段加密配置
+     * @param privateKey 项目的RSA私钥，没有配置密钥时用于派生密钥
+     */
+    public ColumnCipher(ColumnCryptoProperties properties, PrivateKey privateKey) {
+        this.currentVersion = properties.getCurrentVersion();
+        properties.getKeys().forEach((version, key) -> this.keys.put(version, new VersionKey(version, Base64.decode(key))));
+        if (!this.keys.containsKey(this.currentVersion)) {
+            if (!properties.getKeys().isEmpty()) {
+                throw new CryptoException("takeshi.column-crypto.keys does not contain the current version {}", this.currentVersion);
+            }
+            this.keys.put(this.currentVersion, new VersionKey(this.currentVersion, derive(privateKey.getEncoded(), "takeshi:column-key:" + this.currentVersion)));
+        }
+        byte[] index = StrUtil.isNotBlank(properties.getIndexKey()) ? Base64.decode(properties.getIndexKey()) : derive(privateKey.getEncoded(), "takeshi:blind-index");
+        this.indexKey = new SecretKeySpec(index, HMAC);
+    }
+
+    /**
+     * 使用当前版本的密钥加密
+     *
+     * @param data 明文
+     * @return v{版本}:Base64(SIV + 密文)
+     */
+    public String encrypt(String data) {
+        VersionKey versionKey = this.keys.get(this.currentVersion);
+        byte[] plaintext = data.getBytes(StandardCharsets.UTF_8);
+        byte[] siv = versionKey.siv(plaintext);
+        byte[] bytes = Arrays.copyOf(siv, SIV_LENGTH + plaintext.length);
+        try {
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, versionKey.encKey, new IvParameterSpec(siv));
+            cipher.doFinal(plaintext, 0, plaintext.length, bytes, SIV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        return VERSION_PREFIX + this.currentVersion + VERSION_SEPARATOR + Base64.encode(bytes);
+    }
+
+    /**
+     * 按密文中的版本选择密钥解密
+     *
+     * @param data v{版本}:Base64(SIV + 密文)
+     * @return 明文
+     */
+    public String decrypt(String data) {
+        int separator = data.indexOf(VERSION_SEPARATOR);
+        if (!isCiphertext(data) || separator < 0) {
+            throw new CryptoException("Invalid column ciphertext");
+        }
+        VersionKey versionKey = this.keys.get(Integer.valueOf(data.substring(VERSION_PREFIX.length(), separator)));
+        if (versionKey == null) {
+            throw new CryptoException("Unknown column key version: {}", data.substring(0, separator));
+        }
+        byte[] bytes = Base64.decode(data.substring(separator + 1));
+        if (bytes.length < SIV_LENGTH) {
+            throw new CryptoException("Invalid column ciphertext");
+        }
+        byte[] plaintext;
+        try {
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, versionKey.encKey, new IvParameterSpec(bytes, 0, SIV_LENGTH));
+            plaintext = cipher.doFinal(bytes, SIV_LENGTH, bytes.length - SIV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        if (!MessageDigest.isEqual(versionKey.siv(plaintext), Arrays.copyOf(bytes, SIV_LENGTH))) {
+            throw new CryptoException("Column ciphertext authentication failed");
+        }
+        return new String(plaintext, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 计算盲索引
+     *
+     * @param data 明文，区分大小写和空格，需要忽略时先自行规范化
+     * @return 32位的Hex字符串，data为null时返回null
+     */
+    public String blindIndex(String data) {
+        return data == null ? null : HexUtil.encodeHexStr(Arrays.copyOf(hmac(this.indexKey, data.getBytes(StandardCharsets.UTF_8)), INDEX_LENGTH));
+    }
+
+    /**
+     * 是否是本类加密的密文（v{版本}:开头），用于和旧的RSA密文区分
+     *
+     * @param data 数据库中的值
+     * @return boolean
+     */
+    public static boolean isCiphertext(String data) {
+        if (data == null || !data.startsWith(VERSION_PREFIX)) {
+            return false;
+        }
+        int separator = data.indexOf(VERSION_SEPARATOR);
+        if (separator <= VERSION_PREFIX.length()) {
+            return false;
+        }
+        for (int i = VERSION_PREFIX.length(); i < separator; i++) {
+            if (!Character.isDigit(data.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] hmac(SecretKey key, byte[] data) {
+        Mac mac = MAC.get();
+        try {
+            mac.init(key);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        return mac.doFinal(data);
+    }
+
+    private static byte[] derive(byte[] secret, String label) {
+        return hmac(new SecretKeySpec(secret, HMAC), label.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 一个版本的密钥，由配置的密钥派生出加密密钥和计算SIV的密钥，互相独立
+     */
+    private static final class VersionKey {
+
+        private final SecretKey encKey;
+        private final SecretKey sivKey;
+        private final byte[] aad;
+
+        VersionKey(int version, byte[] key) {
+            if (key.length != 16 && key.length != 24 && key.length != 32) {
+                throw new CryptoException("Invalid column key length: {}", key.length);
+            }
+            this.encKey = new SecretKeySpec(Arrays.copyOf(derive(key, "enc"), key.length), AES);
+            this.sivKey = new SecretKeySpec(derive(key, "siv"), HMAC);
+            this.aad = (VERSION_PREFIX + version + VERSION_SEPARATOR).getBytes(StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * HMAC-SHA256(版本 + 明文)的前16字节，密文中带上版本，避免不同版本的密文互相替换
+         */
+        byte[] siv(byte[] plaintext) {
+            Mac mac = MAC.get();
+            try {
+                mac.init(this.sivKey);
+            } catch (GeneralSecurityException e) {
+                throw new CryptoException(e);
+            }
+            mac.update(this.aad);
+            return Arrays.copyOf(mac.doFinal(plaintext), SIV_LENGTH);
+        }
+
+    }
+
+}
@@ -1,9 +1,8 @@
 package com.takeshi.config.security;
 
-import cn.hutool.core.annotation.AnnotationUtil;
 import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.ObjUtil;
 import cn.hutool.crypto.asymmetric.KeyType;
-import com.takeshi.annotation.SystemSecurity;
 import com.takeshi.config.StaticConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.MethodParameter;
@@ -11,12 +10,15 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
 
+import javax.crypto.SecretKey;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Method;
 import java.lang.reflect.Type;
-import java.util.Objects;
 
 /**
  * 请求的数据解密，@RequestBody 注解的参数生效
@@ -38,15 +40,11 @@ public class DecodeRequestBodyAdvice extends RequestBodyAdviceAdapter {
      */
     @Override
     public boolean supports(MethodParameter methodParameter, Type targetType, Class<? extends HttpMessageConverter<?>> converterType) {
-        SystemSecurity methodAnnotation = methodParameter.getMethodAnnotation(SystemSecurity.class);
-        if (Objects.nonNull(methodAnnotation)) {
-            return methodAnnotation.inDecode();
+        Method method = methodParameter.getMethod();
+        if (method == null) {
+            return false;
         }
-        SystemSecurity classAnnotation = AnnotationUtil.getAnnotation(methodParameter.getContainingClass(), SystemSecurity.class);
-        if (Objects.nonNull(classAnnotation)) {
-            return classAnnotation.inDecode();
-        }
-        return false;
+        return EndpointPolicy.of(methodParameter.getContainingClass(), method).isInDecode();
     }
 
     /**
@@ -60,12 +58,22 @@ public class DecodeRequestBodyAdvice extends RequestBodyAdviceAdapter {
      */
     @Override
     public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage, MethodParameter parameter, Type targetType, Class<? extends HttpMessageConverter<?>> converterType) throws IOException {
-        // 前端使用rsa公钥加密，这里使用rsa私钥解密
-        byte[] body = StaticConfig.rsa.decrypt(IoUtil.readUtf8(inputMessage.getBody()), KeyType.PrivateKey);
+        SecretKey secretKey = null;
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes servletRequestAttributes) {
+            secretKey = EnvelopeCipher.sessionKey(servletRequestAttributes.getRequest());
+        }
+        InputStream body;
+        if (ObjUtil.isNotNull(secretKey)) {
+            // 信封加密，边读取边使用AES-GCM解密，读取IV时已经读取了body，不会再复用TakeshiHttpRequestWrapper中解析的JsonNode
+            body = EnvelopeCipher.decrypt(secretKey, inputMessage.getBody());
+        } else {
+            // 前端使用rsa公钥加密，这里使用rsa私钥解密
+            body = IoUtil.toStream(StaticConfig.rsaCipher().decrypt(IoUtil.readUtf8(inputMessage.getBody()), KeyType.PrivateKey));
+        }
         return new HttpInputMessage() {
             @Override
             public InputStream getBody() throws IOException {
-                return IoUtil.toStream(body);
+                return body;
             }
 
             @Override
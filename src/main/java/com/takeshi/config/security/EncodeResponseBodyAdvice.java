@@ -1,9 +1,7 @@
 package com.takeshi.config.security;
 
-import cn.hutool.core.annotation.AnnotationUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.crypto.asymmetric.KeyType;
-import com.takeshi.annotation.SystemSecurity;
 import com.takeshi.config.StaticConfig;
 import com.takeshi.pojo.basic.ResponseData;
 import com.takeshi.util.GsonUtil;
@@ -13,11 +11,13 @@ import org.springframework.http.MediaType;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.lang.Nullable;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
 
-import java.util.Objects;
+import javax.crypto.SecretKey;
+import java.lang.reflect.Method;
 
 /**
  * 返回结果中的data字段加密
@@ -39,15 +39,11 @@ public class EncodeResponseBodyAdvice implements ResponseBodyAdvice<ResponseData
      */
     @Override
     public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
-        SystemSecurity methodAnnotation = returnType.getMethodAnnotation(SystemSecurity.class);
-        if (Objects.nonNull(methodAnnotation)) {
-            return methodAnnotation.outEncode();
+        Method method = returnType.getMethod();
+        if (method == null) {
+            return false;
         }
-        SystemSecurity classAnnotation = AnnotationUtil.getAnnotation(returnType.getContainingClass(), SystemSecurity.class);
-        if (Objects.nonNull(classAnnotation)) {
-            return classAnnotation.outEncode();
-        }
-        return false;
+        return EndpointPolicy.of(returnType.getContainingClass(), method).isOutEncode();
     }
 
     /**
@@ -65,9 +61,16 @@ public class EncodeResponseBodyAdvice implements ResponseBodyAdvice<ResponseData
     @Override
     public ResponseData<Object> beforeBodyWrite(@Nullable ResponseData<Object> body, MethodParameter returnType, MediaType selectedContentType, Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request, ServerHttpResponse response) {
         if (ObjUtil.isNotNull(body) && ObjUtil.isNotNull(body.getData())) {
+            SecretKey secretKey = request instanceof ServletServerHttpRequest servletServerHttpRequest
+                    ? EnvelopeCipher.sessionKey(servletServerHttpRequest.getServletRequest()) : null;
+            if (ObjUtil.isNotNull(secretKey)) {
+                // 信封加密，使用前端传递的AES密钥加密，前端使用同一个AES密钥解密
+                body.setData(EnvelopeCipher.encrypt(secretKey, body.getData()));
+                return body;
+            }
             // 这里使用rsa私钥加密，前端使用rsa公钥解密
             String str = CharSequence.class.isAssignableFrom(body.getData().getClass()) ? (String) body.getData() : GsonUtil.toJson(body.getData());
-            String data = StaticConfig.rsa.encryptBase64(str, KeyType.PrivateKey);
+            String data = StaticConfig.rsaCipher().encryptBase64(str, KeyType.PrivateKey);
             body.setData(data);
         }
         return body;
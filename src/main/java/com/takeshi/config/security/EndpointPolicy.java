@@ -0,0 +1,258 @@
+package com.takeshi.config.security;
+
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.util.StrUtil;
+import com.takeshi.annotation.RepeatSubmit;
+import com.takeshi.annotation.SystemSecurity;
+import com.takeshi.annotation.TakeshiLog;
+import com.takeshi.component.SysLogWriter;
+import com.takeshi.config.StaticConfig;
+import com.takeshi.config.properties.LogProperties;
+import com.takeshi.config.properties.RateLimitProperties;
+import com.takeshi.config.properties.TakeshiProperties;
+import com.takeshi.constants.TakeshiCode;
+import com.takeshi.enums.SignatureAlgorithmEnum;
+import com.takeshi.pojo.bo.RetBO;
+import lombok.Getter;
+import org.redisson.api.RateIntervalUnit;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 接口的安全策略，每个接口方法第一次请求时解析注解并与yml配置合并，之后直接从缓存中获取<br/>
+ * TakeshiInterceptor，DecodeRequestBodyAdvice，EncodeResponseBodyAdvice都从这里读取接口的配置
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Getter
+public final class EndpointPolicy {
+
+    /**
+     * 按Controller类型分开缓存，同一个方法被不同的子类Controller继承时注解可能不同
+     */
+    private static final ClassValue<Map<Method, EndpointPolicy>> CACHE = new ClassValue<>() {
+        @Override
+        protected Map<Method, EndpointPolicy> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>(16);
+        }
+    };
+
+    /**
+     * 带包名类名的完整的方法名
+     */
+    private final String methodName;
+
+    /**
+     * TakeshiLog注解
+     */
+    private final TakeshiLog takeshiLog;
+
+    /**
+     * 记录日志时排除的字段名称，包含{@link SysLogWriter#EXCLUSION_FIELD_NAME}
+     */
+    private final String[] logExclusionFieldName;
+
+    /**
+     * 打印和记录日志的采样率
+     */
+    private final double logSampleRate;
+
+    /**
+     * 打印和记录日志时每个字段最多保留的长度
+     */
+    private final int logMaxFieldSize;
+
+    /**
+     * 放弃校验token
+     */
+    private final boolean passToken;
+
+    /**
+     * 放弃校验APP端调用接口的平台
+     */
+    private final boolean passPlatform;
+
+    /**
+     * 需要校验参数签名
+     */
+    private final boolean signVerify;
+
+    /**
+     * 参数签名的算法
+     */
+    private final SignatureAlgorithmEnum signatureAlgorithm;
+
+    /**
+     * 入参解密
+     */
+    private final boolean inDecode;
+
+    /**
+     * 出参加密
+     */
+    private final boolean outEncode;
+
+    /**
+     * 请求时间与当前时间最多相差的秒数，0则不校验
+     */
+    private final int maxTimeDiff;
+
+    /**
+     * nonce限制的速率
+     */
+    private final int nonceRate;
+
+    /**
+     * nonce限制的速率时间间隔，0则不限制
+     */
+    private final int nonceRateInterval;
+
+    /**
+     * nonce限制的速率时间间隔单位
+     */
+    private final RateIntervalUnit nonceRateIntervalUnit;
+
+    /**
+     * IP限制的速率
+     */
+    private final RateLimitProperties.IpRate ipRate;
+
+    /**
+     * IP限制的速率是被RepeatSubmit中的配置覆盖了的
+     */
+    private final boolean ipOverwritten;
+
+    /**
+     * 重复提交的时间间隔，0则不校验
+     */
+    private final int repeatRateInterval;
+
+    /**
+     * 重复提交的时间间隔单位
+     */
+    private final RateIntervalUnit repeatRateIntervalUnit;
+
+    /**
+     * 重复提交校验排除的字段名称
+     */
+    private final String[] repeatExclusionFieldName;
+
+    /**
+     * 重复提交时返回的结果
+     */
+    private final RetBO repeatRetBO;
+
+    private EndpointPolicy(Class<?> beanType, Method method) {
+        TakeshiProperties takeshiProperties = StaticConfig.takeshiProperties;
+        RateLimitProperties rate = takeshiProperties.getRate();
+        this.methodName = StrUtil.builder(method.getDeclaringClass().getName(), StrUtil.DOT, method.getName()).toString();
+
+        this.takeshiLog = AnnotatedElementUtils.findMergedAnnotation(method, TakeshiLog.class);
+        this.logExclusionFieldName = ObjUtil.isNull(this.takeshiLog) ? SysLogWriter.EXCLUSION_FIELD_NAME
+                : ArrayUtil.addAll(SysLogWriter.EXCLUSION_FIELD_NAME, this.takeshiLog.exclusionFieldName());
+        LogProperties logProperties = takeshiProperties.getLog();
+        this.logSampleRate = ObjUtil.isNotNull(this.takeshiLog) && this.takeshiLog.sampleRate() >= 0
+                ? Math.min(1, this.takeshiLog.sampleRate()) : logProperties.getSampleRate();
+        this.logMaxFieldSize = ObjUtil.isNotNull(this.takeshiLog) && this.takeshiLog.maxFieldSize() >= 0
+                ? this.takeshiLog.maxFieldSize() : (int) Math.min(Integer.MAX_VALUE, logProperties.getMaxFieldSize().toBytes());
+
+        // 方法上的注解优先于类上的注解
+        SystemSecurity systemSecurity = AnnotatedElementUtils.findMergedAnnotation(method, SystemSecurity.class);
+        if (ObjUtil.isNull(systemSecurity)) {
+            systemSecurity = AnnotatedElementUtils.findMergedAnnotation(beanType, SystemSecurity.class);
+        }
+        boolean all = ObjUtil.isNotNull(systemSecurity) && systemSecurity.all();
+        this.passToken = all || (ObjUtil.isNotNull(systemSecurity) && systemSecurity.token());
+        this.passPlatform = all || (ObjUtil.isNotNull(systemSecurity) && systemSecurity.platform());
+        boolean passSignature = all || (ObjUtil.isNotNull(systemSecurity) && systemSecurity.signature());
+        this.signVerify = StrUtil.isNotBlank(takeshiProperties.getSignatureKey()) && !passSignature;
+        this.signatureAlgorithm = ObjUtil.isNull(systemSecurity) ? SignatureAlgorithmEnum.MD5 : systemSecurity.signatureAlgorithm();
+        this.inDecode = ObjUtil.isNotNull(systemSecurity) && systemSecurity.inDecode();
+        this.outEncode = ObjUtil.isNotNull(systemSecurity) && systemSecurity.outEncode();
+
+        RepeatSubmit repeatSubmit = AnnotatedElementUtils.findMergedAnnotation(method, RepeatSubmit.class);
+        boolean hasRepeatSubmit = ObjUtil.isNotNull(repeatSubmit);
+        this.maxTimeDiff = hasRepeatSubmit && repeatSubmit.maxTimeDiff() >= 0 ? repeatSubmit.maxTimeDiff() : rate.getMaxTimeDiff();
+
+        // 通过RepeatSubmit注解的值重新设定当前接口的nonce限制速率
+        RateLimitProperties.NonceRate nonce = rate.getNonce();
+        boolean nonceOverwritten = hasRepeatSubmit && repeatSubmit.nonceRateInterval() > 0;
+        this.nonceRate = nonceOverwritten ? repeatSubmit.nonceRate() : nonce.getRate();
+        this.nonceRateInterval = nonceOverwritten ? repeatSubmit.nonceRateInterval() : nonce.getRateInterval();
+        this.nonceRateIntervalUnit = nonceOverwritten ? repeatSubmit.nonceRateIntervalUnit() : nonce.getRateIntervalUnit();
+
+        // 通过RepeatSubmit注解的值重新设定当前接口的IP限制速率
+        this.ipOverwritten = hasRepeatSubmit && repeatSubmit.ipRateInterval() > 0;
+        if (this.ipOverwritten) {
+            RateLimitProperties.IpRate ipRate = new RateLimitProperties.IpRate();
+            ipRate.setRate(repeatSubmit.ipRate());
+            ipRate.setRateInterval(repeatSubmit.ipRateInterval());
+            ipRate.setRateIntervalUnit(repeatSubmit.ipRateIntervalUnit());
+            ipRate.setOpenBlacklist(repeatSubmit.ipRateOpenBlacklist());
+            this.ipRate = ipRate;
+        } else {
+            this.ipRate = rate.getIp();
+        }
+
+        this.repeatRateInterval = hasRepeatSubmit ? repeatSubmit.rateInterval() : 0;
+        this.repeatRateIntervalUnit = hasRepeatSubmit ? repeatSubmit.rateIntervalUnit() : RateIntervalUnit.SECONDS;
+        this.repeatExclusionFieldName = hasRepeatSubmit ? repeatSubmit.exclusionFieldName() : new String[0];
+        RetBO repeatSubmitCode = TakeshiCode.REPEAT_SUBMIT;
+        this.repeatRetBO = hasRepeatSubmit && StrUtil.isNotBlank(repeatSubmit.msg())
+                ? new RetBO(repeatSubmitCode.getCode(), repeatSubmit.msg()) : repeatSubmitCode;
+    }
+
+    /**
+     * 获取接口的安全策略
+     *
+     * @param handlerMethod handlerMethod
+     * @return EndpointPolicy
+     */
+    public static EndpointPolicy of(HandlerMethod handlerMethod) {
+        return of(handlerMethod.getBeanType(), handlerMethod.getMethod());
+    }
+
+    /**
+     * 获取接口的安全策略
+     *
+     * @param beanType Controller类型
+     * @param method   接口方法
+     * @return EndpointPolicy
+     */
+    public static EndpointPolicy of(Class<?> beanType, Method method) {
+        return CACHE.get(beanType).computeIfAbsent(method, item -> new EndpointPolicy(beanType, item));
+    }
+
+    /**
+     * 需要记录日志到数据库，请求结束前需要解析全部的header参数，请求参数和IP对应的地址
+     *
+     * @return boolean
+     */
+    public boolean isSysLog() {
+        return ObjUtil.isNotNull(this.takeshiLog);
+    }
+
+    /**
+     * 需要校验重复提交
+     *
+     * @return boolean
+     */
+    public boolean isRepeatSubmit() {
+        return this.repeatRateInterval > 0;
+    }
+
+    /**
+     * 需要URL参数，上传文件和body参数
+     *
+     * @return boolean
+     */
+    public boolean isParams() {
+        return this.isSysLog() || this.signVerify || this.isRepeatSubmit();
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.takeshi.config.security;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.CryptoException;
+import cn.hutool.crypto.asymmetric.KeyType;
+import com.takeshi.config.StaticConfig;
+import com.takeshi.constants.TakeshiConstants;
+import com.takeshi.util.GsonUtil;
+import jakarta.servlet.http.HttpServletRequest;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * RSA+AES的信封加密<br/>
+ * 前端每次请求（或者每个客户端）随机生成一个AES密钥，使用rsa公钥加密后放在请求头x-envelope-key中，
+ * 请求和响应的内容使用这个AES密钥以AES-GCM加密，格式为Base64(IV(12字节) + 密文 + 认证标签(16字节))；
+ * 每个请求只需要一次RSA解密，相同的x-envelope-key会直接使用缓存的AES密钥，不再做RSA解密<br/>
+ * 没有传递x-envelope-key时仍然使用原来的整体RSA加解密
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public final class EnvelopeCipher {
+
+    private static final String AES = "AES";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 128;
+
+    private static final int CACHE_SEGMENTS = 16;
+    private static final int CACHE_SEGMENT_CAPACITY = 256;
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    });
+
+    /**
+     * 分段的LRU缓存，RSA加密后的密钥 -> AES密钥
+     */
+    private static final Map<String, SecretKey>[] CACHES = newCaches();
+
+    private EnvelopeCipher() {
+    }
+
+    /**
+     * 获取当前请求的AES密钥，解密后放在request的attribute中，加密响应时直接使用
+     *
+     * @param request request
+     * @return 没有传递x-envelope-key时返回null
+     */
+    public static SecretKey sessionKey(HttpServletRequest request) {
+        if (request.getAttribute(TakeshiConstants.ENVELOPE_KEY) instanceof SecretKey secretKey) {
+            return secretKey;
+        }
+        SecretKey secretKey = unwrap(request.getHeader(TakeshiConstants.ENVELOPE_KEY_NAME));
+        if (secretKey != null) {
+            request.setAttribute(TakeshiConstants.ENVELOPE_KEY, secretKey);
+        }
+        return secretKey;
+    }
+
+    /**
+     * 使用rsa私钥解密前端传递的AES密钥
+     *
+     * @param wrappedKey rsa公钥加密后的AES密钥，Base64或者Hex
+     * @return AES密钥，为空时返回null
+     */
+    public static SecretKey unwrap(String wrappedKey) {
+        if (StrUtil.isBlank(wrappedKey)) {
+            return null;
+        }
+        Map<String, SecretKey> cache = CACHES[(wrappedKey.hashCode() & 0x7FFFFFFF) % CACHE_SEGMENTS];
+        synchronized (cache) {
+            SecretKey secretKey = cache.get(wrappedKey);
+            if (secretKey != null) {
+                return secretKey;
+            }
+        }
+        byte[] raw = StaticConfig.rsaCipher().decrypt(wrappedKey, KeyType.PrivateKey);
+        if (raw.length != 16 && raw.length != 24 && raw.length != 32) {
+            throw new CryptoException("Invalid envelope key length: {}", raw.length);
+        }
+        SecretKey secretKey = new SecretKeySpec(raw, AES);
+        Arrays.fill(raw, (byte) 0);
+        synchronized (cache) {
+            cache.put(wrappedKey, secretKey);
+        }
+        return secretKey;
+    }
+
+    /**
+     * 随机生成AES密钥，测试和前端生成密钥时使用
+     *
+     * @return 256位的AES密钥
+     */
+    public static SecretKey generateKey() {
+        byte[] raw = new byte[32];
+        SECURE_RANDOM.nextBytes(raw);
+        return new SecretKeySpec(raw, AES);
+    }
+
+    /**
+     * 边读取边解密，认证标签不正确时在读取到末尾时抛出IOException
+     *
+     * @param secretKey AES密钥
+     * @param in        Base64编码的密文
+     * @return 明文的输入流
+     * @throws IOException IOException
+     */
+    public static InputStream decrypt(SecretKey secretKey, InputStream in) throws IOException {
+        InputStream decoded = Base64.getMimeDecoder().wrap(in);
+        byte[] iv = decoded.readNBytes(IV_LENGTH);
+        if (iv.length != IV_LENGTH) {
+            throw new IOException("Invalid envelope ciphertext");
+        }
+        return new CipherInputStream(decoded, init(Cipher.DECRYPT_MODE, secretKey, iv));
+    }
+
+    /**
+     * 解密
+     *
+     * @param secretKey AES密钥
+     * @param data      Base64编码的密文
+     * @return 明文
+     */
+    public static byte[] decrypt(SecretKey secretKey, String data) {
+        byte[] bytes = Base64.getMimeDecoder().decode(data);
+        if (bytes.length < IV_LENGTH + TAG_LENGTH / 8) {
+            throw new CryptoException("Invalid envelope ciphertext");
+        }
+        try {
+            return init(Cipher.DECRYPT_MODE, secretKey, Arrays.copyOf(bytes, IV_LENGTH)).doFinal(bytes, IV_LENGTH, bytes.length - IV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * 加密，字符串直接加密，其它对象使用GsonUtil转成JSON时直接写入加密流，不生成中间的JSON字符串
+     *
+     * @param secretKey AES密钥
+     * @param data      数据
+     * @return Base64编码的密文
+     */
+    public static String encrypt(SecretKey secretKey, Object data) {
+        byte[] iv = new byte[IV_LENGTH];
+        SECURE_RANDOM.nextBytes(iv);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream base64 = Base64.getEncoder().wrap(out)) {
+            base64.write(iv);
+            Writer writer = new OutputStreamWriter(new CipherOutputStream(base64, init(Cipher.ENCRYPT_MODE, secretKey, iv)), StandardCharsets.UTF_8);
+            if (data instanceof CharSequence charSequence) {
+                writer.append(charSequence);
+            } else {
+                GsonUtil.gson().toJson(data, writer);
+            }
+            // 关闭CipherOutputStream时写入认证标签，Base64的输出流会被一起关闭
+            writer.close();
+        } catch (IOException e) {
+            throw new CryptoException(e);
+        }
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static Cipher init(int mode, SecretKey secretKey, byte[] iv) {
+        Cipher cipher = CIPHER.get();
+        try {
+            cipher.init(mode, secretKey, new GCMParameterSpec(TAG_LENGTH, iv));
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        return cipher;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, SecretKey>[] newCaches() {
+        Map<String, SecretKey>[] caches = new Map[CACHE_SEGMENTS];
+        for (int i = 0; i < CACHE_SEGMENTS; i++) {
+            caches[i] = new LinkedHashMap<>(CACHE_SEGMENT_CAPACITY, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SecretKey> eldest) {
+                    return this.size() > CACHE_SEGMENT_CAPACITY;
+                }
+            };
+        }
+        return caches;
+    }
+
+}
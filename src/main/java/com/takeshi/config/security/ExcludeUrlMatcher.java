@@ -0,0 +1,219 @@
+package com.takeshi.config.security;
+
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.StrUtil;
+import com.takeshi.config.StaticConfig;
+import com.takeshi.constants.TakeshiConstants;
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PatternParseException;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * 排除URL的匹配器，TakeshiFilter和TakeshiInterceptor共用同一个实例，保证两边的判断结果一致<br/>
+ * 初始化时把排除的URL编译好：没有通配符的URL直接精确匹配，以/**结尾的URL使用前缀树匹配，其他的URL使用PathPattern匹配，
+ * 精确匹配和前缀匹配的耗时只与路径长度有关，不需要缓存；只有带通配符的URL的匹配结果按servletPath缓存在分段的LRU中，
+ * 带路径参数（例如ID）的URL很多时只淘汰最久没有访问的路径，不会清空整个缓存
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public final class ExcludeUrlMatcher {
+
+    private static final int MAX_CACHE_SIZE = 1024;
+
+    private static final int CACHE_SEGMENTS = 16;
+
+    private static final String ANY_SUFFIX = "/**";
+
+    private static volatile ExcludeUrlMatcher instance;
+
+    /**
+     * 精确匹配的URL
+     */
+    private final Set<String> exactUrls = new HashSet<>();
+
+    /**
+     * 前缀匹配的URL
+     */
+    private final PrefixNode prefixRoot = new PrefixNode();
+
+    /**
+     * 其他带通配符的URL
+     */
+    private final List<Predicate<String>> patterns = new ArrayList<>();
+
+    /**
+     * 带通配符的URL的匹配结果，分段的LRU缓存，降低锁竞争
+     */
+    private final Map<String, Boolean>[] caches;
+
+    /**
+     * 构造函数
+     *
+     * @param excludeUrls 排除的URL，支持Ant风格的通配符
+     */
+    @SuppressWarnings("unchecked")
+    public ExcludeUrlMatcher(String... excludeUrls) {
+        int segmentCapacity = MAX_CACHE_SIZE / CACHE_SEGMENTS;
+        this.caches = new Map[CACHE_SEGMENTS];
+        for (int i = 0; i < CACHE_SEGMENTS; i++) {
+            this.caches[i] = new LinkedHashMap<>(segmentCapacity, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return this.size() > segmentCapacity;
+                }
+            };
+        }
+        for (String excludeUrl : excludeUrls) {
+            if (StrUtil.isBlank(excludeUrl)) {
+                continue;
+            }
+            String url = StrUtil.addPrefixIfNot(excludeUrl.trim(), StrUtil.SLASH);
+            if (!hasWildcard(url)) {
+                this.exactUrls.add(trimTrailingSlash(url));
+            } else if (url.endsWith(ANY_SUFFIX) && !hasWildcard(url.substring(0, url.length() - ANY_SUFFIX.length()))) {
+                this.prefixRoot.add(url.substring(0, url.length() - ANY_SUFFIX.length()));
+            } else {
+                this.patterns.add(compile(url));
+            }
+        }
+    }
+
+    /**
+     * 获取默认排除的URL{@link TakeshiConstants#EXCLUDE_URL}和配置的takeshi.exclude-url组成的匹配器
+     *
+     * @return ExcludeUrlMatcher
+     */
+    public static ExcludeUrlMatcher getInstance() {
+        ExcludeUrlMatcher matcher = instance;
+        if (matcher == null) {
+            synchronized (ExcludeUrlMatcher.class) {
+                matcher = instance;
+                if (matcher == null) {
+                    String[] excludeUrl = StaticConfig.takeshiProperties.getExcludeUrl();
+                    matcher = new ExcludeUrlMatcher(ArrayUtil.isEmpty(excludeUrl) ? TakeshiConstants.EXCLUDE_URL : ArrayUtil.addAll(TakeshiConstants.EXCLUDE_URL, excludeUrl));
+                    instance = matcher;
+                }
+            }
+        }
+        return matcher;
+    }
+
+    /**
+     * 是否是排除的URL
+     *
+     * @param servletPath servletPath
+     * @return boolean
+     */
+    public boolean matches(String servletPath) {
+        String path = StrUtil.nullToEmpty(servletPath);
+        if (this.exactUrls.contains(trimTrailingSlash(path)) || this.prefixRoot.matches(path)) {
+            return true;
+        }
+        if (this.patterns.isEmpty()) {
+            return false;
+        }
+        Map<String, Boolean> cache = this.caches[(path.hashCode() & 0x7FFFFFFF) % CACHE_SEGMENTS];
+        synchronized (cache) {
+            Boolean result = cache.get(path);
+            if (result != null) {
+                return result;
+            }
+        }
+        boolean result = this.matchPatterns(path);
+        synchronized (cache) {
+            cache.put(path, result);
+        }
+        return result;
+    }
+
+    private boolean matchPatterns(String path) {
+        for (Predicate<String> pattern : this.patterns) {
+            if (pattern.test(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 与PathPattern一致，忽略末尾的/
+     *
+     * @param url url
+     * @return url
+     */
+    private static String trimTrailingSlash(String url) {
+        return url.length() > 1 ? StrUtil.removeSuffix(url, StrUtil.SLASH) : url;
+    }
+
+    private static boolean hasWildcard(String url) {
+        return StrUtil.containsAny(url, '*', '?', '{');
+    }
+
+    /**
+     * 编译带通配符的URL，PathPattern不支持的写法（例如：**在中间）使用AntPathMatcher匹配
+     *
+     * @param url url
+     * @return Predicate
+     */
+    private static Predicate<String> compile(String url) {
+        try {
+            PathPattern pathPattern = PathPatternParser.defaultInstance.parse(url);
+            return path -> pathPattern.matches(PathContainer.parsePath(path));
+        } catch (PatternParseException e) {
+            AntPathMatcher antPathMatcher = new AntPathMatcher();
+            return path -> antPathMatcher.match(url, path);
+        }
+    }
+
+    /**
+     * 按路径分段的前缀树
+     */
+    private static final class PrefixNode {
+
+        private final Map<String, PrefixNode> children = new HashMap<>(8);
+
+        /**
+         * 到此节点为止的路径是一个排除的前缀
+         */
+        private boolean end;
+
+        void add(String prefix) {
+            PrefixNode node = this;
+            for (String segment : StrUtil.split(prefix, '/', true, true)) {
+                node = node.children.computeIfAbsent(segment, k -> new PrefixNode());
+            }
+            node.end = true;
+        }
+
+        boolean matches(String path) {
+            PrefixNode node = this;
+            int length = path.length();
+            int start = 0;
+            while (!node.end) {
+                while (start < length && path.charAt(start) == '/') {
+                    start++;
+                }
+                if (start >= length) {
+                    return false;
+                }
+                int end = path.indexOf('/', start);
+                if (end < 0) {
+                    end = length;
+                }
+                node = node.children.get(path.substring(start, end));
+                if (node == null) {
+                    return false;
+                }
+                start = end;
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.takeshi.config.security;
+
+import cn.hutool.core.util.ArrayUtil;
+import cn.hutool.core.util.ObjUtil;
+import com.takeshi.config.StaticConfig;
+import com.takeshi.config.properties.LogProperties;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 请求日志的策略：采样，字段截断，请求头过滤<br/>
+ * 请求开始时按接口的采样率决定是否打印和记录日志，没有被采样的请求在出错或者慢的时候仍然会在请求结束时打印和记录<br/>
+ * 对象序列化成JSON时写入有长度上限的Writer，超出长度后立即停止序列化，过大的参数不会完整的转成字符串
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public final class LogPolicy {
+
+    /**
+     * 截断的标记
+     */
+    public static final String TRUNCATED = "...[truncated]";
+
+    private LogPolicy() {
+    }
+
+    /**
+     * 请求开始时按采样率决定是否打印和记录日志
+     *
+     * @param endpointPolicy 接口的安全策略
+     * @return boolean
+     */
+    public static boolean headSampled(EndpointPolicy endpointPolicy) {
+        double sampleRate = endpointPolicy.getLogSampleRate();
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * 请求结束时判断没有被采样的请求是否仍然需要打印和记录日志：出错或者慢的请求
+     *
+     * @param failed          是否出错
+     * @param totalTimeMillis 接口总耗时
+     * @return boolean
+     */
+    public static boolean tailSampled(boolean failed, long totalTimeMillis) {
+        return failed || totalTimeMillis >= StaticConfig.takeshiProperties.getLog().getSlowThreshold().toMillis();
+    }
+
+    /**
+     * 序列化成JSON，超出长度后停止序列化并加上截断的标记
+     *
+     * @param value   对象
+     * @param maxSize 最多保留的字符数
+     * @return JSON
+     */
+    public static String toJson(Object value, int maxSize) {
+        BoundedWriter writer = new BoundedWriter(maxSize);
+        try {
+            StaticConfig.objectMapper.writeValue(writer, value);
+        } catch (IOException e) {
+            if (!writer.truncated) {
+                return String.valueOf(value);
+            }
+        }
+        return writer.truncated ? writer.builder.append(TRUNCATED).toString() : writer.builder.toString();
+    }
+
+    /**
+     * 截断字符串
+     *
+     * @param value   字符串
+     * @param maxSize 最多保留的字符数
+     * @return 字符串
+     */
+    public static String truncate(String value, int maxSize) {
+        if (value == null || value.length() <= maxSize) {
+            return value;
+        }
+        return value.substring(0, maxSize) + TRUNCATED;
+    }
+
+    /**
+     * 按takeshi.log.header-allow-list和header-deny-list过滤请求头
+     *
+     * @param headers 请求头
+     * @return 需要记录的请求头
+     */
+    public static Map<String, String> filterHeaders(Map<String, String> headers) {
+        if (ObjUtil.isNull(headers)) {
+            return null;
+        }
+        LogProperties logProperties = StaticConfig.takeshiProperties.getLog();
+        String[] allowList = logProperties.getHeaderAllowList();
+        String[] denyList = logProperties.getHeaderDenyList();
+        Map<String, String> map = new LinkedHashMap<>(headers.size());
+        headers.forEach((name, value) -> {
+            if ((ArrayUtil.isEmpty(allowList) || ArrayUtil.containsIgnoreCase(allowList, name)) && !ArrayUtil.containsIgnoreCase(denyList, name)) {
+                map.put(name, value);
+            }
+        });
+        return map;
+    }
+
+    /**
+     * 有长度上限的Writer，超出后抛出异常中断序列化
+     */
+    private static final class BoundedWriter extends Writer {
+
+        private final StringBuilder builder;
+        private final int maxSize;
+        private boolean truncated;
+
+        BoundedWriter(int maxSize) {
+            this.maxSize = Math.max(0, maxSize);
+            this.builder = new StringBuilder(Math.min(this.maxSize, 256));
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int remaining = this.maxSize - this.builder.length();
+            if (len > remaining) {
+                this.builder.append(cbuf, off, remaining);
+                this.truncated = true;
+                throw new IOException("Exceeded the max field size");
+            }
+            this.builder.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            int remaining = this.maxSize - this.builder.length();
+            if (len > remaining) {
+                this.builder.append(str, off, off + remaining);
+                this.truncated = true;
+                throw new IOException("Exceeded the max field size");
+            }
+            this.builder.append(str, off, off + len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
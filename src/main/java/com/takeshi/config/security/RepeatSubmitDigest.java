@@ -0,0 +1,223 @@
+package com.takeshi.config.security;
+
+import com.takeshi.pojo.bo.ParamBO;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 重复提交校验的摘要<br/>
+ * 直接遍历请求的参数计算128位的哈希，遍历时跳过排除的字段，不再复制参数树，也不再序列化成JSON字符串再MD5<br/>
+ * Map中的键值对各自计算哈希后相加，结果与键值对的顺序无关；数组按顺序计算；每个值都带有类型标记，"1"与1的结果不同<br/>
+ * 哈希的混合函数参考MurmurHash3_x64_128，每次写入一个long
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public final class RepeatSubmitDigest {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final long SEED = 0x9e3779b97f4a7c15L;
+
+    private static final long TAG_NULL = 1;
+    private static final long TAG_FALSE = 2;
+    private static final long TAG_TRUE = 3;
+    private static final long TAG_LONG = 4;
+    private static final long TAG_DOUBLE = 5;
+    private static final long TAG_DECIMAL = 6;
+    private static final long TAG_STRING = 7;
+    private static final long TAG_MAP = 8;
+    private static final long TAG_ARRAY = 9;
+    private static final long TAG_OTHER = 10;
+    private static final long TAG_SECTION = 11;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 排除的字段名，忽略大小写
+     */
+    private final String[] exclusionFieldName;
+
+    private long h1 = SEED;
+    private long h2 = SEED;
+    private long length;
+
+    private RepeatSubmitDigest(String[] exclusionFieldName) {
+        this.exclusionFieldName = exclusionFieldName;
+    }
+
+    /**
+     * 计算重复提交校验的摘要，参与计算的有请求路径，登录的用户ID，url参数，上传的文件摘要信息，body内容
+     *
+     * @param servletPath        请求路径
+     * @param paramBO            请求参数
+     * @param exclusionFieldName 排除的字段名，会忽略大小写，任意层级中的同名字段都会被排除
+     * @return 32位的十六进制字符串
+     */
+    public static String digest(String servletPath, ParamBO paramBO, String... exclusionFieldName) {
+        RepeatSubmitDigest digest = new RepeatSubmitDigest(exclusionFieldName);
+        digest.value(servletPath);
+        digest.value(paramBO.getLoginId());
+        digest.section(1, paramBO.getUrlParam());
+        digest.section(2, paramBO.getMultipart());
+        digest.section(3, paramBO.getBodyObject());
+        digest.section(4, paramBO.getBodyOther());
+        digest.finish();
+        char[] chars = new char[32];
+        toHex(digest.h1, chars, 0);
+        toHex(digest.h2, chars, 16);
+        return new String(chars);
+    }
+
+    private void section(long index, Object value) {
+        this.word(TAG_SECTION);
+        this.word(index);
+        this.value(value);
+    }
+
+    private void value(Object value) {
+        if (value == null) {
+            this.word(TAG_NULL);
+        } else if (value instanceof CharSequence charSequence) {
+            this.string(TAG_STRING, charSequence);
+        } else if (value instanceof Map<?, ?> map) {
+            this.map(map);
+        } else if (value instanceof Collection<?> collection) {
+            this.word(TAG_ARRAY);
+            this.word(collection.size());
+            for (Object item : collection) {
+                this.value(item);
+            }
+        } else if (value instanceof Object[] array) {
+            this.word(TAG_ARRAY);
+            this.word(array.length);
+            for (Object item : array) {
+                this.value(item);
+            }
+        } else if (value instanceof Boolean bool) {
+            this.word(bool ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            // 同一个整数不管解析成Integer还是Long结果都一样
+            this.word(TAG_LONG);
+            this.word(((Number) value).longValue());
+        } else if (value instanceof BigInteger bigInteger && bigInteger.bitLength() < Long.SIZE) {
+            this.word(TAG_LONG);
+            this.word(bigInteger.longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            this.word(TAG_DOUBLE);
+            this.word(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof BigDecimal bigDecimal) {
+            this.string(TAG_DECIMAL, bigDecimal.stripTrailingZeros().toPlainString());
+        } else {
+            this.string(TAG_OTHER, value.toString());
+        }
+    }
+
+    /**
+     * 每个键值对单独计算哈希后相加，与Map的遍历顺序无关
+     *
+     * @param map map
+     */
+    private void map(Map<?, ?> map) {
+        long saved1 = this.h1;
+        long saved2 = this.h2;
+        long savedLength = this.length;
+        long sum1 = 0;
+        long sum2 = 0;
+        long size = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            if (this.excluded(key)) {
+                continue;
+            }
+            this.h1 = SEED;
+            this.h2 = SEED;
+            this.length = 0;
+            this.string(TAG_STRING, key);
+            this.value(entry.getValue());
+            this.finish();
+            sum1 += this.h1;
+            sum2 += this.h2;
+            size++;
+        }
+        this.h1 = saved1;
+        this.h2 = saved2;
+        this.length = savedLength;
+        this.word(TAG_MAP);
+        this.word(size);
+        this.word(sum1);
+        this.word(sum2);
+    }
+
+    private boolean excluded(String key) {
+        if (this.exclusionFieldName == null) {
+            return false;
+        }
+        for (String fieldName : this.exclusionFieldName) {
+            if (key.equalsIgnoreCase(fieldName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 每4个char组成一个long写入，最后写入长度
+     */
+    private void string(long tag, CharSequence value) {
+        this.word(tag);
+        int length = value.length();
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            this.word((long) value.charAt(i) << 48 | (long) value.charAt(i + 1) << 32 | (long) value.charAt(i + 2) << 16 | value.charAt(i + 3));
+        }
+        long last = 0;
+        for (; i < length; i++) {
+            last = last << 16 | value.charAt(i);
+        }
+        this.word(last);
+        this.word(length);
+    }
+
+    private void word(long value) {
+        long k1 = Long.rotateLeft(value * C1, 31) * C2;
+        this.h1 ^= k1;
+        this.h1 = Long.rotateLeft(this.h1, 27) + this.h2;
+        this.h1 = this.h1 * 5 + 0x52dce729;
+        long k2 = Long.rotateLeft(value * C2, 33) * C1;
+        this.h2 ^= k2;
+        this.h2 = Long.rotateLeft(this.h2, 31) + this.h1;
+        this.h2 = this.h2 * 5 + 0x38495ab5;
+        this.length++;
+    }
+
+    private void finish() {
+        this.h1 ^= this.length;
+        this.h2 ^= this.length;
+        this.h1 += this.h2;
+        this.h2 += this.h1;
+        this.h1 = fmix(this.h1);
+        this.h2 = fmix(this.h2);
+        this.h1 += this.h2;
+        this.h2 += this.h1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static void toHex(long value, char[] chars, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.takeshi.config.security;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.crypto.CryptoException;
+import com.takeshi.enums.SignatureAlgorithmEnum;
+import com.takeshi.pojo.bo.ParamBO;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 参数签名校验<br/>
+ * 按key排序后的参数直接以UTF-8编码写入当前线程的MessageDigest或Mac中，不再合并Map和拼接字符串，
+ * MD5算法的结果与SecureUtil.signParamsMd5一致，签名值使用MessageDigest.isEqual比较
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public final class RequestSigner {
+
+    private static final ThreadLocal<RequestSigner> HOLDER = ThreadLocal.withInitial(RequestSigner::new);
+
+    private static final String NULL = "null";
+    private static final int BUFFER_SIZE = 512;
+
+    private final MessageDigest md5;
+    private Mac hmac;
+    private String hmacKey;
+
+    /**
+     * 当前正在使用的算法
+     */
+    private SignatureAlgorithmEnum algorithm;
+
+    /**
+     * UTF-8编码的缓冲区，满了再写入摘要
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    /**
+     * 每个算法计算出的摘要和header里传递的签名，长度与摘要长度一致，MessageDigest.isEqual要求长度相同
+     */
+    private final byte[][] digests;
+    private final byte[][] expects;
+
+    /**
+     * 参与签名的key，每次使用前清空
+     */
+    private final List<String> keys = new ArrayList<>(16);
+
+    private RequestSigner() {
+        try {
+            this.md5 = MessageDigest.getInstance(SignatureAlgorithmEnum.MD5.getAlgorithm());
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        SignatureAlgorithmEnum[] values = SignatureAlgorithmEnum.values();
+        this.digests = new byte[values.length][];
+        this.expects = new byte[values.length][];
+        for (SignatureAlgorithmEnum value : values) {
+            this.digests[value.ordinal()] = new byte[value.getLength()];
+            this.expects[value.ordinal()] = new byte[value.getLength()];
+        }
+    }
+
+    /**
+     * 校验参数签名<br/>
+     * 参数为url参数，上传的文件摘要信息，body的JsonObject内容合并后（同名的key后者优先）按key排序，忽略null值，
+     * 之后依次拼接body的非JsonObject内容，signatureKey（仅MD5），nonce，timestamp
+     *
+     * @param algorithm    签名算法
+     * @param sign         header里传递的签名（小写的十六进制）
+     * @param signatureKey 签名的密钥
+     * @param paramBO      请求参数
+     * @param nonce        header里传递的nonce
+     * @param timestamp    header里传递的timestamp
+     * @return 是否校验通过
+     */
+    public static boolean verify(SignatureAlgorithmEnum algorithm, String sign, String signatureKey, ParamBO paramBO, String nonce, String timestamp) {
+        int length = algorithm.getLength();
+        if (sign == null || sign.length() != length << 1) {
+            return false;
+        }
+        RequestSigner signer = HOLDER.get();
+        byte[] expect = signer.expects[algorithm.ordinal()];
+        for (int i = 0; i < length; i++) {
+            int high = hex(sign.charAt(i << 1));
+            int low = hex(sign.charAt((i << 1) + 1));
+            if (high < 0 || low < 0) {
+                return false;
+            }
+            expect[i] = (byte) (high << 4 | low);
+        }
+        return MessageDigest.isEqual(signer.digest(algorithm, signatureKey, paramBO, nonce, timestamp), expect);
+    }
+
+    /**
+     * 计算参数签名
+     *
+     * @return 当前线程复用的摘要数组
+     */
+    private byte[] digest(SignatureAlgorithmEnum algorithm, String signatureKey, ParamBO paramBO, String nonce, String timestamp) {
+        this.begin(algorithm, signatureKey);
+        Map<String, String> urlParam = paramBO.getUrlParam();
+        Map<String, String> multipart = paramBO.getMultipart();
+        Map<String, Object> bodyObject = paramBO.getBodyObject();
+        this.keys.clear();
+        addKeys(this.keys, urlParam);
+        addKeys(this.keys, multipart);
+        addKeys(this.keys, bodyObject);
+        Collections.sort(this.keys);
+        String previous = null;
+        for (String key : this.keys) {
+            if (key.equals(previous)) {
+                continue;
+            }
+            previous = key;
+            // 与HashMap.putAll合并的顺序一致，body优先，其次是上传的文件，最后是url参数
+            Object value = bodyObject != null && bodyObject.containsKey(key) ? bodyObject.get(key)
+                    : multipart != null && multipart.containsKey(key) ? multipart.get(key)
+                    : urlParam.get(key);
+            if (value != null) {
+                this.write(key);
+                this.writeValue(value);
+            }
+        }
+        this.keys.clear();
+        Object bodyOther = paramBO.getBodyOther();
+        // 与StringBuilder.append一致，null值拼接为"null"
+        this.write(bodyOther == null ? NULL : bodyOther.toString());
+        if (algorithm == SignatureAlgorithmEnum.MD5) {
+            this.write(Objects.toString(signatureKey));
+        }
+        this.write(Objects.toString(nonce));
+        this.write(Objects.toString(timestamp));
+        return this.finish();
+    }
+
+    private void begin(SignatureAlgorithmEnum algorithm, String signatureKey) {
+        this.algorithm = algorithm;
+        this.position = 0;
+        if (algorithm == SignatureAlgorithmEnum.MD5) {
+            this.md5.reset();
+            return;
+        }
+        try {
+            if (this.hmac == null) {
+                this.hmac = Mac.getInstance(algorithm.getAlgorithm());
+            }
+            if (!Objects.equals(this.hmacKey, signatureKey)) {
+                this.hmac.init(new SecretKeySpec(signatureKey.getBytes(StandardCharsets.UTF_8), algorithm.getAlgorithm()));
+                this.hmacKey = signatureKey;
+            } else {
+                this.hmac.reset();
+            }
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+    private byte[] finish() {
+        this.flush();
+        byte[] digest = this.digests[this.algorithm.ordinal()];
+        try {
+            if (this.algorithm == SignatureAlgorithmEnum.MD5) {
+                this.md5.digest(digest, 0, digest.length);
+            } else {
+                this.hmac.doFinal(digest, 0);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        return digest;
+    }
+
+    private void flush() {
+        if (this.position == 0) {
+            return;
+        }
+        if (this.algorithm == SignatureAlgorithmEnum.MD5) {
+            this.md5.update(this.buffer, 0, this.position);
+        } else {
+            this.hmac.update(this.buffer, 0, this.position);
+        }
+        this.position = 0;
+    }
+
+    /**
+     * 写入参数值，字符串和整数直接写入，其它类型与MapUtil.sortJoin一样使用Convert.toStr转换
+     *
+     * @param value 参数值
+     */
+    private void writeValue(Object value) {
+        if (value instanceof CharSequence charSequence) {
+            this.write(charSequence);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            this.writeLong(((Number) value).longValue());
+        } else {
+            this.write(Convert.toStr(value));
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            this.write(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            this.writeByte('-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            this.writeByte((int) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * 以UTF-8编码写入，无法配对的代理字符与String.getBytes一样写入'?'
+     *
+     * @param value 字符串
+     */
+    private void write(CharSequence value) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                this.writeByte(c);
+            } else if (c < 0x800) {
+                this.writeByte(0xC0 | c >> 6);
+                this.writeByte(0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                this.writeByte(0xF0 | codePoint >> 18);
+                this.writeByte(0x80 | codePoint >> 12 & 0x3F);
+                this.writeByte(0x80 | codePoint >> 6 & 0x3F);
+                this.writeByte(0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                this.writeByte('?');
+            } else {
+                this.writeByte(0xE0 | c >> 12);
+                this.writeByte(0x80 | c >> 6 & 0x3F);
+                this.writeByte(0x80 | c & 0x3F);
+            }
+        }
+    }
+
+    private void writeByte(int b) {
+        if (this.position == BUFFER_SIZE) {
+            this.flush();
+        }
+        this.buffer[this.position++] = (byte) b;
+    }
+
+    private static void addKeys(List<String> keys, Map<String, ?> map) {
+        if (map != null) {
+            for (String key : map.keySet()) {
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 小写的十六进制字符转数字，与digestHex的输出一致，不接受大写
+     */
+    private static int hex(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+}
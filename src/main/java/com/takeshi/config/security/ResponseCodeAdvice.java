@@ -0,0 +1,57 @@
+package com.takeshi.config.security;
+
+import com.takeshi.constants.TakeshiConstants;
+import com.takeshi.pojo.basic.ResponseData;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.lang.Nullable;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * 将返回结果ResponseData的状态码放到request的attribute中，记录接口日志时直接读取，无需再解析响应内容
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@RestControllerAdvice
+public class ResponseCodeAdvice implements ResponseBodyAdvice<Object> {
+
+    /**
+     * Whether this component supports the given controller method return type
+     * and the selected {@code HttpMessageConverter} type.
+     *
+     * @param returnType    the return type
+     * @param converterType the selected converter type
+     * @return {@code true} if {@link #beforeBodyWrite} should be invoked;
+     * {@code false} otherwise
+     */
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    /**
+     * Invoked after an {@code HttpMessageConverter} is selected and just before
+     * its write method is invoked.
+     *
+     * @param body                  the body to be written
+     * @param returnType            the return type of the controller method
+     * @param selectedContentType   the content type selected through content negotiation
+     * @param selectedConverterType the converter type selected to write to the response
+     * @param request               the current request
+     * @param response              the current response
+     * @return the body that was passed in or a modified (possibly new) instance
+     */
+    @Override
+    public Object beforeBodyWrite(@Nullable Object body, MethodParameter returnType, MediaType selectedContentType, Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request, ServerHttpResponse response) {
+        if (body instanceof ResponseData<?> responseData && request instanceof ServletServerHttpRequest servletServerHttpRequest) {
+            servletServerHttpRequest.getServletRequest().setAttribute(TakeshiConstants.RESPONSE_CODE, responseData.getCode());
+        }
+        return body;
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.takeshi.config.security;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.crypto.CryptoException;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.crypto.asymmetric.KeyType;
+
+import javax.crypto.Cipher;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.RSAKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 线程安全的RSA加解密<br/>
+ * hutool的RSA对象内部加锁，所有请求线程共用时加解密会串行执行；这里按密钥和加解密模式各有一个有界的Cipher池，用时借出用完归还，没有锁竞争。
+ * 不使用ThreadLocal，虚拟线程处理请求时每个请求都是新的线程，ThreadLocal中的Cipher无法复用
+ * 加密算法和分段规则与hutool的RSA一致（RSA/ECB/PKCS1Padding，加密每段模长-11字节，解密每段模长字节），加密的结果可以互相解密<br/>
+ * 批量的方法只获取一次Cipher，适合一次处理结果集中的多个加密字段
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public final class RsaCipher {
+
+    private static final String TRANSFORMATION = "RSA/ECB/PKCS1Padding";
+
+    private final PrivateKey privateKey;
+    private final PublicKey publicKey;
+    private final int encryptBlockSize;
+    private final int decryptBlockSize;
+
+    /**
+     * 每个池最多保留的Cipher数量，同时使用的数量超过时临时创建，归还时池已满则丢弃
+     */
+    private static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * Cipher池，下标为 密钥类型 * 2 + 模式，池中的Cipher已经初始化，不再切换密钥和模式
+     */
+    @SuppressWarnings("unchecked")
+    private final Queue<Cipher>[] pools = new Queue[]{new ArrayBlockingQueue<>(POOL_SIZE), new ArrayBlockingQueue<>(POOL_SIZE),
+            new ArrayBlockingQueue<>(POOL_SIZE), new ArrayBlockingQueue<>(POOL_SIZE)};
+
+    /**
+     * 构造函数
+     *
+     * @param privateKey 私钥
+     * @param publicKey  公钥
+     */
+    public RsaCipher(PrivateKey privateKey, PublicKey publicKey) {
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+        int keyBytes = ((RSAKey) publicKey).getModulus().bitLength() / 8;
+        this.encryptBlockSize = keyBytes - 11;
+        this.decryptBlockSize = keyBytes;
+    }
+
+    /**
+     * 加密
+     *
+     * @param data    数据
+     * @param keyType 使用私钥还是公钥
+     * @return 密文
+     */
+    public byte[] encrypt(byte[] data, KeyType keyType) {
+        int index = index(keyType, Cipher.ENCRYPT_MODE);
+        Cipher cipher = this.borrow(index);
+        byte[] result = doFinal(cipher, data, this.encryptBlockSize);
+        this.pools[index].offer(cipher);
+        return result;
+    }
+
+    /**
+     * 加密，UTF-8编码
+     *
+     * @param data    数据
+     * @param keyType 使用私钥还是公钥
+     * @return Base64编码的密文
+     */
+    public String encryptBase64(String data, KeyType keyType) {
+        return Base64.encode(this.encrypt(data.getBytes(StandardCharsets.UTF_8), keyType));
+    }
+
+    /**
+     * 解密
+     *
+     * @param data    密文
+     * @param keyType 使用私钥还是公钥
+     * @return 明文
+     */
+    public byte[] decrypt(byte[] data, KeyType keyType) {
+        int index = index(keyType, Cipher.DECRYPT_MODE);
+        Cipher cipher = this.borrow(index);
+        byte[] result = doFinal(cipher, data, this.decryptBlockSize);
+        this.pools[index].offer(cipher);
+        return result;
+    }
+
+    /**
+     * 解密
+     *
+     * @param data    Hex或者Base64编码的密文
+     * @param keyType 使用私钥还是公钥
+     * @return 明文
+     */
+    public byte[] decrypt(String data, KeyType keyType) {
+        return this.decrypt(SecureUtil.decode(data), keyType);
+    }
+
+    /**
+     * 解密为UTF-8字符串
+     *
+     * @param data    Hex或者Base64编码的密文
+     * @param keyType 使用私钥还是公钥
+     * @return 明文
+     */
+    public String decryptStr(String data, KeyType keyType) {
+        return new String(this.decrypt(data, keyType), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 批量加密，null值原样返回
+     *
+     * @param list    数据
+     * @param keyType 使用私钥还是公钥
+     * @return Base64编码的密文，与参数的顺序一致
+     */
+    public List<String> encryptBase64(List<String> list, KeyType keyType) {
+        int index = index(keyType, Cipher.ENCRYPT_MODE);
+        Cipher cipher = this.borrow(index);
+        List<String> result = new ArrayList<>(list.size());
+        for (String data : list) {
+            result.add(data == null ? null : Base64.encode(doFinal(cipher, data.getBytes(StandardCharsets.UTF_8), this.encryptBlockSize)));
+        }
+        this.pools[index].offer(cipher);
+        return result;
+    }
+
+    /**
+     * 批量解密，null值原样返回
+     *
+     * @param list    Hex或者Base64编码的密文
+     * @param keyType 使用私钥还是公钥
+     * @return 明文，与参数的顺序一致
+     */
+    public List<String> decryptStr(List<String> list, KeyType keyType) {
+        int index = index(keyType, Cipher.DECRYPT_MODE);
+        Cipher cipher = this.borrow(index);
+        List<String> result = new ArrayList<>(list.size());
+        for (String data : list) {
+            result.add(data == null ? null : new String(doFinal(cipher, SecureUtil.decode(data), this.decryptBlockSize), StandardCharsets.UTF_8));
+        }
+        this.pools[index].offer(cipher);
+        return result;
+    }
+
+    /**
+     * 从池中借出一个Cipher，池中没有时创建并初始化；用完后只在成功时归还，出现异常的Cipher直接丢弃
+     */
+    private Cipher borrow(int index) {
+        Cipher cipher = this.pools[index].poll();
+        if (cipher != null) {
+            return cipher;
+        }
+        Key key = index >= 2 ? this.privateKey : this.publicKey;
+        try {
+            cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(index % 2 == 0 ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, key);
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+        return cipher;
+    }
+
+    private static int index(KeyType keyType, int mode) {
+        return (keyType == KeyType.PrivateKey ? 2 : 0) + (mode == Cipher.ENCRYPT_MODE ? 0 : 1);
+    }
+
+    /**
+     * 按分段大小依次加解密，doFinal后Cipher会重置为初始化时的状态，可以继续使用
+     */
+    private static byte[] doFinal(Cipher cipher, byte[] data, int blockSize) {
+        try {
+            if (data.length <= blockSize) {
+                return cipher.doFinal(data, 0, data.length);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream((data.length / blockSize + 1) * cipher.getOutputSize(blockSize));
+            for (int offset = 0; offset < data.length; offset += blockSize) {
+                out.writeBytes(cipher.doFinal(data, offset, Math.min(blockSize, data.length - offset)));
+            }
+            return out.toByteArray();
+        } catch (GeneralSecurityException e) {
+            throw new CryptoException(e);
+        }
+    }
+
+}
@@ -1,17 +1,14 @@
 package com.takeshi.config.security;
 
 import cn.dev33.satoken.stp.StpUtil;
-import cn.hutool.core.io.unit.DataSizeUtil;
-import cn.hutool.core.lang.Singleton;
-import cn.hutool.core.map.CaseInsensitiveMap;
-import cn.hutool.core.util.IdUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.crypto.SecureUtil;
-import cn.hutool.extra.servlet.JakartaServletUtil;
-import com.takeshi.component.TakeshiAsyncComponent;
+import cn.hutool.core.util.ObjUtil;
+import com.takeshi.component.EndpointMetrics;
+import com.takeshi.component.SysLogWriter;
+import com.takeshi.config.TraceContext;
+import com.takeshi.config.properties.LogProperties;
 import com.takeshi.config.properties.TakeshiProperties;
+import com.takeshi.constants.TakeshiCode;
 import com.takeshi.constants.TakeshiConstants;
-import com.takeshi.exception.Either;
 import com.takeshi.pojo.bo.ParamBO;
 import com.takeshi.util.TakeshiUtil;
 import jakarta.servlet.*;
@@ -19,26 +16,18 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.MDC;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.AutoConfigureOrder;
 import org.springframework.core.Ordered;
-import org.springframework.http.HttpMethod;
-import org.springframework.util.AntPathMatcher;
-import org.springframework.util.MultiValueMap;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.util.StopWatch;
-import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.multipart.support.StandardMultipartHttpServletRequest;
 import org.springframework.web.multipart.support.StandardServletMultipartResolver;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * TakeshiFilter
@@ -49,119 +38,129 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class TakeshiFilter implements Filter {
 
-    private final TakeshiAsyncComponent takeshiAsyncComponent;
+    private final SysLogWriter sysLogWriter;
+    private final EndpointMetrics endpointMetrics;
     private final TakeshiProperties takeshiProperties;
 
-    private List<String> excludeUrlList;
+    private ExcludeUrlMatcher excludeUrlMatcher;
+
+    private int maxRequestBodySize;
+
+    private int responseCaptureSize;
+
+    private List<MediaType> textContentTypes;
+
+    private int maxFieldSize;
 
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
-        excludeUrlList = new ArrayList<>(List.of(TakeshiConstants.EXCLUDE_URL));
-        excludeUrlList.addAll(List.of(takeshiProperties.getExcludeUrl()));
+        excludeUrlMatcher = ExcludeUrlMatcher.getInstance();
+        maxRequestBodySize = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(0, takeshiProperties.getMaxRequestBodySize().toBytes()));
+        LogProperties logProperties = takeshiProperties.getLog();
+        responseCaptureSize = (int) Math.min(Integer.MAX_VALUE, Math.max(0, logProperties.getResponseCaptureSize().toBytes()));
+        textContentTypes = Arrays.stream(logProperties.getTextContentTypes()).map(MediaType::parseMediaType).toList();
+        maxFieldSize = (int) Math.min(Integer.MAX_VALUE, logProperties.getMaxFieldSize().toBytes());
     }
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
-        AntPathMatcher antPathMatcher = Singleton.get(AntPathMatcher.class.getName(), AntPathMatcher::new);
         if (request instanceof HttpServletRequest httpServletRequest
                 && response instanceof HttpServletResponse httpServletResponse
-                && excludeUrlList.stream().noneMatch(item -> antPathMatcher.match(item, httpServletRequest.getServletPath()))) {
-            long startTimeMillis = Instant.now().toEpochMilli();
-            String traceId = IdUtil.fastSimpleUUID();
-            // 填充traceId
-            MDC.put(TakeshiConstants.TRACE_ID_KEY, traceId);
-            StopWatch stopWatch = new StopWatch(traceId);
-            stopWatch.start();
-            StandardServletMultipartResolver standardServletMultipartResolver = new StandardServletMultipartResolver();
-            HttpServletRequest takeshiHttpRequestWrapper;
-            if (standardServletMultipartResolver.isMultipart(httpServletRequest)) {
-                takeshiHttpRequestWrapper = standardServletMultipartResolver.resolveMultipart(httpServletRequest);
-            } else {
-                takeshiHttpRequestWrapper = new TakeshiHttpRequestWrapper(httpServletRequest);
+                && !excludeUrlMatcher.matches(httpServletRequest.getServletPath())) {
+            // 继续上游服务传递的链路，没有时新建，并在响应头中返回traceparent
+            TraceContext traceContext = TraceContext.fromTraceparent(httpServletRequest.getHeader(TakeshiConstants.TRACEPARENT));
+            httpServletResponse.setHeader(TakeshiConstants.TRACEPARENT, traceContext.traceparent());
+            // 请求结束时恢复，否则线程复用时会带上上一个请求的traceId
+            try (TraceContext.Scope ignored = traceContext.attach()) {
+                this.doFilterInternal(httpServletRequest, httpServletResponse, chain, traceContext);
             }
-            ParamBO paramBO = this.setParamBOAttribute(takeshiHttpRequestWrapper);
-            log.info("TakeshiFilter.doFilter --> Request Start: {}", paramBO.filterInfo());
-            TakeshiHttpResponseWrapper takeshiHttpResponseWrapper = new TakeshiHttpResponseWrapper(httpServletResponse);
-            chain.doFilter(takeshiHttpRequestWrapper, takeshiHttpResponseWrapper);
-            // 获取 takeshiHttpResponseWrapper 的返回值
-            byte[] bytes = takeshiHttpResponseWrapper.getResponseData();
-            String responseData = StrUtil.str(bytes, StandardCharsets.UTF_8);
-            log.info("Response Data: {}", responseData);
-            // 将响应内容写回到原始的 HttpServletResponse 中
-            ServletOutputStream outputStream = httpServletResponse.getOutputStream();
-            outputStream.write(bytes);
-            outputStream.flush();
-            // 关闭输出流
-            outputStream.close();
-            stopWatch.stop();
-            long totalTimeMillis = stopWatch.getTotalTimeMillis();
-            log.info("End Of Response, Time Consuming: {} ms", totalTimeMillis);
-            // 新增一条接口请求相关信息到数据库
-            takeshiAsyncComponent.insertSysLog((ParamBO) takeshiHttpRequestWrapper.getAttribute(TakeshiConstants.PARAM_BO), startTimeMillis, totalTimeMillis, responseData);
             return;
         }
         chain.doFilter(request, response);
     }
 
-    @Override
-    public void destroy() {
-        // 请求结束时删除数据，否则会造成内存溢出
-        MDC.remove(TakeshiConstants.TRACE_ID_KEY);
+    /**
+     * 处理需要记录日志的请求
+     *
+     * @param httpServletRequest  httpServletRequest
+     * @param httpServletResponse httpServletResponse
+     * @param chain               chain
+     * @param traceContext        traceContext
+     * @throws IOException      IOException
+     * @throws ServletException ServletException
+     */
+    private void doFilterInternal(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, FilterChain chain, TraceContext traceContext) throws IOException, ServletException {
+        long startTimeMillis = Instant.now().toEpochMilli();
+        StopWatch stopWatch = new StopWatch(traceContext.traceId());
+        stopWatch.start();
+        StandardServletMultipartResolver standardServletMultipartResolver = new StandardServletMultipartResolver();
+        HttpServletRequest takeshiHttpRequestWrapper;
+        if (standardServletMultipartResolver.isMultipart(httpServletRequest)) {
+            takeshiHttpRequestWrapper = standardServletMultipartResolver.resolveMultipart(httpServletRequest);
+        } else {
+            TakeshiHttpRequestWrapper requestWrapper = new TakeshiHttpRequestWrapper(httpServletRequest, maxRequestBodySize);
+            if (requestWrapper.isTooLarge()) {
+                log.warn("TakeshiFilter.doFilter --> Request body too large: {} {}", httpServletRequest.getMethod(), httpServletRequest.getRequestURI());
+                httpServletResponse.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value());
+                return;
+            }
+            takeshiHttpRequestWrapper = requestWrapper;
+        }
+        ParamBO paramBO = this.setParamBOAttribute(takeshiHttpRequestWrapper);
+        log.info("TakeshiFilter.doFilter --> Request Start: {}", paramBO.filterInfo());
+        // 响应内容直接写回客户端，只截取前面一部分用于记录日志
+        TakeshiHttpResponseWrapper takeshiHttpResponseWrapper = new TakeshiHttpResponseWrapper(httpServletResponse, responseCaptureSize, textContentTypes);
+        chain.doFilter(takeshiHttpRequestWrapper, takeshiHttpResponseWrapper);
+        takeshiHttpResponseWrapper.flushBuffer();
+        stopWatch.stop();
+        long totalTimeMillis = stopWatch.getTotalTimeMillis();
+        EndpointPolicy endpointPolicy = paramBO.getEndpointPolicy();
+        int maxFieldSize = ObjUtil.isNotNull(endpointPolicy) ? endpointPolicy.getLogMaxFieldSize() : this.maxFieldSize;
+        Integer responseCode = takeshiHttpRequestWrapper.getAttribute(TakeshiConstants.RESPONSE_CODE) instanceof Integer code ? code : null;
+        boolean failed = takeshiHttpResponseWrapper.getStatus() >= HttpStatus.BAD_REQUEST.value()
+                || (ObjUtil.isNotNull(responseCode) && responseCode != TakeshiCode.SUCCESS.getCode());
+        endpointMetrics.record(paramBO.getMethodName(), ObjUtil.isNotNull(responseCode) ? responseCode : takeshiHttpResponseWrapper.getStatus(), stopWatch.getTotalTimeNanos());
+        boolean sampled = paramBO.isLogSampled();
+        // 请求开始时没有被采样的请求，出错或者慢的时候仍然打印和记录日志
+        boolean tailSampled = !sampled && LogPolicy.tailSampled(failed, totalTimeMillis);
+        String responseData = null;
+        if (sampled || tailSampled) {
+            if (tailSampled && ObjUtil.isNotNull(endpointPolicy)) {
+                log.info("Request Parameters: {}", LogPolicy.toJson(paramBO.getParamObjectNode(), maxFieldSize));
+            }
+            responseData = takeshiHttpResponseWrapper.getResponseData(maxFieldSize);
+            if (!takeshiHttpResponseWrapper.isText()) {
+                log.info("Response Data: [{}, {} bytes]", takeshiHttpResponseWrapper.getContentType(), takeshiHttpResponseWrapper.getResponseSize());
+            } else if (takeshiHttpResponseWrapper.isTruncated() || takeshiHttpResponseWrapper.getResponseSize() > maxFieldSize) {
+                log.info("Response Data: {}...[truncated, {} bytes]", responseData, takeshiHttpResponseWrapper.getResponseSize());
+                responseData += LogPolicy.TRUNCATED;
+            } else {
+                log.info("Response Data: {}", responseData);
+            }
+        }
+        log.info("End Of Response, Time Consuming: {} ms", totalTimeMillis);
+        if (ObjUtil.isNotNull(endpointPolicy) && endpointPolicy.isSysLog() && (sampled || tailSampled)) {
+            // 请求结束前解析完所有的参数，再放入缓冲区批量新增到数据库；响应已经提交，记录日志失败不能影响请求
+            try {
+                paramBO.resolveAll();
+                sysLogWriter.write(paramBO, startTimeMillis, totalTimeMillis, responseData, responseCode);
+            } catch (Exception e) {
+                log.error("TakeshiFilter.doFilterInternal --> sys log was not written, e: ", e);
+            }
+        }
     }
 
     /**
-     * 获取所有参数，包装成一个对象
+     * 包装参数对象，参数会延迟解析
      *
      * @param request request
      * @return ParamBO
      */
-    private ParamBO setParamBOAttribute(HttpServletRequest request) throws IOException {
-        ParamBO paramBO = new ParamBO();
-
-        String clientIp = TakeshiUtil.getClientIp(request);
-        paramBO.setClientIp(clientIp);
-        paramBO.setClientIpAddress(TakeshiUtil.getRealAddressByIp(clientIp));
+    private ParamBO setParamBOAttribute(HttpServletRequest request) {
+        // 其他参数在第一次获取时才会解析
+        ParamBO paramBO = ParamBO.of(request);
+        paramBO.setClientIp(TakeshiUtil.getClientIp(request));
         paramBO.setLoginId(StpUtil.getLoginIdDefaultNull());
-        paramBO.setRequestUrl(request.getRequestURL().toString());
-        paramBO.setHttpMethod(request.getMethod());
-
-        CaseInsensitiveMap<String, String> headerMap = new CaseInsensitiveMap<>();
-        Enumeration<String> headerNames = request.getHeaderNames();
-        while (headerNames.hasMoreElements()) {
-            String headerName = headerNames.nextElement();
-            headerMap.put(headerName, request.getHeader(headerName));
-        }
-        paramBO.setHeaderParam(headerMap);
-
-        paramBO.setUrlParam(JakartaServletUtil.getParamMap(request));
-        if (HttpMethod.POST.matches(request.getMethod())
-                && request instanceof StandardMultipartHttpServletRequest multipartRequest) {
-            MultiValueMap<String, MultipartFile> multiFileMap = multipartRequest.getMultiFileMap();
-            Map<String, List<String>> multipartData = multiFileMap.entrySet()
-                    .stream()
-                    .collect(Collectors.toMap(
-                                    Map.Entry::getKey,
-                                    entry -> entry.getValue()
-                                            .stream()
-                                            .map(Either.warp(v -> SecureUtil.md5(v.getInputStream())))
-                                            .collect(Collectors.toList())
-                            )
-                    );
-            paramBO.setMultipartData(multipartData);
-            Map<String, String> multipart = multiFileMap.entrySet()
-                    .stream()
-                    .collect(Collectors.toMap(
-                                    Map.Entry::getKey,
-                                    entry -> entry.getValue()
-                                            .stream()
-                                            .map(multipartFile -> StrUtil.builder(multipartFile.getOriginalFilename(), StrUtil.BRACKET_START, DataSizeUtil.format(multipartFile.getSize()), StrUtil.BRACKET_END))
-                                            .collect(Collectors.joining(StrUtil.COMMA))
-                            )
-                    );
-            paramBO.setMultipart(multipart);
-        } else if (!HttpMethod.GET.matches(request.getMethod())) {
-            paramBO.setBody(request.getInputStream());
-        }
         // 接口请求的参数，放在request的attribute传递下去，以免频繁获取
         request.setAttribute(TakeshiConstants.PARAM_BO, paramBO);
         return paramBO;
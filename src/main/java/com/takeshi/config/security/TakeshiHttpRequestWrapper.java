@@ -1,69 +1,271 @@
 package com.takeshi.config.security;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.takeshi.config.StaticConfig;
 import jakarta.servlet.ReadListener;
 import jakarta.servlet.ServletInputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletRequestWrapper;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
- * 保存过滤器里面的流
+ * 保存过滤器里面的流<br/>
+ * body只读取一次，所有的输入流共享同一份只读的数据，body解析成的JsonNode也只解析一次
  *
  * @author 725
  */
 public class TakeshiHttpRequestWrapper extends HttpServletRequestWrapper {
 
+    private static final byte[] EMPTY = new byte[0];
+
     /**
      * 用于将流保存下来
      */
     private final byte[] bodyByte;
 
+    /**
+     * body是否超出了允许的最大字节数
+     */
+    private final boolean tooLarge;
+
+    /**
+     * body解析成的JsonNode
+     */
+    private JsonNode jsonNode;
+
+    /**
+     * body解析失败的异常
+     */
+    private IOException jsonException;
+
+    /**
+     * JsonNode中是否有浮点数，null为未检查
+     */
+    private Boolean floatingPoint;
+
     /**
      * 包装request
      *
-     * @param request request
+     * @param request     request
+     * @param maxBodySize body允许的最大字节数，超出时不会读取body
      * @throws IOException IOException
      */
-    public TakeshiHttpRequestWrapper(HttpServletRequest request) throws IOException {
+    public TakeshiHttpRequestWrapper(HttpServletRequest request, int maxBodySize) throws IOException {
         super(request);
-        bodyByte = request.getInputStream().readAllBytes();
+        long contentLength = request.getContentLengthLong();
+        if (contentLength > maxBodySize) {
+            this.bodyByte = EMPTY;
+            this.tooLarge = true;
+        } else if (contentLength >= 0) {
+            // 已知长度时一次分配好数组
+            byte[] bytes = new byte[(int) contentLength];
+            int length = request.getInputStream().readNBytes(bytes, 0, bytes.length);
+            this.bodyByte = length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+            this.tooLarge = false;
+        } else {
+            // chunked请求没有Content-Length，最多读取maxBodySize + 1个字节来判断是否超出
+            byte[] bytes = request.getInputStream().readNBytes(maxBodySize == Integer.MAX_VALUE ? maxBodySize : maxBodySize + 1);
+            this.tooLarge = bytes.length > maxBodySize;
+            this.bodyByte = this.tooLarge ? EMPTY : bytes;
+        }
     }
 
     @Override
     public ServletInputStream getInputStream() throws IOException {
-        final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bodyByte);
-        return new ServletInputStream() {
+        return new ByteArrayServletInputStream();
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(this.getInputStream(), this.getCharacterEncoding()));
+    }
+
+    /**
+     * body是否超出了允许的最大字节数
+     *
+     * @return boolean
+     */
+    public boolean isTooLarge() {
+        return this.tooLarge;
+    }
+
+    /**
+     * 获取只读的body
+     *
+     * @return ByteBuffer
+     */
+    public ByteBuffer getBody() {
+        return ByteBuffer.wrap(this.bodyByte).asReadOnlyBuffer();
+    }
+
+    /**
+     * 获取body解析成的JsonNode，只会解析一次
+     *
+     * @return JsonNode
+     * @throws IOException body不是json时抛出
+     */
+    public JsonNode getJsonNode() throws IOException {
+        if (this.jsonNode == null && this.jsonException == null) {
+            try {
+                this.jsonNode = StaticConfig.objectMapper.readTree(this.bodyByte);
+            } catch (IOException e) {
+                this.jsonException = e;
+            }
+        }
+        if (this.jsonException != null) {
+            throw this.jsonException;
+        }
+        return this.jsonNode;
+    }
+
+    /**
+     * 获取已经解析好的JsonNode，可以直接代替读取输入流<br/>
+     * 要读取的流不是此request自己的输入流（例如：RequestBodyAdvice替换了body），输入流已经被读取过，
+     * 或者有浮点数（解析为double会丢失BigDecimal的精度）时返回null
+     *
+     * @param body 消息转换器要读取的输入流，即HttpInputMessage.getBody()
+     * @return JsonNode
+     */
+    public JsonNode getReusableJsonNode(InputStream body) {
+        if (this.jsonNode == null || this.jsonNode.isMissingNode()) {
+            return null;
+        }
+        if (!(body instanceof ByteArrayServletInputStream stream) || !stream.isUnreadOf(this)) {
+            return null;
+        }
+        if (this.floatingPoint == null) {
+            this.floatingPoint = hasFloatingPoint(this.jsonNode);
+        }
+        return this.floatingPoint ? null : this.jsonNode;
+    }
 
-            @Override
-            public int read() throws IOException {
-                return byteArrayInputStream.read();
+    /**
+     * JsonNode中是否有浮点数
+     *
+     * @param node node
+     * @return boolean
+     */
+    private static boolean hasFloatingPoint(JsonNode node) {
+        if (node.isContainerNode()) {
+            for (JsonNode item : node) {
+                if (hasFloatingPoint(item)) {
+                    return true;
+                }
             }
+            return false;
+        }
+        return node.isFloatingPointNumber();
+    }
+
+    /**
+     * 直接读取共享的body数组，支持批量读取<br/>
+     * 支持mark/reset，Spring判断body是否为空时直接使用此输入流，不再包装成PushbackInputStream，消息转换器可以识别出自己的输入流
+     */
+    private class ByteArrayServletInputStream extends ServletInputStream {
+
+        private int pos;
 
-            @Override
-            public boolean isFinished() {
-                return byteArrayInputStream.available() == 0;
+        private int mark;
+
+        @Override
+        public int read() {
+            if (this.pos >= bodyByte.length) {
+                return -1;
             }
+            return bodyByte[this.pos++] & 0xFF;
+        }
 
-            @Override
-            public boolean isReady() {
-                return true;
+        @Override
+        public int read(byte[] b, int off, int len) {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            int available = bodyByte.length - this.pos;
+            if (available <= 0) {
+                return -1;
             }
+            int n = Math.min(len, available);
+            System.arraycopy(bodyByte, this.pos, b, off, n);
+            this.pos += n;
+            return n;
+        }
 
-            @Override
-            public void setReadListener(ReadListener readListener) {
+        @Override
+        public byte[] readAllBytes() {
+            return this.readNBytes(Integer.MAX_VALUE);
+        }
 
+        @Override
+        public byte[] readNBytes(int len) {
+            if (len < 0) {
+                throw new IllegalArgumentException("len < 0");
             }
-        };
-    }
+            int n = Math.min(len, bodyByte.length - this.pos);
+            byte[] bytes = Arrays.copyOfRange(bodyByte, this.pos, this.pos + n);
+            this.pos += n;
+            return bytes;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, bodyByte.length - this.pos));
+            this.pos += (int) skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return bodyByte.length - this.pos;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return this.pos >= bodyByte.length;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readLimit) {
+            this.mark = this.pos;
+        }
+
+        @Override
+        public void reset() {
+            this.pos = this.mark;
+        }
+
+        /**
+         * 是否是指定request的输入流，并且还没有被读取过
+         *
+         * @param owner request
+         * @return boolean
+         */
+        boolean isUnreadOf(TakeshiHttpRequestWrapper owner) {
+            return TakeshiHttpRequestWrapper.this == owner && this.pos == 0;
+        }
 
-    @Override
-    public BufferedReader getReader() throws IOException {
-        ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bodyByte);
-        return new BufferedReader(new InputStreamReader(byteArrayInputStream, this.getCharacterEncoding()));
     }
 
 }
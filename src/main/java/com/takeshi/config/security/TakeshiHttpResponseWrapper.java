@@ -1,109 +1,285 @@
 package com.takeshi.config.security;
 
+import cn.hutool.core.util.StrUtil;
 import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
- * TakeshiHttpResponseWrapper
+ * TakeshiHttpResponseWrapper<br/>
+ * 响应内容直接写回原始的response，同时截取前面一部分内容用于记录日志，二进制内容不会截取
  *
  * @author 七濑武【Nanase Takeshi】
  */
 public class TakeshiHttpResponseWrapper extends HttpServletResponseWrapper {
 
     /**
-     * ByteArrayOutputStream
+     * 最多截取的响应内容字节数
      */
-    private final ByteArrayOutputStream buffer;
+    private final int captureSize;
+    /**
+     * 可以记录为文本的响应类型
+     */
+    private final List<MediaType> textContentTypes;
+    /**
+     * 截取的响应内容
+     */
+    private final CaptureOutputStream capture;
+    /**
+     * 响应内容的总字节数
+     */
+    private long responseSize;
+    /**
+     * 响应内容是否是文本，第一次写入时根据Content-Type判断
+     */
+    private Boolean text;
     /**
      * ServletOutputStream
      */
-    private final ServletOutputStream outputStream;
+    private ServletOutputStream outputStream;
     /**
      * PrintWriter
      */
-    private final PrintWriter writer;
+    private PrintWriter writer;
 
     /**
      * 包装response
      *
-     * @param response response
-     * @throws IOException IOException
+     * @param response         response
+     * @param captureSize      最多截取的响应内容字节数
+     * @param textContentTypes 可以记录为文本的响应类型
      */
-    public TakeshiHttpResponseWrapper(HttpServletResponse response) throws IOException {
+    public TakeshiHttpResponseWrapper(HttpServletResponse response, int captureSize, List<MediaType> textContentTypes) {
         super(response);
-        buffer = new ByteArrayOutputStream();
-        outputStream = new WrapperServletOutputStream(buffer);
-        writer = new PrintWriter(new OutputStreamWriter(buffer, this.getCharacterEncoding()));
+        this.captureSize = captureSize;
+        this.textContentTypes = textContentTypes;
+        this.capture = new CaptureOutputStream(Math.min(captureSize, 1024));
     }
 
     @Override
     public ServletOutputStream getOutputStream() throws IOException {
-        return outputStream;
+        if (this.outputStream == null) {
+            this.outputStream = new TeeServletOutputStream(super.getOutputStream());
+        }
+        return this.outputStream;
     }
 
     @Override
     public PrintWriter getWriter() throws IOException {
-        return writer;
+        if (this.writer == null) {
+            this.writer = new PrintWriter(new OutputStreamWriter(this.getOutputStream(), this.getCharacterEncoding()));
+        }
+        return this.writer;
     }
 
     @Override
     public void flushBuffer() throws IOException {
-        if (writer != null) {
-            writer.flush();
+        if (this.writer != null) {
+            this.writer.flush();
         }
-        if (outputStream != null) {
-            outputStream.flush();
+        if (this.outputStream != null) {
+            this.outputStream.flush();
         }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        this.resetCapture();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        this.resetCapture();
     }
 
     /**
-     * 获取内容
+     * 响应内容是否是文本
      *
-     * @return 内容
+     * @return boolean
+     */
+    public boolean isText() {
+        return this.text == null || this.text;
+    }
+
+    /**
+     * 响应内容是否超出了截取的大小
+     *
+     * @return boolean
+     */
+    public boolean isTruncated() {
+        return this.responseSize > this.capture.size();
+    }
+
+    /**
+     * 获取响应内容的总字节数
+     *
+     * @return 字节数
+     */
+    public long getResponseSize() {
+        return this.responseSize;
+    }
+
+    /**
+     * 获取截取的响应内容
+     *
+     * @return 内容，二进制内容返回null
      * @throws IOException IOException
      */
-    public byte[] getResponseData() throws IOException {
-        flushBuffer();
-        return buffer.toByteArray();
+    public String getResponseData() throws IOException {
+        return this.getResponseData(Integer.MAX_VALUE);
+    }
+
+    /**
+     * 获取截取的响应内容的前maxSize个字节，只把这部分转成字符串
+     *
+     * @param maxSize 最多转换的字节数
+     * @return 内容，二进制内容返回null
+     * @throws IOException IOException
+     */
+    public String getResponseData(int maxSize) throws IOException {
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+        if (!this.isText()) {
+            return null;
+        }
+        return this.capture.toUtf8String(maxSize);
+    }
+
+    /**
+     * 清空截取的内容
+     */
+    private void resetCapture() {
+        this.capture.reset();
+        this.responseSize = 0;
+        this.text = null;
     }
 
-    private static class WrapperServletOutputStream extends ServletOutputStream {
+    /**
+     * 截取写入的内容
+     *
+     * @param b   数据
+     * @param off 起始位置
+     * @param len 长度
+     */
+    private void capture(byte[] b, int off, int len) {
+        this.responseSize += len;
+        if (this.text == null) {
+            this.text = this.isTextContentType();
+        }
+        int remaining = this.captureSize - this.capture.size();
+        if (this.text && remaining > 0) {
+            this.capture.write(b, off, Math.min(len, remaining));
+        }
+    }
 
-        private final ByteArrayOutputStream outputStream;
+    /**
+     * 截取写入的单个字节
+     *
+     * @param b 数据
+     */
+    private void capture(int b) {
+        this.responseSize++;
+        if (this.text == null) {
+            this.text = this.isTextContentType();
+        }
+        if (this.text && this.capture.size() < this.captureSize) {
+            this.capture.write(b);
+        }
+    }
 
-        public WrapperServletOutputStream(ByteArrayOutputStream outputStream) {
+    /**
+     * 根据Content-Type判断响应内容是否是文本，没有设置Content-Type时视为文本
+     *
+     * @return boolean
+     */
+    private boolean isTextContentType() {
+        String contentType = this.getContentType();
+        if (StrUtil.isBlank(contentType)) {
+            return true;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            return this.textContentTypes.stream().anyMatch(item -> item.includes(mediaType));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private class TeeServletOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream outputStream;
+
+        public TeeServletOutputStream(ServletOutputStream outputStream) {
             this.outputStream = outputStream;
         }
 
         @Override
         public void write(int b) throws IOException {
-            outputStream.write(b);
+            this.outputStream.write(b);
+            capture(b);
         }
 
         @Override
-        public void write(byte[] b) throws IOException {
-            outputStream.write(b);
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.outputStream.write(b, off, len);
+            capture(b, off, len);
         }
 
         @Override
-        public void write(byte[] b, int off, int len) throws IOException {
-            outputStream.write(b, off, len);
+        public void flush() throws IOException {
+            this.outputStream.flush();
         }
 
         @Override
         public boolean isReady() {
-            return true;
+            return this.outputStream.isReady();
         }
 
         @Override
         public void setWriteListener(WriteListener writeListener) {
+            this.outputStream.setWriteListener(writeListener);
+        }
+
+    }
+
+    /**
+     * 可以只转换前面一部分内容的ByteArrayOutputStream
+     */
+    private static final class CaptureOutputStream extends ByteArrayOutputStream {
+
+        CaptureOutputStream(int size) {
+            super(size);
+        }
+
+        /**
+         * 转换前maxSize个字节，不会截断在UTF-8多字节字符的中间
+         *
+         * @param maxSize 最多转换的字节数
+         * @return String
+         */
+        synchronized String toUtf8String(int maxSize) {
+            int length = this.count;
+            if (maxSize < length) {
+                length = Math.max(0, maxSize);
+                while (length > 0 && (this.buf[length] & 0xC0) == 0x80) {
+                    length--;
+                }
+            }
+            return new String(this.buf, 0, length, StandardCharsets.UTF_8);
         }
 
     }
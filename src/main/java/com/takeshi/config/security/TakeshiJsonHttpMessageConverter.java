@@ -0,0 +1,87 @@
+package com.takeshi.config.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConversionException;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonInputMessage;
+import org.springframework.lang.NonNull;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TakeshiJsonHttpMessageConverter<br/>
+ * body已经被{@link com.takeshi.pojo.bo.ParamBO}解析成JsonNode时直接转换成接口参数，不再重复解析json
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public class TakeshiJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    /**
+     * 构造函数
+     *
+     * @param objectMapper objectMapper
+     */
+    public TakeshiJsonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    @NonNull
+    public Object read(@NonNull Type type, Class<?> contextClass, @NonNull HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
+        JsonNode jsonNode = this.getReusableJsonNode(inputMessage);
+        if (jsonNode == null) {
+            return super.read(type, contextClass, inputMessage);
+        }
+        JavaType javaType = this.getJavaType(type, contextClass);
+        try {
+            return this.getObjectMapper().readerFor(javaType).readValue(jsonNode);
+        } catch (InvalidDefinitionException ex) {
+            throw new HttpMessageConversionException("Type definition error: " + ex.getType(), ex);
+        } catch (JsonProcessingException ex) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + ex.getOriginalMessage(), ex, inputMessage);
+        }
+    }
+
+    /**
+     * 获取当前请求已经解析好的JsonNode
+     *
+     * @param inputMessage inputMessage
+     * @return 不能复用时返回null
+     * @throws IOException IOException
+     */
+    private JsonNode getReusableJsonNode(HttpInputMessage inputMessage) throws IOException {
+        if (inputMessage instanceof MappingJacksonInputMessage) {
+            // 使用了@JsonView
+            return null;
+        }
+        MediaType contentType = inputMessage.getHeaders().getContentType();
+        if (contentType != null && contentType.getCharset() != null && !StandardCharsets.UTF_8.equals(contentType.getCharset())) {
+            return null;
+        }
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes instanceof ServletRequestAttributes servletRequestAttributes) {
+            HttpServletRequest request = servletRequestAttributes.getRequest();
+            TakeshiHttpRequestWrapper wrapper = WebUtils.getNativeRequest(request, TakeshiHttpRequestWrapper.class);
+            if (wrapper != null) {
+                // RequestBodyAdvice替换了body时，inputMessage的输入流不再是request自己的输入流，不能复用
+                return wrapper.getReusableJsonNode(inputMessage.getBody());
+            }
+        }
+        return null;
+    }
+
+}
@@ -1,12 +1,15 @@
 package com.takeshi.constants;
 
 import com.takeshi.pojo.bo.RetBO;
+import org.springframework.stereotype.Indexed;
 
 /**
- * 全局默认 Response Code
+ * 全局默认 Response Code<br/>
+ * 使用spring-context-indexer时，子接口会在编译时写入META-INF/spring.components，启动时不再需要扫描包
  *
  * @author 七濑武【Nanase Takeshi】
  */
+@Indexed
 public interface TakeshiCode {
 
     /**
@@ -12,6 +12,16 @@ public interface TakeshiConstants {
      */
     String PARAM_BO = "paramBO";
 
+    /**
+     * 接口返回的ResponseData的状态码，放在request的attribute传递下去，记录日志时无需再解析响应内容
+     */
+    String RESPONSE_CODE = "takeshiResponseCode";
+
+    /**
+     * 信封加密解密出的AES密钥，放在request的attribute传递下去，加密响应时无需再次RSA解密
+     */
+    String ENVELOPE_KEY = "takeshiEnvelopeKey";
+
     /**
      * 调用接口header里面传的时间戳字段（毫秒级）
      */
@@ -32,11 +42,21 @@ public interface TakeshiConstants {
      */
     String SIGN_NAME = "x-sign";
 
+    /**
+     * 信封加密时前端使用rsa公钥加密后的AES密钥
+     */
+    String ENVELOPE_KEY_NAME = "x-envelope-key";
+
     /**
      * 日志追踪ID
      */
     String TRACE_ID_KEY = "traceId";
 
+    /**
+     * W3C Trace Context的请求头和响应头
+     */
+    String TRACEPARENT = "traceparent";
+
     /**
      * 需要排除的页面路径
      */
@@ -1,10 +1,13 @@
 package com.takeshi.controller;
 
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.util.ObjUtil;
 import cn.hutool.crypto.asymmetric.KeyType;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.github.xiaoymin.knife4j.annotations.ApiOperationSupport;
 import com.takeshi.annotation.SystemSecurity;
 import com.takeshi.config.StaticConfig;
+import com.takeshi.config.security.EnvelopeCipher;
 import com.takeshi.pojo.basic.ResponseData;
 import com.takeshi.util.GsonUtil;
 import com.takeshi.util.TakeshiUtil;
@@ -15,6 +18,9 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
+import javax.crypto.SecretKey;
+import java.io.IOException;
+
 /**
  * SystemController
  *
@@ -31,32 +37,60 @@ public class SystemController extends AbstractBasicController {
     /**
      * 使用公钥加密数据
      *
-     * @param object object
+     * @param object  object
+     * @param request request
      * @return ResponseData
      */
     @Operation(summary = "使用公钥加密数据")
     @ApiOperationSupport(author = NANASE_TAKESHI)
     @PostMapping("/encrypt")
-    public ResponseData<Object> encrypt(@RequestBody Object object) {
+    public ResponseData<Object> encrypt(@RequestBody Object object, HttpServletRequest request) {
         String data = GsonUtil.toJson(object);
         log.info("SystemController.encrypt --> data: {}", data);
-        return retData(StaticConfig.rsa.encryptBase64(data, KeyType.PublicKey));
+        SecretKey secretKey = EnvelopeCipher.sessionKey(request);
+        if (ObjUtil.isNotNull(secretKey)) {
+            // 传递了x-envelope-key时使用信封加密
+            return retData(EnvelopeCipher.encrypt(secretKey, data));
+        }
+        return retData(StaticConfig.rsaCipher().encryptBase64(data, KeyType.PublicKey));
     }
 
     /**
      * 使用公钥解密数据
      *
-     * @param object object
+     * @param object  object
+     * @param request request
      * @return ResponseData
-     * @throws JsonProcessingException JsonProcessingException
+     * @throws IOException IOException
      */
     @Operation(summary = "使用公钥解密数据")
     @ApiOperationSupport(author = NANASE_TAKESHI)
     @PostMapping("/decrypt")
-    public ResponseData<Object> decrypt(@RequestBody Object object) throws JsonProcessingException {
+    public ResponseData<Object> decrypt(@RequestBody Object object, HttpServletRequest request) throws IOException {
         String data = GsonUtil.toJson(object);
         log.info("SystemController.decrypt --> data: {}", data);
-        return retData(StaticConfig.objectMapper.readTree(StaticConfig.rsa.decryptStr(data, KeyType.PublicKey)));
+        SecretKey secretKey = EnvelopeCipher.sessionKey(request);
+        if (ObjUtil.isNotNull(secretKey)) {
+            // 传递了x-envelope-key时使用信封加密
+            return retData(StaticConfig.objectMapper.readTree(EnvelopeCipher.decrypt(secretKey, object instanceof String str ? str : data)));
+        }
+        return retData(StaticConfig.objectMapper.readTree(StaticConfig.rsaCipher().decryptStr(data, KeyType.PublicKey)));
+    }
+
+    /**
+     * 测试生成信封加密的AES密钥
+     *
+     * @return key：Base64编码的AES密钥，envelopeKey：rsa公钥加密后的AES密钥，放在请求头x-envelope-key中
+     */
+    @Operation(summary = "测试生成信封加密的AES密钥")
+    @ApiOperationSupport(author = NANASE_TAKESHI)
+    @GetMapping("/envelope-key")
+    public ResponseData<Object> envelopeKey() {
+        byte[] key = EnvelopeCipher.generateKey().getEncoded();
+        return retData(MapUtil.builder()
+                .put("key", Base64.encode(key))
+                .put("envelopeKey", Base64.encode(StaticConfig.rsaCipher().encrypt(key, KeyType.PublicKey)))
+                .build());
     }
 
     /**
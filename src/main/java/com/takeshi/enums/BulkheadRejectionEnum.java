@@ -0,0 +1,19 @@
+package com.takeshi.enums;
+
+/**
+ * 隔离执行器的队列满时的拒绝策略
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public enum BulkheadRejectionEnum {
+
+    /**
+     * 抛出RejectedExecutionException，调用者立即失败
+     */
+    ABORT,
+    /**
+     * 由调用者线程执行，会占用调用者线程（例如请求线程）
+     */
+    CALLER_RUNS
+
+}
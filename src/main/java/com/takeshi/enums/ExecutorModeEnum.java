@@ -0,0 +1,19 @@
+package com.takeshi.enums;
+
+/**
+ * 异步任务执行器的模式
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public enum ExecutorModeEnum {
+
+    /**
+     * 固定大小的平台线程池，队列满时由调用者线程执行
+     */
+    PLATFORM,
+    /**
+     * 每个任务一个虚拟线程，需要运行在JDK 21及以上，阻塞的I/O不再占用平台线程；运行的JDK不支持时退回PLATFORM
+     */
+    VIRTUAL
+
+}
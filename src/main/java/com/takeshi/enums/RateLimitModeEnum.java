@@ -0,0 +1,23 @@
+package com.takeshi.enums;
+
+/**
+ * IP速率限制的模式
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public enum RateLimitModeEnum {
+
+    /**
+     * 每次请求都在redis中计数，集群内的速率限制精确
+     */
+    REDIS,
+    /**
+     * 每个节点在本地使用令牌桶限制，不访问redis，集群的总速率为节点数 * 速率
+     */
+    LOCAL,
+    /**
+     * 本地令牌桶限制，并分批从redis租借配额，集群的总速率不会超出限制，大部分请求只需要本地校验
+     */
+    HYBRID
+
+}
@@ -0,0 +1,35 @@
+package com.takeshi.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 应用关闭的阶段，按顺序执行，所有阶段之前先让每个子系统停止接收新任务<br/>
+ * 所有阶段共用takeshi.max-executor-close-timeout，每个阶段的截止时间为开始关闭后的超时时间乘以deadlinePercent，
+ * 前面的阶段提前完成时剩余的时间留给后面的阶段，最后一个阶段的截止时间就是整体的截止时间
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Getter
+@AllArgsConstructor
+public enum ShutdownPhaseEnum {
+
+    /**
+     * 等待线程池中已经提交的任务执行完成，例如：'@Async'任务，隔离执行器中的S3上传和邮件发送
+     */
+    DRAIN(60),
+    /**
+     * 把缓冲中的数据写入，例如：接口日志，任务执行完成后不会再产生新的数据
+     */
+    FLUSH(90),
+    /**
+     * 关闭客户端和连接，例如：S3 TransferManager，FirebaseApp，Redisson
+     */
+    CLOSE(100);
+
+    /**
+     * 阶段的截止时间占整体超时时间的百分比（从开始关闭算起，包括前面阶段的耗时）
+     */
+    private final int deadlinePercent;
+
+}
@@ -0,0 +1,35 @@
+package com.takeshi.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 参数签名的算法<br/>
+ * 签名内容为所有参数按key排序后key与value直接拼接，再依次拼接body的非JsonObject内容，nonce，timestamp
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Getter
+@AllArgsConstructor
+public enum SignatureAlgorithmEnum {
+
+    /**
+     * MD5，signatureKey拼接在body的非JsonObject内容之后，nonce之前，与SecureUtil.signParamsMd5的结果一致
+     */
+    MD5("MD5", 16),
+    /**
+     * HmacSHA256，signatureKey作为密钥，不参与拼接
+     */
+    HMAC_SHA256("HmacSHA256", 32);
+
+    /**
+     * JCA中的算法名称
+     */
+    private final String algorithm;
+
+    /**
+     * 摘要的字节长度
+     */
+    private final int length;
+
+}
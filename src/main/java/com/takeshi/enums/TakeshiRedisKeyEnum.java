@@ -22,17 +22,26 @@ public enum TakeshiRedisKeyEnum implements TakeshiRedisKeyFormat {
      */
     IP_BLACKLIST("ipBlacklist:{}"),
     /**
-     * nonce限制{nonce}
+     * IP加入或移出黑名单的广播频道
      */
-    NONCE_RATE_LIMIT("rate:nonce:{}"),
+    IP_BLACKLIST_TOPIC("topic:ipBlacklist"),
     /**
-     * ip限制{clientIp}
+     * nonce限制{nonce}，lua脚本中保存令牌桶的理论到达时间
      */
-    IP_RATE_LIMIT("rate:ip:{}"),
+    NONCE_RATE_LIMIT("limit:nonce:{}"),
     /**
-     * 重复提交{MD5后的值}
+     * ip限制{clientIp}，lua脚本中保存令牌桶的理论到达时间
      */
-    REPEAT_SUBMIT("repeatSubmit:{}"),
+    IP_RATE_LIMIT("limit:ip:{}"),
+    /**
+     * 重复提交{MD5后的值}，lua脚本中保存令牌桶的理论到达时间
+     */
+    REPEAT_SUBMIT("limit:repeatSubmit:{}"),
+
+    /**
+     * 接口日志归档任务的锁
+     */
+    LOCK_SYS_LOG_ARCHIVE("lock:sysLogArchive"),
 
     /**
      * S3临时URL的锁{S3Key}{Duration}
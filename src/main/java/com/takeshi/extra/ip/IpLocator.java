@@ -0,0 +1,18 @@
+package com.takeshi.extra.ip;
+
+/**
+ * IP地址定位，通过SPI加载实现类
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public interface IpLocator {
+
+    /**
+     * 查询IP对应的地址
+     *
+     * @param ip ip
+     * @return 地址，查询不到时返回null
+     */
+    String search(String ip);
+
+}
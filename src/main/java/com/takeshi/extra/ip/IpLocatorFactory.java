@@ -0,0 +1,37 @@
+package com.takeshi.extra.ip;
+
+import cn.hutool.core.lang.Singleton;
+import cn.hutool.core.util.ServiceLoaderUtil;
+
+/**
+ * IpLocatorFactory
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public class IpLocatorFactory {
+
+    /**
+     * 根据SPI配置，自动创建对应的对象 <br/>
+     * 获得的是单例的IpLocator
+     *
+     * @return IpLocator
+     */
+    public static IpLocator get() {
+        return Singleton.get(IpLocator.class.getName(), IpLocatorFactory::create);
+    }
+
+    /**
+     * 根据SPI配置，自动创建对应的对象 <br/>
+     * 推荐创建的单例使用，此方法每次调用会返回新的对象
+     *
+     * @return IpLocator
+     */
+    public static IpLocator create() {
+        final IpLocator ipLocator = ServiceLoaderUtil.loadFirstAvailable(IpLocator.class);
+        if (null != ipLocator) {
+            return ipLocator;
+        }
+        throw new RuntimeException("No ip locator found! Please add one of ip locator jar to your project!");
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.takeshi.extra.ip;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * IpLocatorUtil
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+public class IpLocatorUtil {
+
+    /**
+     * 查询IP对应的地址，默认使用离线的ip2region地址库
+     *
+     * @param ip ip
+     * @return 地址，查询不到时返回null
+     */
+    public static String search(String ip) {
+        if (StrUtil.isBlank(ip)) {
+            return null;
+        }
+        try {
+            return IpLocatorFactory.get().search(ip);
+        } catch (Exception e) {
+            log.error("IpLocatorUtil.search --> e: ", e);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.takeshi.extra.ip;
+
+import cn.hutool.http.HttpUtil;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+
+/**
+ * 通过在线接口查询IP对应的地址，没有离线地址库文件时使用，每次查询都是一次同步的HTTP请求
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+public class OnlineIpLocator implements IpLocator {
+
+    private static final String URL = "https://whois.pconline.com.cn/ipJson.jsp";
+
+    /**
+     * 查询IP对应的地址
+     *
+     * @param ip ip
+     * @return 地址，查询不到或请求失败时返回null
+     */
+    @Override
+    public String search(String ip) {
+        try {
+            HashMap<String, Object> map = new HashMap<>(6);
+            map.put("ip", ip);
+            map.put("json", true);
+            return JSONUtil.parseObj(HttpUtil.get(URL, map)).getStr("addr");
+        } catch (Exception e) {
+            log.error("OnlineIpLocator.search --> e: ", e);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,309 @@
+package com.takeshi.extra.ip;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.core.util.StrUtil;
+import com.takeshi.config.StaticConfig;
+import com.takeshi.config.properties.IpLocatorProperties;
+import lombok.extern.slf4j.Slf4j;
+import net.dreamlu.mica.auto.annotation.AutoService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * 基于ip2region的xdb格式离线地址库的IP定位<br/>
+ * 地址库文件通过内存映射读取，使用二分查找定位IP段，最近查询过的IP会缓存在内存中，
+ * 地址库文件有更新时会自动重新加载<br/>
+ * 地址库文件需要自行下载（https://github.com/lionsoul2014/ip2region/tree/master/data），jar包中不包含；
+ * 找不到文件时按takeshi.ip-locator.online-fallback使用在线接口查询（与之前的行为一致），或者返回null
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+@AutoService(IpLocator.class)
+public class XdbIpLocator implements IpLocator {
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+    private static final int HEADER_INFO_LENGTH = 256;
+    private static final int VECTOR_INDEX_COLS = 256;
+    private static final int VECTOR_INDEX_SIZE = 8;
+    private static final int SEGMENT_INDEX_SIZE = 14;
+    private static final int CACHE_SEGMENTS = 16;
+
+    /**
+     * 地址库文件
+     */
+    private final File dbFile;
+
+    /**
+     * 地址库文件是否支持热加载
+     */
+    private final boolean reloadable;
+
+    /**
+     * 检查地址库文件是否有更新的时间间隔（毫秒）
+     */
+    private final long reloadIntervalMillis;
+
+    /**
+     * 分段的LRU缓存，降低锁竞争
+     */
+    private final Map<String, String>[] caches;
+
+    /**
+     * 没有地址库时使用的在线查询，不允许在线查询时为null
+     */
+    private final IpLocator fallback;
+
+    /**
+     * 当前使用的地址库
+     */
+    private volatile XdbIndex xdbIndex;
+
+    /**
+     * 下一次检查地址库文件的时间
+     */
+    private volatile long nextCheckMillis;
+
+    /**
+     * 构造函数
+     */
+    @SuppressWarnings("unchecked")
+    public XdbIpLocator() {
+        IpLocatorProperties ipLocator = StaticConfig.takeshiProperties.getIpLocator();
+        String dbPath = ipLocator.getDbPath();
+        if (StrUtil.startWithIgnoreCase(dbPath, CLASSPATH_PREFIX)) {
+            // jar包中的文件无法直接内存映射，复制到临时文件中
+            String resource = StrUtil.removePrefixIgnoreCase(dbPath, CLASSPATH_PREFIX);
+            InputStream inputStream = ResourceUtil.getStreamSafe(resource);
+            this.dbFile = inputStream == null ? FileUtil.file(resource)
+                    : FileUtil.writeFromStream(inputStream, FileUtil.createTempFile("ip2region", ".xdb", true));
+            this.reloadable = false;
+        } else {
+            this.dbFile = FileUtil.file(dbPath);
+            this.reloadable = true;
+        }
+        this.reloadIntervalMillis = ipLocator.getReloadInterval().toMillis();
+        int segmentCapacity = Math.max(1, ipLocator.getCacheSize() / CACHE_SEGMENTS);
+        this.caches = new Map[CACHE_SEGMENTS];
+        for (int i = 0; i < CACHE_SEGMENTS; i++) {
+            this.caches[i] = new LinkedHashMap<>(segmentCapacity, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return this.size() > segmentCapacity;
+                }
+            };
+        }
+        this.fallback = ipLocator.isOnlineFallback() ? new OnlineIpLocator() : null;
+        this.xdbIndex = this.load();
+        this.nextCheckMillis = System.currentTimeMillis() + this.reloadIntervalMillis;
+        if (this.xdbIndex == null) {
+            log.warn("XdbIpLocator --> ip2region xdb is not available ({}), client ip address will be {}", dbPath,
+                    this.fallback == null ? "null" : "resolved by the online lookup");
+        }
+    }
+
+    /**
+     * 查询IP对应的地址
+     *
+     * @param ip ip
+     * @return 地址，查询不到时返回null
+     */
+    @Override
+    public String search(String ip) {
+        this.reloadIfModified();
+        Map<String, String> cache = this.caches[(ip.hashCode() & 0x7FFFFFFF) % CACHE_SEGMENTS];
+        synchronized (cache) {
+            String region = cache.get(ip);
+            if (region != null) {
+                return region.isEmpty() ? null : region;
+            }
+        }
+        XdbIndex current = this.xdbIndex;
+        if (current == null) {
+            // 在线查询失败时不缓存，下次重新查询
+            String region = this.fallback == null ? null : this.fallback.search(ip);
+            if (region != null) {
+                synchronized (cache) {
+                    cache.put(ip, region);
+                }
+            }
+            return region;
+        }
+        long ipLong = ipv4ToLong(ip);
+        if (ipLong < 0) {
+            return null;
+        }
+        String region = current.search(ipLong);
+        synchronized (cache) {
+            // 缓存里使用空字符串表示查询不到地址
+            cache.put(ip, region == null ? StrUtil.EMPTY : region);
+        }
+        return region;
+    }
+
+    /**
+     * 地址库文件有变化时重新加载
+     */
+    private void reloadIfModified() {
+        long now = System.currentTimeMillis();
+        if (!this.reloadable || now < this.nextCheckMillis) {
+            return;
+        }
+        synchronized (this) {
+            if (now < this.nextCheckMillis) {
+                return;
+            }
+            this.nextCheckMillis = now + this.reloadIntervalMillis;
+            XdbIndex current = this.xdbIndex;
+            if (current != null && current.lastModified == this.dbFile.lastModified() && current.length == this.dbFile.length()) {
+                return;
+            }
+            XdbIndex reloaded = this.load();
+            if (reloaded != null) {
+                this.xdbIndex = reloaded;
+                for (Map<String, String> cache : this.caches) {
+                    synchronized (cache) {
+                        cache.clear();
+                    }
+                }
+                log.info("XdbIpLocator.reloadIfModified --> ip2region xdb reloaded: {}", this.dbFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * 内存映射地址库文件
+     *
+     * @return XdbIndex，文件不存在或格式错误时返回null
+     */
+    private XdbIndex load() {
+        if (!FileUtil.isFile(this.dbFile)) {
+            log.warn("XdbIpLocator.load --> ip2region xdb file not found: {}", this.dbFile.getAbsolutePath());
+            return null;
+        }
+        long lastModified = this.dbFile.lastModified();
+        try (FileChannel fileChannel = FileChannel.open(this.dbFile.toPath(), StandardOpenOption.READ)) {
+            long length = fileChannel.size();
+            if (length < HEADER_INFO_LENGTH + VECTOR_INDEX_COLS * VECTOR_INDEX_COLS * VECTOR_INDEX_SIZE || length > Integer.MAX_VALUE) {
+                log.warn("XdbIpLocator.load --> invalid ip2region xdb file: {}", this.dbFile.getAbsolutePath());
+                return null;
+            }
+            ByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+            return new XdbIndex(buffer, lastModified, length);
+        } catch (IOException e) {
+            log.error("XdbIpLocator.load --> e: ", e);
+            return null;
+        }
+    }
+
+    /**
+     * IPv4字符串转long，不产生中间对象
+     *
+     * @param ip ip
+     * @return long，不是IPv4时返回-1
+     */
+    private static long ipv4ToLong(String ip) {
+        long result = 0;
+        int part = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0, length = ip.length(); i < length; i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                part = part * 10 + (c - '0');
+                if (++digits > 3 || part > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && digits > 0 && dots < 3) {
+                result = result << 8 | part;
+                part = 0;
+                digits = 0;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || digits == 0) {
+            return -1;
+        }
+        return result << 8 | part;
+    }
+
+    /**
+     * 内存映射的地址库
+     */
+    private static final class XdbIndex {
+
+        private final ByteBuffer buffer;
+        private final long lastModified;
+        private final long length;
+
+        XdbIndex(ByteBuffer buffer, long lastModified, long length) {
+            this.buffer = buffer;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * 先通过向量索引确定IP段范围，再对IP段二分查找
+         *
+         * @param ip ip
+         * @return 地址
+         */
+        String search(long ip) {
+            int il0 = (int) (ip >> 24 & 0xFF);
+            int il1 = (int) (ip >> 16 & 0xFF);
+            int idx = HEADER_INFO_LENGTH + il0 * VECTOR_INDEX_COLS * VECTOR_INDEX_SIZE + il1 * VECTOR_INDEX_SIZE;
+            long startPtr = this.buffer.getInt(idx) & 0xFFFFFFFFL;
+            long endPtr = this.buffer.getInt(idx + 4) & 0xFFFFFFFFL;
+            int low = 0;
+            int high = (int) ((endPtr - startPtr) / SEGMENT_INDEX_SIZE);
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int ptr = (int) (startPtr + (long) mid * SEGMENT_INDEX_SIZE);
+                long startIp = this.buffer.getInt(ptr) & 0xFFFFFFFFL;
+                if (ip < startIp) {
+                    high = mid - 1;
+                } else if (ip > (this.buffer.getInt(ptr + 4) & 0xFFFFFFFFL)) {
+                    low = mid + 1;
+                } else {
+                    int dataLen = this.buffer.getShort(ptr + 8) & 0xFFFF;
+                    int dataPtr = this.buffer.getInt(ptr + 10);
+                    byte[] bytes = new byte[dataLen];
+                    this.buffer.get(dataPtr, bytes, 0, dataLen);
+                    return format(new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 格式化地址，例如：中国|0|广东省|深圳市|电信 =》 中国 广东省 深圳市 电信
+         *
+         * @param region region
+         * @return 地址
+         */
+        private static String format(String region) {
+            StringJoiner joiner = new StringJoiner(StrUtil.SPACE);
+            for (String item : StrUtil.splitTrim(region, '|')) {
+                if (!StrUtil.equals(item, "0")) {
+                    joiner.add(item);
+                }
+            }
+            return StrUtil.emptyToNull(joiner.toString());
+        }
+
+    }
+
+}
@@ -1,5 +1,8 @@
 package com.takeshi.extra.sms;
 
+import com.takeshi.component.BulkheadRegistry;
+import com.takeshi.config.StaticConfig;
+
 /**
  * SmsUtil
  *
@@ -17,7 +20,8 @@ public class SmsUtil {
      * @param message     消息内容
      */
     public static void sendMessage(boolean send, String countryCode, String number, String message) {
-        SmsFactory.get().sendMessage(send, countryCode, number, message);
+        // 在sms隔离执行器中发送，短信平台变慢时不会占满其他线程
+        StaticConfig.bulkheadRegistry.get(BulkheadRegistry.SMS).run(() -> SmsFactory.get().sendMessage(send, countryCode, number, message));
     }
 
 }
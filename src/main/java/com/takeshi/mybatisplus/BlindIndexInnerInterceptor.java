@@ -0,0 +1,97 @@
+package com.takeshi.mybatisplus;
+
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.update.Update;
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+import com.takeshi.annotation.BlindIndex;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 拒绝通过UpdateWrapper的set直接更新有盲索引的加密字段<br/>
+ * 盲索引由DefaultMetaObjectHandler根据实体中加密字段的明文计算，wrapper中set的值不经过实体，盲索引不会更新，
+ * 之后按盲索引查询时会查不到或者查到旧的数据；更新这些字段时使用updateById或者update(entity, wrapper)，把新的值放在实体中
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public class BlindIndexInnerInterceptor implements InnerInterceptor {
+
+    /**
+     * set语句中的列名，#{...}中的参数先被替换掉，避免把typeHandler=之类的映射当作列名
+     */
+    private static final Pattern SET_COLUMN = Pattern.compile("(?:^|,)\\s*[`\"]?(\\w+)[`\"]?\\s*=");
+
+    private static final Pattern PARAMETER = Pattern.compile("#\\{[^}]*}");
+
+    /**
+     * 实体类 -> 有盲索引的加密字段的列名（小写）
+     */
+    private final Map<Class<?>, Set<String>> encryptedColumns = new ConcurrentHashMap<>();
+
+    @Override
+    public void beforeUpdate(Executor executor, MappedStatement ms, Object parameter) {
+        if (!(parameter instanceof Map<?, ?> map) || !map.containsKey(Constants.WRAPPER) || !(map.get(Constants.WRAPPER) instanceof Update<?, ?> update)) {
+            return;
+        }
+        String sqlSet = update.getSqlSet();
+        if (StrUtil.isBlank(sqlSet)) {
+            return;
+        }
+        TableInfo tableInfo = tableInfo(ms, map.containsKey(Constants.ENTITY) ? map.get(Constants.ENTITY) : null);
+        if (tableInfo == null) {
+            return;
+        }
+        Set<String> columns = this.encryptedColumns.computeIfAbsent(tableInfo.getEntityType(), clazz -> encryptedColumns(tableInfo));
+        if (columns.isEmpty()) {
+            return;
+        }
+        Matcher matcher = SET_COLUMN.matcher(PARAMETER.matcher(sqlSet).replaceAll("?"));
+        while (matcher.find()) {
+            String column = matcher.group(1).toLowerCase();
+            if (columns.contains(column)) {
+                throw new MybatisPlusException(StrUtil.format("Column [{}] of {} has a blind index, it can not be updated by wrapper set, "
+                        + "put the new value in the entity and use updateById or update(entity, wrapper)", column, tableInfo.getEntityType().getName()));
+            }
+        }
+    }
+
+    private static TableInfo tableInfo(MappedStatement ms, Object entity) {
+        if (entity != null) {
+            return TableInfoHelper.getTableInfo(entity.getClass());
+        }
+        String namespace = StrUtil.subBefore(ms.getId(), StrUtil.DOT, true);
+        return TableInfoHelper.getTableInfos().stream()
+                .filter(tableInfo -> namespace.equals(tableInfo.getCurrentNamespace()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static Set<String> encryptedColumns(TableInfo tableInfo) {
+        Set<String> sources = Arrays.stream(ReflectUtil.getFields(tableInfo.getEntityType(), field -> field.isAnnotationPresent(BlindIndex.class)))
+                .map(field -> field.getAnnotation(BlindIndex.class).value())
+                .collect(Collectors.toSet());
+        if (sources.isEmpty()) {
+            return Set.of();
+        }
+        return tableInfo.getFieldList().stream()
+                .filter(fieldInfo -> sources.contains(fieldInfo.getProperty()))
+                .map(TableFieldInfo::getColumn)
+                .map(column -> StrUtil.unWrap(column, '`').toLowerCase())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+}
@@ -1,12 +1,20 @@
 package com.takeshi.mybatisplus;
 
+import cn.hutool.core.util.ReflectUtil;
 import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import com.takeshi.annotation.BlindIndex;
+import com.takeshi.config.StaticConfig;
 import com.takeshi.pojo.basic.AbstractBasicEntity;
 import com.takeshi.util.TakeshiUtil;
 import org.apache.ibatis.reflection.MetaObject;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.Field;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * DefaultMetaObjectHandler
@@ -14,6 +22,9 @@ import java.time.Instant;
  * mybatis plus 操作时对字段进行统一默认操作
  * <p>
  * 在实体类字段上添加注解@TableField (fill = FieldFill.INSERT)
+ * <p>
+ * 标注了{@link BlindIndex}的字段在新增和更新时根据加密字段的明文计算盲索引，
+ * 只处理实体中的值，通过wrapper的set更新加密字段会被{@link BlindIndexInnerInterceptor}拒绝
  *
  * @author 七濑武【Nanase Takeshi】
  */
@@ -23,15 +34,38 @@ public class DefaultMetaObjectHandler implements MetaObjectHandler {
     private final String CREATE_TIME = TakeshiUtil.getPropertyName(AbstractBasicEntity::getCreateTime);
     private final String UPDATE_TIME = TakeshiUtil.getPropertyName(AbstractBasicEntity::getUpdateTime);
 
+    /**
+     * 实体类 -> 盲索引字段
+     */
+    private final Map<Class<?>, List<Field>> blindIndexFields = new ConcurrentHashMap<>();
+
     @Override
     public void insertFill(MetaObject metaObject) {
         this.strictInsertFill(metaObject, CREATE_TIME, () -> Instant.now().toEpochMilli(), Long.class);
         this.strictInsertFill(metaObject, UPDATE_TIME, () -> Instant.now().toEpochMilli(), Long.class);
+        this.fillBlindIndex(metaObject);
     }
 
     @Override
     public void updateFill(MetaObject metaObject) {
         this.strictUpdateFill(metaObject, UPDATE_TIME, () -> Instant.now().toEpochMilli(), Long.class);
+        this.fillBlindIndex(metaObject);
+    }
+
+    /**
+     * 加密字段有值时重新计算盲索引，没有值时（只更新部分字段）保持不变
+     *
+     * @param metaObject metaObject
+     */
+    private void fillBlindIndex(MetaObject metaObject) {
+        List<Field> fields = this.blindIndexFields.computeIfAbsent(metaObject.getOriginalObject().getClass(),
+                clazz -> Arrays.stream(ReflectUtil.getFields(clazz, field -> field.isAnnotationPresent(BlindIndex.class))).toList());
+        for (Field field : fields) {
+            String source = field.getAnnotation(BlindIndex.class).value();
+            if (metaObject.hasGetter(source) && metaObject.getValue(source) instanceof String value) {
+                metaObject.setValue(field.getName(), StaticConfig.columnCipher().blindIndex(value));
+            }
+        }
     }
 
 }
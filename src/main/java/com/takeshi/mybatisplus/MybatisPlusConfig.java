@@ -3,7 +3,9 @@ package com.takeshi.mybatisplus;
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.takeshi.component.ResourceLimiter;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 
 /**
@@ -45,15 +47,29 @@ public class MybatisPlusConfig {
     public static final String MAPPING_AMAZON_S3_TYPE_HANDLER = "typeHandler=com.takeshi.mybatisplus.typehandler.AmazonS3TypeHandler";
 
     /**
-     * 新的分页插件,一缓和二缓遵循mybatis的规则,需要设置 MybatisConfiguration useDeprecatedExecutor = false 避免缓存出现问题
+     * 新的分页插件,一缓和二缓遵循mybatis的规则,需要设置 MybatisConfiguration useDeprecatedExecutor = false 避免缓存出现问题<br/>
+     * 拒绝通过wrapper的set更新有盲索引的加密字段，参考{@link BlindIndexInnerInterceptor}
      *
      * @return MybatisPlusInterceptor
      */
     @Bean
     public MybatisPlusInterceptor mybatisPlusInterceptor() {
         MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(new BlindIndexInnerInterceptor());
         interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.MYSQL));
         return interceptor;
     }
 
+    /**
+     * takeshi.executor.mode=VIRTUAL时在db的资源限制内执行SQL，参考{@link ResourceLimitInterceptor}
+     *
+     * @param resourceLimiter resourceLimiter
+     * @return ResourceLimitInterceptor
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "takeshi.executor", name = "mode", havingValue = "virtual")
+    public ResourceLimitInterceptor resourceLimitInterceptor(ResourceLimiter resourceLimiter) {
+        return new ResourceLimitInterceptor(resourceLimiter);
+    }
+
 }
@@ -0,0 +1,42 @@
+package com.takeshi.mybatisplus;
+
+import com.takeshi.component.ResourceLimiter;
+import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 虚拟线程模式下在{@link ResourceLimiter#DB}的限制内执行SQL<br/>
+ * 每个请求一个虚拟线程时同时访问数据库的线程数不再受线程池限制，超过连接池大小的线程会在获取连接时等待直到超时，
+ * 这里让它们先在信号量上排队；事务中的SQL已经占用了连接，不再重复限制，否则持有连接的线程可能因为等待信号量而不释放连接
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@RequiredArgsConstructor
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+public class ResourceLimitInterceptor implements Interceptor {
+
+    private final ResourceLimiter resourceLimiter;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return invocation.proceed();
+        }
+        return this.resourceLimiter.call(ResourceLimiter.DB, invocation::proceed);
+    }
+
+}
@@ -14,6 +14,8 @@ import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
 import com.baomidou.mybatisplus.core.toolkit.*;
 import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
 import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
+import com.takeshi.annotation.BlindIndex;
+import com.takeshi.config.StaticConfig;
 import com.takeshi.exception.TakeshiException;
 import com.takeshi.pojo.basic.TakeshiPage;
 import com.takeshi.pojo.bo.RetBO;
@@ -251,6 +253,52 @@ public interface TakeshiMapper<T> extends BaseMapper<T> {
         }
     }
 
+    /**
+     * 根据加密字段的明文，在{@link BlindIndex}盲索引字段上做等值查询
+     *
+     * @param indexColumn 盲索引字段
+     * @param val         加密字段的明文
+     * @return List
+     */
+    default List<T> selectByBlindIndex(SFunction<T, ?> indexColumn, String val) {
+        return this.selectList(Wrappers.lambdaQuery(this.getEntityClass()).eq(indexColumn, StaticConfig.columnCipher().blindIndex(val)));
+    }
+
+    /**
+     * 根据加密字段的明文，在{@link BlindIndex}盲索引字段上做等值查询，查询一条记录
+     *
+     * @param indexColumn 盲索引字段
+     * @param val         加密字段的明文
+     * @return T
+     */
+    default T selectOneByBlindIndex(SFunction<T, ?> indexColumn, String val) {
+        return this.selectOne(Wrappers.lambdaQuery(this.getEntityClass()).eq(indexColumn, StaticConfig.columnCipher().blindIndex(val)));
+    }
+
+    /**
+     * 判断加密字段的明文是否已存在，在{@link BlindIndex}盲索引字段上查询
+     *
+     * @param indexColumn 盲索引字段
+     * @param val         加密字段的明文
+     * @return boolean
+     */
+    default boolean blindIndexExists(SFunction<T, ?> indexColumn, String val) {
+        return this.exists(Wrappers.lambdaQuery(this.getEntityClass()).eq(indexColumn, StaticConfig.columnCipher().blindIndex(val)));
+    }
+
+    /**
+     * 判断加密字段的明文是否已存在，不包括本身，在{@link BlindIndex}盲索引字段上查询
+     *
+     * @param indexColumn 盲索引字段
+     * @param val         加密字段的明文
+     * @param id          主键ID值
+     * @return boolean
+     */
+    default boolean blindIndexExists(SFunction<T, ?> indexColumn, String val, Serializable id) {
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(this.getEntityClass());
+        return this.exists(new QueryWrapper<T>().ne(tableInfo.getKeyColumn(), id).lambda().eq(indexColumn, StaticConfig.columnCipher().blindIndex(val)));
+    }
+
     /**
      * 新增数据（先按queryWrapper查询记录是否存在，如果不存在则新增）
      *
@@ -0,0 +1,56 @@
+package com.takeshi.mybatisplus.typehandler;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.asymmetric.KeyType;
+import com.takeshi.config.StaticConfig;
+import com.takeshi.config.security.ColumnCipher;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * <p>AesCiphertextTypeHandler</p>
+ * <p>注意！！ 使用typeHandler，必须开启autoResultMap映射注解</p>
+ * <p>@TableName(autoResultMap = true)</p>
+ * <p>@TableField(typeHandler = AesCiphertextTypeHandler.class)</p>
+ * <p>将明文使用带版本的确定性加密（{@link ColumnCipher}：HMAC-SHA256合成IV + AES-CTR，即SIV结构）存入数据库，从数据库取出来时解密，比CiphertextTypeHandler的RSA快得多</p>
+ * <p>读取到CiphertextTypeHandler写入的旧RSA密文时仍然可以解密，字段可以直接从CiphertextTypeHandler切换过来，更新时写入新的格式</p>
+ * <p>需要按这个字段查询时，另外添加一个{@link com.takeshi.annotation.BlindIndex}盲索引字段</p>
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+public class AesCiphertextTypeHandler extends BaseTypeHandler<String> {
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType)
+            throws SQLException {
+        ps.setString(i, StaticConfig.columnCipher().encrypt(parameter));
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        return this.decryptStr(rs.getString(columnName));
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        return this.decryptStr(rs.getString(columnIndex));
+    }
+
+    @Override
+    public String getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        return this.decryptStr(cs.getString(columnIndex));
+    }
+
+    private String decryptStr(String value) {
+        if (StrUtil.isBlank(value)) {
+            return null;
+        }
+        return ColumnCipher.isCiphertext(value) ? StaticConfig.columnCipher().decrypt(value) : StaticConfig.rsaCipher().decryptStr(value, KeyType.PublicKey);
+    }
+
+}
@@ -25,7 +25,7 @@ public class CiphertextTypeHandler extends BaseTypeHandler<String> {
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType)
             throws SQLException {
-        ps.setString(i, StaticConfig.rsa.encryptBase64(parameter, KeyType.PrivateKey));
+        ps.setString(i, StaticConfig.rsaCipher().encryptBase64(parameter, KeyType.PrivateKey));
     }
 
     @Override
@@ -44,7 +44,7 @@ public class CiphertextTypeHandler extends BaseTypeHandler<String> {
     }
 
     private String decryptStr(String value) {
-        return StrUtil.isNotBlank(value) ? StaticConfig.rsa.decryptStr(value, KeyType.PublicKey) : null;
+        return StrUtil.isNotBlank(value) ? StaticConfig.rsaCipher().decryptStr(value, KeyType.PublicKey) : null;
     }
 
 }
@@ -24,7 +24,7 @@ public class PasswordTypeHandler extends BaseTypeHandler<String> {
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType)
             throws SQLException {
-        ps.setString(i, StaticConfig.rsa.encryptBase64(parameter, KeyType.PrivateKey));
+        ps.setString(i, StaticConfig.rsaCipher().encryptBase64(parameter, KeyType.PrivateKey));
     }
 
     @Override
@@ -1,14 +1,13 @@
 package com.takeshi.pojo.basic;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.takeshi.config.TraceContext;
 import com.takeshi.constants.TakeshiCode;
-import com.takeshi.constants.TakeshiConstants;
 import com.takeshi.pojo.bo.RetBO;
 import com.takeshi.util.TakeshiUtil;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
 import lombok.experimental.Accessors;
-import org.slf4j.MDC;
 
 import java.io.Serial;
 import java.io.Serializable;
@@ -350,7 +349,7 @@ public class ResponseData<T> implements Serializable {
         this.message = TakeshiUtil.formatMessage(message, args);
         this.data = data;
         this.time = Instant.now().toEpochMilli();
-        this.traceId = MDC.get(TakeshiConstants.TRACE_ID_KEY);
+        this.traceId = TraceContext.currentTraceId();
     }
 
 }
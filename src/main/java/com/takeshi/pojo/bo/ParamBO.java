@@ -1,11 +1,14 @@
 package com.takeshi.pojo.bo;
 
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.unit.DataSizeUtil;
 import cn.hutool.core.map.CaseInsensitiveMap;
 import cn.hutool.core.map.MapUtil;
 import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.ObjUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.extra.servlet.JakartaServletUtil;
 import cn.hutool.http.Header;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -13,19 +16,32 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.takeshi.annotation.TakeshiLog;
 import com.takeshi.config.StaticConfig;
+import com.takeshi.config.security.EndpointPolicy;
+import com.takeshi.config.security.TakeshiHttpRequestWrapper;
 import com.takeshi.constants.TakeshiConstants;
+import com.takeshi.exception.Either;
+import com.takeshi.extra.ip.IpLocatorUtil;
 import com.takeshi.pojo.basic.AbstractBasicSerializable;
 import com.takeshi.util.GsonUtil;
 import io.swagger.v3.oas.annotations.media.Schema;
-import lombok.Data;
-import lombok.EqualsAndHashCode;
-import lombok.SneakyThrows;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.*;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.support.StandardMultipartHttpServletRequest;
+import org.springframework.web.util.WebUtils;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
- * ParamBO
+ * ParamBO<br/>
+ * header参数、URL参数、上传文件、body参数和IP地址都是在第一次获取时才从request中解析并缓存下来，
+ * 不需要这些参数的接口不会做多余的解析
  *
  * @author 七濑武【Nanase Takeshi】
  */
@@ -112,6 +128,112 @@ public class ParamBO extends AbstractBasicSerializable {
     @Schema(description = "body的非JsonObject内容")
     private Object bodyOther;
 
+    /**
+     * 当前接口的安全策略，可以判断接口需要用到哪些参数
+     */
+    @Schema(hidden = true)
+    private transient EndpointPolicy endpointPolicy;
+
+    /**
+     * 请求开始时按采样率决定的是否打印请求参数，响应内容和记录日志到数据库，没有匹配到接口时默认记录
+     */
+    @Schema(hidden = true)
+    private transient boolean logSampled = true;
+
+    /**
+     * 用于延迟解析参数的request，所有参数解析完成后会置空
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient HttpServletRequest request;
+
+    /**
+     * 已经解析过的参数
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient int resolved;
+
+    private static final int RESOLVED_IP_ADDRESS = 1;
+    private static final int RESOLVED_HEADER = 1 << 1;
+    private static final int RESOLVED_URL = 1 << 2;
+    private static final int RESOLVED_MULTIPART = 1 << 3;
+    private static final int RESOLVED_MULTIPART_DATA = 1 << 4;
+    private static final int RESOLVED_BODY = 1 << 5;
+    private static final int RESOLVED_ALL = (1 << 6) - 1;
+
+    /**
+     * 绑定request，参数将在第一次获取时从request中解析
+     *
+     * @param request request
+     * @return ParamBO
+     */
+    public static ParamBO of(HttpServletRequest request) {
+        ParamBO paramBO = new ParamBO();
+        paramBO.request = request;
+        paramBO.httpMethod = request.getMethod();
+        paramBO.requestUrl = request.getRequestURL().toString();
+        return paramBO;
+    }
+
+    /**
+     * 解析所有的参数，并且释放request<br/>
+     * 需要在请求结束前调用，请求结束后request会被容器回收
+     */
+    public void resolveAll() {
+        if (ObjUtil.isNull(this.request)) {
+            return;
+        }
+        this.getClientIpAddress();
+        this.getHeaderParam();
+        this.getUrlParam();
+        this.getMultipart();
+        this.getMultipartData();
+        this.getBodyObject();
+        this.request = null;
+        this.resolved = RESOLVED_ALL;
+    }
+
+    /**
+     * 获取请求的IP对应的地址
+     *
+     * @return 请求的IP对应的地址
+     */
+    public String getClientIpAddress() {
+        if (this.unresolved(RESOLVED_IP_ADDRESS)) {
+            this.clientIpAddress = IpLocatorUtil.search(this.clientIp);
+        }
+        return this.clientIpAddress;
+    }
+
+    /**
+     * 设置请求的IP对应的地址
+     *
+     * @param clientIpAddress clientIpAddress
+     */
+    public void setClientIpAddress(String clientIpAddress) {
+        this.clientIpAddress = clientIpAddress;
+        this.resolved |= RESOLVED_IP_ADDRESS;
+    }
+
+    /**
+     * 获取header参数Map
+     *
+     * @return header参数Map
+     */
+    public CaseInsensitiveMap<String, String> getHeaderParam() {
+        if (this.unresolved(RESOLVED_HEADER)) {
+            CaseInsensitiveMap<String, String> headerMap = new CaseInsensitiveMap<>();
+            Enumeration<String> headerNames = this.request.getHeaderNames();
+            while (headerNames.hasMoreElements()) {
+                String headerName = headerNames.nextElement();
+                headerMap.put(headerName, this.request.getHeader(headerName));
+            }
+            this.headerParam = MapUtil.isEmpty(headerMap) ? null : headerMap;
+        }
+        return this.headerParam;
+    }
+
     /**
      * 设置header参数Map
      *
@@ -119,6 +241,20 @@ public class ParamBO extends AbstractBasicSerializable {
      */
     public void setHeaderParam(CaseInsensitiveMap<String, String> headerParam) {
         this.headerParam = MapUtil.isEmpty(headerParam) ? null : headerParam;
+        this.resolved |= RESOLVED_HEADER;
+    }
+
+    /**
+     * 获取url参数Map
+     *
+     * @return url参数Map
+     */
+    public Map<String, String> getUrlParam() {
+        if (this.unresolved(RESOLVED_URL)) {
+            Map<String, String> paramMap = JakartaServletUtil.getParamMap(this.request);
+            this.urlParam = MapUtil.isEmpty(paramMap) ? null : paramMap;
+        }
+        return this.urlParam;
     }
 
     /**
@@ -128,6 +264,95 @@ public class ParamBO extends AbstractBasicSerializable {
      */
     public void setUrlParam(Map<String, String> urlParam) {
         this.urlParam = MapUtil.isEmpty(urlParam) ? null : urlParam;
+        this.resolved |= RESOLVED_URL;
+    }
+
+    /**
+     * 获取签名需要用到的上传的文件摘要信息，value里存放文件名+文件大小
+     *
+     * @return Map
+     */
+    public Map<String, String> getMultipart() {
+        if (this.unresolved(RESOLVED_MULTIPART)) {
+            MultiValueMap<String, MultipartFile> multiFileMap = this.multiFileMap();
+            if (ObjUtil.isNotNull(multiFileMap)) {
+                this.multipart = multiFileMap.entrySet()
+                        .stream()
+                        .collect(Collectors.toMap(
+                                        Map.Entry::getKey,
+                                        entry -> entry.getValue()
+                                                .stream()
+                                                .map(multipartFile -> StrUtil.builder(multipartFile.getOriginalFilename(), StrUtil.BRACKET_START, DataSizeUtil.format(multipartFile.getSize()), StrUtil.BRACKET_END))
+                                                .collect(Collectors.joining(StrUtil.COMMA))
+                                )
+                        );
+            }
+        }
+        return this.multipart;
+    }
+
+    /**
+     * 设置签名需要用到的上传的文件摘要信息
+     *
+     * @param multipart multipart
+     */
+    public void setMultipart(Map<String, String> multipart) {
+        this.multipart = multipart;
+        this.resolved |= RESOLVED_MULTIPART;
+    }
+
+    /**
+     * 获取上传的文件信息，value里存放MD5加密的文件流
+     *
+     * @return Map
+     */
+    public Map<String, List<String>> getMultipartData() {
+        if (this.unresolved(RESOLVED_MULTIPART_DATA)) {
+            MultiValueMap<String, MultipartFile> multiFileMap = this.multiFileMap();
+            if (ObjUtil.isNotNull(multiFileMap)) {
+                this.multipartData = multiFileMap.entrySet()
+                        .stream()
+                        .collect(Collectors.toMap(
+                                        Map.Entry::getKey,
+                                        entry -> entry.getValue()
+                                                .stream()
+                                                .map(Either.warp(v -> SecureUtil.md5(v.getInputStream())))
+                                                .collect(Collectors.toList())
+                                )
+                        );
+            }
+        }
+        return this.multipartData;
+    }
+
+    /**
+     * 设置上传的文件信息
+     *
+     * @param multipartData multipartData
+     */
+    public void setMultipartData(Map<String, List<String>> multipartData) {
+        this.multipartData = multipartData;
+        this.resolved |= RESOLVED_MULTIPART_DATA;
+    }
+
+    /**
+     * 获取body的JsonObject内容
+     *
+     * @return Map
+     */
+    public Map<String, Object> getBodyObject() {
+        this.resolveBody();
+        return this.bodyObject;
+    }
+
+    /**
+     * 获取body的非JsonObject内容
+     *
+     * @return Object
+     */
+    public Object getBodyOther() {
+        this.resolveBody();
+        return this.bodyOther;
     }
 
     /**
@@ -137,8 +362,17 @@ public class ParamBO extends AbstractBasicSerializable {
      */
     @SneakyThrows
     public void setBody(InputStream body) {
+        this.setBody(StaticConfig.objectMapper.readTree(body));
+    }
+
+    /**
+     * 设置body值
+     *
+     * @param jsonNode body解析成的JsonNode
+     */
+    public void setBody(JsonNode jsonNode) {
+        this.resolved |= RESOLVED_BODY;
         ObjectMapper objectMapper = StaticConfig.objectMapper;
-        JsonNode jsonNode = objectMapper.readTree(body);
         if (jsonNode.isNull()) {
             return;
         }
@@ -161,6 +395,74 @@ public class ParamBO extends AbstractBasicSerializable {
         }
     }
 
+    /**
+     * 第一次获取body时解析body，GET请求和上传文件的请求没有body<br/>
+     * body不是json（例如：表单，纯文本）时不抛出异常，原样保存为字符串；sys log在响应提交后才解析body，异常无法再返回给客户端
+     */
+    private void resolveBody() {
+        if (this.unresolved(RESOLVED_BODY)) {
+            if (!HttpMethod.GET.matches(this.httpMethod) && ObjUtil.isNull(this.multiFileMap())) {
+                // 复用TakeshiHttpRequestWrapper解析好的JsonNode，接口参数转换时不会再次解析
+                TakeshiHttpRequestWrapper requestWrapper = WebUtils.getNativeRequest(this.request, TakeshiHttpRequestWrapper.class);
+                byte[] bytes = null;
+                try {
+                    if (ObjUtil.isNotNull(requestWrapper)) {
+                        this.setBody(requestWrapper.getJsonNode());
+                    } else {
+                        bytes = this.request.getInputStream().readAllBytes();
+                        this.setBody(StaticConfig.objectMapper.readTree(bytes));
+                    }
+                } catch (IOException e) {
+                    String raw = ObjUtil.isNotNull(requestWrapper) ? StrUtil.str(requestWrapper.getBody(), StandardCharsets.UTF_8)
+                            : StrUtil.str(bytes, StandardCharsets.UTF_8);
+                    this.bodyObject = null;
+                    this.bodyOther = StrUtil.emptyToNull(raw);
+                }
+            }
+            this.resolved |= RESOLVED_BODY;
+        }
+    }
+
+    /**
+     * 获取上传的文件
+     *
+     * @return 不是上传文件的请求则返回null
+     */
+    private MultiValueMap<String, MultipartFile> multiFileMap() {
+        if (HttpMethod.POST.matches(this.httpMethod)
+                && this.request instanceof StandardMultipartHttpServletRequest multipartRequest) {
+            return multipartRequest.getMultiFileMap();
+        }
+        return null;
+    }
+
+    /**
+     * 判断参数是否还需要从request中解析，并且标记为已解析
+     *
+     * @param flag 参数标记
+     * @return boolean
+     */
+    private boolean unresolved(int flag) {
+        if ((this.resolved & flag) != 0) {
+            return false;
+        }
+        this.resolved |= flag;
+        return ObjUtil.isNotNull(this.request);
+    }
+
+    /**
+     * 获取header的值，header参数还未解析时直接从request中获取
+     *
+     * @param name header名称
+     * @return header的值
+     */
+    private String header(String name) {
+        if ((this.resolved & RESOLVED_HEADER) == 0 && ObjUtil.isNotNull(this.request)) {
+            return this.request.getHeader(name);
+        }
+        return ObjUtil.isNull(this.headerParam) ? null : this.headerParam.get(name);
+    }
+
     /**
      * 获取一些请求开始后需要展示在日志里的信息
      *
@@ -169,15 +471,15 @@ public class ParamBO extends AbstractBasicSerializable {
     public String filterInfo() {
         Map<String, Object> map = new LinkedHashMap<>(16);
         map.put("Request IP", this.clientIp);
-        String userAgent = this.headerParam.get(Header.USER_AGENT.getValue());
+        String userAgent = this.header(Header.USER_AGENT.getValue());
         map.put("Request UserAgent", userAgent);
         map.put("Request Address", StrUtil.builder(StrUtil.BRACKET_START, this.httpMethod, StrUtil.BRACKET_END, this.getRequestUrl()));
         map.put("Requesting UserId", this.loginId);
-        String timestamp = this.headerParam.get(TakeshiConstants.TIMESTAMP_NAME);
+        String timestamp = this.header(TakeshiConstants.TIMESTAMP_NAME);
         map.put("Header Timestamp", timestamp);
-        String nonce = this.headerParam.get(TakeshiConstants.NONCE_NAME);
+        String nonce = this.header(TakeshiConstants.NONCE_NAME);
         map.put("Header Nonce", nonce);
-        String geoPoint = this.headerParam.get(TakeshiConstants.GEO_POINT_NAME);
+        String geoPoint = this.header(TakeshiConstants.GEO_POINT_NAME);
         map.put("Header GeoPoint", geoPoint);
         return GsonUtil.toJson(map);
     }
@@ -190,16 +492,16 @@ public class ParamBO extends AbstractBasicSerializable {
      */
     public ObjectNode getParamObjectNode(String... exclusionFieldName) {
         ObjectNode objectNode = StaticConfig.objectMapper.createObjectNode();
-        if (CollUtil.isNotEmpty(this.urlParam)) {
+        if (CollUtil.isNotEmpty(this.getUrlParam())) {
             objectNode.putPOJO("urlParam", this.urlParam);
         }
-        if (CollUtil.isNotEmpty(this.multipart)) {
+        if (CollUtil.isNotEmpty(this.getMultipart())) {
             objectNode.putPOJO("multipart", this.multipart);
         }
-        if (CollUtil.isNotEmpty(this.bodyObject)) {
+        if (CollUtil.isNotEmpty(this.getBodyObject())) {
             objectNode.putPOJO("bodyObject", this.bodyObject);
         }
-        if (ObjUtil.isNotEmpty(this.bodyOther)) {
+        if (ObjUtil.isNotEmpty(this.getBodyOther())) {
             objectNode.putPOJO("bodyOther", this.bodyOther);
         }
         if (ArrayUtil.isNotEmpty(exclusionFieldName)) {
@@ -217,13 +519,13 @@ public class ParamBO extends AbstractBasicSerializable {
      */
     public Map<String, Object> getParamMap() {
         Map<String, Object> map = new HashMap<>(12);
-        if (MapUtil.isNotEmpty(this.urlParam)) {
+        if (MapUtil.isNotEmpty(this.getUrlParam())) {
             map.putAll(this.urlParam);
         }
-        if (MapUtil.isNotEmpty(this.multipart)) {
+        if (MapUtil.isNotEmpty(this.getMultipart())) {
             map.putAll(this.multipart);
         }
-        if (MapUtil.isNotEmpty(this.bodyObject)) {
+        if (MapUtil.isNotEmpty(this.getBodyObject())) {
             map.putAll(this.bodyObject);
         }
         return map;
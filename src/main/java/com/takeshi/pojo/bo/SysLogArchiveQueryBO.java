@@ -0,0 +1,59 @@
+package com.takeshi.pojo.bo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 查询归档的接口日志的条件，为null的条件不参与过滤
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Data
+@Schema
+@Accessors(chain = true)
+public class SysLogArchiveQueryBO {
+
+    /**
+     * 请求时间的开始（包含），毫秒时间戳
+     */
+    @Schema(description = "请求时间的开始（包含），毫秒时间戳")
+    private Long startTime;
+
+    /**
+     * 请求时间的结束（不包含），毫秒时间戳
+     */
+    @Schema(description = "请求时间的结束（不包含），毫秒时间戳")
+    private Long endTime;
+
+    /**
+     * 日志类型
+     */
+    @Schema(description = "日志类型")
+    private String logType;
+
+    /**
+     * 登录的用户ID
+     */
+    @Schema(description = "登录的用户ID")
+    private String loginId;
+
+    /**
+     * 请求的方法，带包名类名的完整的方法名
+     */
+    @Schema(description = "请求的方法，带包名类名的完整的方法名")
+    private String methodName;
+
+    /**
+     * 响应成功了的
+     */
+    @Schema(description = "响应成功了的")
+    private Boolean successful;
+
+    /**
+     * 最多返回的条数
+     */
+    @Schema(description = "最多返回的条数")
+    private int limit = 1000;
+
+}
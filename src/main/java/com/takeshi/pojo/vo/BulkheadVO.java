@@ -0,0 +1,101 @@
+package com.takeshi.pojo.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 隔离执行器统计
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Data
+@Schema
+@Accessors(chain = true)
+public class BulkheadVO {
+
+    /**
+     * 名称
+     */
+    @Schema(description = "名称")
+    private String name;
+
+    /**
+     * 正在执行任务的线程数
+     */
+    @Schema(description = "正在执行任务的线程数")
+    private int active;
+
+    /**
+     * 当前的线程数
+     */
+    @Schema(description = "当前的线程数")
+    private int poolSize;
+
+    /**
+     * 最大线程数
+     */
+    @Schema(description = "最大线程数")
+    private int maxPoolSize;
+
+    /**
+     * 排队的任务数
+     */
+    @Schema(description = "排队的任务数")
+    private int queued;
+
+    /**
+     * 队列剩余的容量
+     */
+    @Schema(description = "队列剩余的容量")
+    private int queueRemaining;
+
+    /**
+     * 启动以来执行完成的任务数
+     */
+    @Schema(description = "启动以来执行完成的任务数")
+    private long completed;
+
+    /**
+     * 启动以来被拒绝的任务数
+     */
+    @Schema(description = "启动以来被拒绝的任务数")
+    private long rejected;
+
+    /**
+     * 启动以来同步调用超时的任务数
+     */
+    @Schema(description = "启动以来同步调用超时的任务数")
+    private long timeouts;
+
+    /**
+     * 统计时间窗口内的任务数
+     */
+    @Schema(description = "统计时间窗口内的任务数")
+    private long count;
+
+    /**
+     * 任务耗时（包括排队时间）的中位数，毫秒
+     */
+    @Schema(description = "任务耗时（包括排队时间）的中位数，毫秒")
+    private double p50;
+
+    /**
+     * 任务耗时的95百分位数，毫秒
+     */
+    @Schema(description = "任务耗时的95百分位数，毫秒")
+    private double p95;
+
+    /**
+     * 任务耗时的99百分位数，毫秒
+     */
+    @Schema(description = "任务耗时的99百分位数，毫秒")
+    private double p99;
+
+    /**
+     * 最大耗时，毫秒
+     */
+    @Schema(description = "最大耗时，毫秒")
+    private double max;
+
+}
@@ -0,0 +1,71 @@
+package com.takeshi.pojo.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 接口耗时统计
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Data
+@Schema
+@Accessors(chain = true)
+public class EndpointLatencyVO {
+
+    /**
+     * 请求的方法，带包名类名的完整的方法名
+     */
+    @Schema(description = "请求的方法，带包名类名的完整的方法名")
+    private String methodName;
+
+    /**
+     * 返回的code，没有时为HTTP状态码
+     */
+    @Schema(description = "返回的code，没有时为HTTP状态码")
+    private int code;
+
+    /**
+     * 启动以来累计的请求数
+     */
+    @Schema(description = "启动以来累计的请求数")
+    private long total;
+
+    /**
+     * 统计时间窗口内的请求数
+     */
+    @Schema(description = "统计时间窗口内的请求数")
+    private long count;
+
+    /**
+     * 统计时间窗口内每秒的请求数
+     */
+    @Schema(description = "统计时间窗口内每秒的请求数")
+    private double throughput;
+
+    /**
+     * 耗时的中位数，毫秒
+     */
+    @Schema(description = "耗时的中位数，毫秒")
+    private double p50;
+
+    /**
+     * 耗时的95百分位数，毫秒
+     */
+    @Schema(description = "耗时的95百分位数，毫秒")
+    private double p95;
+
+    /**
+     * 耗时的99百分位数，毫秒
+     */
+    @Schema(description = "耗时的99百分位数，毫秒")
+    private double p99;
+
+    /**
+     * 最大耗时，毫秒
+     */
+    @Schema(description = "最大耗时，毫秒")
+    private double max;
+
+}
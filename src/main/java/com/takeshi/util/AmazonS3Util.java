@@ -21,6 +21,8 @@ import com.amazonaws.services.secretsmanager.AWSSecretsManagerClientBuilder;
 import com.amazonaws.services.secretsmanager.model.GetSecretValueRequest;
 import com.amazonaws.services.secretsmanager.model.GetSecretValueResult;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.takeshi.component.Bulkhead;
+import com.takeshi.component.BulkheadRegistry;
 import com.takeshi.component.RedisComponent;
 import com.takeshi.config.StaticConfig;
 import com.takeshi.config.properties.AWSSecretsManagerCredentials;
@@ -92,74 +94,137 @@ public final class AmazonS3Util {
     // 视频封面缩略图URL
     private static final String S3_THUMBNAIL = "X-NT-Thumbnail";
 
-    // 存储桶名称
-    private static String BUCKET_NAME;
-    // 预签名URL的过期时间
-    private static Duration EXPIRATION_TIME;
+    /**
+     * 从AWS Secrets Manager获取到的密钥信息，第一次使用时才获取
+     */
+    private static final LazyHolder<JsonNode> SECRET = new LazyHolder<>("AWS SecretsManager", AmazonS3Util::loadSecret);
 
     /**
-     * 获取到的密钥信息
+     * 用于管理到 Amazon S3 的传输的高级实用程序，第一次使用时才创建，并检查存储桶
      */
-    private static volatile JsonNode JSON_NODE;
+    private static final LazyHolder<TransferManager> TRANSFER_MANAGER = new LazyHolder<>("AmazonS3 TransferManager", AmazonS3Util::buildTransferManager);
+
+    private AmazonS3Util() {
+    }
 
     /**
-     * 用于管理到 Amazon S3 的传输的高级实用程序
+     * 从AWS Secrets Manager获取密钥信息
+     *
+     * @return JsonNode
+     * @throws Exception Exception
      */
-    public static volatile TransferManager transferManager;
+    private static JsonNode loadSecret() throws Exception {
+        AWSSecretsManagerCredentials awsSecrets = StaticConfig.takeshiProperties.getAwsSecrets();
+        AWSSecretsManager awsSecretsManager = AWSSecretsManagerClientBuilder.standard()
+                .withRegion(awsSecrets.getRegion())
+                .withCredentials(new AWSStaticCredentialsProvider(awsSecrets))
+                .build();
+        try {
+            GetSecretValueRequest getSecretValueRequest = new GetSecretValueRequest();
+            getSecretValueRequest.setSecretId(awsSecrets.getSecretId());
+            GetSecretValueResult getSecretValueResult = awsSecretsManager.getSecretValue(getSecretValueRequest);
+            String secret = StrUtil.isNotBlank(getSecretValueResult.getSecretString()) ? getSecretValueResult.getSecretString() : new String(java.util.Base64.getDecoder().decode(getSecretValueResult.getSecretBinary()).array());
+            return StaticConfig.objectMapper.readValue(secret, JsonNode.class);
+        } finally {
+            awsSecretsManager.shutdown();
+        }
+    }
 
-    static {
+    /**
+     * 创建TransferManager，存储桶不存在时创建存储桶
+     *
+     * @return TransferManager
+     */
+    private static TransferManager buildTransferManager() {
+        AWSSecretsManagerCredentials awsSecrets = StaticConfig.takeshiProperties.getAwsSecrets();
+        JsonNode jsonNode = SECRET.get();
+        if (ObjUtil.isNull(jsonNode)) {
+            throw new IllegalStateException("AWS secret is not available");
+        }
+        String bucketName = awsSecrets.getBucketName();
+        String accessKey = jsonNode.get(awsSecrets.getAccessKeySecrets()).asText();
+        String secretKey = jsonNode.get(awsSecrets.getSecretKeySecrets()).asText();
+        // S3
+        AmazonS3 amazonS3 = AmazonS3ClientBuilder.standard()
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(accessKey, secretKey)))
+                .withRegion(awsSecrets.getRegion())
+                .build();
+        if (!amazonS3.doesBucketExistV2(bucketName)) {
+            // 创建桶
+            amazonS3.createBucket(bucketName);
+            // 设置生命周期规则，指示自生命周期启动后必须经过7天才能中止并删除不完整的分段上传
+            BucketLifecycleConfiguration.Rule lifecycleRule = new BucketLifecycleConfiguration.Rule()
+                    .withId("Automatically delete incomplete multipart upload after seven days")
+                    .withAbortIncompleteMultipartUpload(new AbortIncompleteMultipartUpload().withDaysAfterInitiation(7))
+                    .withStatus(BucketLifecycleConfiguration.ENABLED);
+            // 将生命周期规则设置到桶中
+            amazonS3.setBucketLifecycleConfiguration(bucketName, new BucketLifecycleConfiguration().withRules(lifecycleRule));
+            // 设置跨域规则
+            CORSRule corsRule = new CORSRule().withAllowedMethods(Collections.singletonList(CORSRule.AllowedMethods.GET)).withAllowedOrigins(Collections.singletonList("*"));
+            // 将跨域规则设置到桶中
+            amazonS3.setBucketCrossOriginConfiguration(bucketName, new BucketCrossOriginConfiguration().withRules(corsRule));
+            // 为指定的存储桶启用传输加速
+            amazonS3.setBucketAccelerateConfiguration(new SetBucketAccelerateConfigurationRequest(bucketName, new BucketAccelerateConfiguration(BucketAccelerateStatus.Enabled)));
+        }
+        return TransferManagerBuilder.standard().withS3Client(amazonS3).build();
+    }
+
+    /**
+     * 获取TransferManager，第一次调用时初始化
+     *
+     * @return TransferManager
+     */
+    public static TransferManager getTransferManager() {
+        TransferManager transferManager = TRANSFER_MANAGER.get();
         if (ObjUtil.isNull(transferManager)) {
-            synchronized (AmazonS3Util.class) {
-                if (ObjUtil.isNull(transferManager)) {
-                    try {
-                        // 获取密钥
-                        AWSSecretsManagerCredentials awsSecrets = StaticConfig.takeshiProperties.getAwsSecrets();
-                        BUCKET_NAME = awsSecrets.getBucketName();
-                        EXPIRATION_TIME = awsSecrets.getExpirationTime();
-                        AWSSecretsManager awsSecretsManager = AWSSecretsManagerClientBuilder.standard()
-                                .withRegion(awsSecrets.getRegion())
-                                .withCredentials(new AWSStaticCredentialsProvider(awsSecrets))
-                                .build();
-                        GetSecretValueRequest getSecretValueRequest = new GetSecretValueRequest();
-                        getSecretValueRequest.setSecretId(awsSecrets.getSecretId());
-                        GetSecretValueResult getSecretValueResult = awsSecretsManager.getSecretValue(getSecretValueRequest);
-                        String secret = StrUtil.isNotBlank(getSecretValueResult.getSecretString()) ? getSecretValueResult.getSecretString() : new String(java.util.Base64.getDecoder().decode(getSecretValueResult.getSecretBinary()).array());
-                        JSON_NODE = StaticConfig.objectMapper.readValue(secret, JsonNode.class);
-                        String accessKey = JSON_NODE.get(awsSecrets.getAccessKeySecrets()).asText();
-                        String secretKey = JSON_NODE.get(awsSecrets.getSecretKeySecrets()).asText();
-                        // S3
-                        AmazonS3 amazonS3 = AmazonS3ClientBuilder.standard()
-                                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(accessKey, secretKey)))
-                                .withRegion(awsSecrets.getRegion())
-                                .build();
-                        if (!amazonS3.doesBucketExistV2(BUCKET_NAME)) {
-                            // 创建桶
-                            amazonS3.createBucket(BUCKET_NAME);
-                            // 设置生命周期规则，指示自生命周期启动后必须经过7天才能中止并删除不完整的分段上传
-                            BucketLifecycleConfiguration.Rule lifecycleRule = new BucketLifecycleConfiguration.Rule()
-                                    .withId("Automatically delete incomplete multipart upload after seven days")
-                                    .withAbortIncompleteMultipartUpload(new AbortIncompleteMultipartUpload().withDaysAfterInitiation(7))
-                                    .withStatus(BucketLifecycleConfiguration.ENABLED);
-                            // 将生命周期规则设置到桶中
-                            amazonS3.setBucketLifecycleConfiguration(BUCKET_NAME, new BucketLifecycleConfiguration().withRules(lifecycleRule));
-                            // 设置跨域规则
-                            CORSRule corsRule = new CORSRule().withAllowedMethods(Collections.singletonList(CORSRule.AllowedMethods.GET)).withAllowedOrigins(Collections.singletonList("*"));
-                            // 将跨域规则设置到桶中
-                            amazonS3.setBucketCrossOriginConfiguration(BUCKET_NAME, new BucketCrossOriginConfiguration().withRules(corsRule));
-                            // 为指定的存储桶启用传输加速
-                            amazonS3.setBucketAccelerateConfiguration(new SetBucketAccelerateConfigurationRequest(BUCKET_NAME, new BucketAccelerateConfiguration(BucketAccelerateStatus.Enabled)));
-                        }
-                        transferManager = TransferManagerBuilder.standard().withS3Client(amazonS3).build();
-                        log.info("AmazonS3Util.static --> TransferManager Initialization successful");
-                    } catch (Exception e) {
-                        log.error("AmazonS3Util.static --> TransferManager initialization failed, e: ", e);
-                    }
-                }
-            }
+            throw new IllegalStateException("AmazonS3 TransferManager is not available");
         }
+        return transferManager;
     }
 
-    private AmazonS3Util() {
+    /**
+     * TransferManager的持有者，可以在不触发初始化的情况下判断是否已经初始化
+     *
+     * @return LazyHolder
+     */
+    public static LazyHolder<TransferManager> transferManagerHolder() {
+        return TRANSFER_MANAGER;
+    }
+
+    /**
+     * AWS密钥信息的持有者，可以在不触发初始化的情况下判断是否已经初始化
+     *
+     * @return LazyHolder
+     */
+    public static LazyHolder<JsonNode> secretHolder() {
+        return SECRET;
+    }
+
+    /**
+     * S3的上传，下载和删除使用的隔离执行器
+     *
+     * @return Bulkhead
+     */
+    private static Bulkhead bulkhead() {
+        return StaticConfig.bulkheadRegistry.get(BulkheadRegistry.S3);
+    }
+
+    /**
+     * 上传和下载等待完成的最大时间
+     *
+     * @return Duration
+     */
+    private static Duration transferTimeout() {
+        return StaticConfig.takeshiProperties.getAwsSecrets().getTransferTimeout();
+    }
+
+    /**
+     * 存储桶名称
+     *
+     * @return bucketName
+     */
+    private static String bucketName() {
+        return StaticConfig.takeshiProperties.getAwsSecrets().getBucketName();
     }
 
     /**
@@ -168,7 +233,7 @@ public final class AmazonS3Util {
      * @return JsonNode
      */
     public static JsonNode getSecret() {
-        return JSON_NODE;
+        return SECRET.get();
     }
 
     /**
@@ -179,7 +244,7 @@ public final class AmazonS3Util {
      * @return T
      */
     public static <T> T getSecret(Class<T> beanClass) {
-        return StaticConfig.objectMapper.convertValue(JSON_NODE, beanClass);
+        return StaticConfig.objectMapper.convertValue(SECRET.get(), beanClass);
     }
 
     /**
@@ -188,7 +253,7 @@ public final class AmazonS3Util {
      * @param bucketName 桶名称
      */
     public static void deleteBucket(String bucketName) {
-        transferManager.getAmazonS3Client().deleteBucket(bucketName);
+        getTransferManager().getAmazonS3Client().deleteBucket(bucketName);
     }
 
     /**
@@ -259,7 +324,7 @@ public final class AmazonS3Util {
      * @param key S3对象的键
      */
     public static void deleteFile(String key) {
-        transferManager.getAmazonS3Client().deleteObject(BUCKET_NAME, key);
+        bulkhead().run(() -> getTransferManager().getAmazonS3Client().deleteObject(bucketName(), key));
     }
 
     /**
@@ -268,9 +333,11 @@ public final class AmazonS3Util {
      * @param key     S3对象的键
      * @param outFile 存储的目录文件
      */
-    @SneakyThrows
     public static void download(String key, File outFile) {
-        transferManager.download(BUCKET_NAME, key, outFile).waitForCompletion();
+        bulkhead().call(() -> {
+            getTransferManager().download(bucketName(), key, outFile).waitForCompletion();
+            return null;
+        }, transferTimeout());
     }
 
     /**
@@ -280,8 +347,19 @@ public final class AmazonS3Util {
      * @param fileName 完整的文件名
      * @return S3文件Key
      */
-    @SneakyThrows
     public static AmazonS3VO uploadData(byte[] data, String fileName) {
+        return bulkhead().call(() -> doUploadData(data, fileName), transferTimeout());
+    }
+
+    /**
+     * 上传文件，在s3隔离执行器中执行
+     *
+     * @param data     文件数据
+     * @param fileName 完整的文件名
+     * @return S3文件Key
+     * @throws Exception Exception
+     */
+    private static AmazonS3VO doUploadData(byte[] data, String fileName) throws Exception {
         try (TikaInputStream tikaInputStream = TikaInputStream.get(data)) {
             String mediaType = TakeshiUtil.getTika().detect(tikaInputStream, fileName);
             MimeType mimeType = MimeTypes.getDefaultMimeTypes().forName(mediaType);
@@ -323,16 +401,16 @@ public final class AmazonS3Util {
                         String thumbnailObjKey = getThumbnailObjKey();
                         // 添加视频/GIF封面图缩略图的S3 key
                         metadata.addUserMetadata(COVER_THUMBNAIL, thumbnailObjKey);
-                        PutObjectRequest putObjectRequest = new PutObjectRequest(BUCKET_NAME, thumbnailObjKey, thumbnailTikaInputStream, thumbnailMetadata);
-                        thumbnailUpload = transferManager.upload(putObjectRequest);
+                        PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName(), thumbnailObjKey, thumbnailTikaInputStream, thumbnailMetadata);
+                        thumbnailUpload = getTransferManager().upload(putObjectRequest);
                     }
                 }
             }
 
             String fileObjKey = getFileObjKey(extension);
-            PutObjectRequest putObjectRequest = new PutObjectRequest(BUCKET_NAME, fileObjKey, tikaInputStream, metadata);
+            PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName(), fileObjKey, tikaInputStream, metadata);
             // TransferManager 异步处理所有传输,所以这个调用立即返回
-            Upload upload = transferManager.upload(putObjectRequest);
+            Upload upload = getTransferManager().upload(putObjectRequest);
             // 等待此传输完成，这是一个阻塞调用；当前线程被挂起，直到这个传输完成
             if (ObjUtil.isNotNull(thumbnailUpload)) {
                 thumbnailUpload.waitForUploadResult();
@@ -349,7 +427,7 @@ public final class AmazonS3Util {
      * @return URL
      */
     public static URL getPresignedUrl(String key) {
-        return getPresignedUrl(key, EXPIRATION_TIME);
+        return getPresignedUrl(key, StaticConfig.takeshiProperties.getAwsSecrets().getExpirationTime());
     }
 
     /**
@@ -388,7 +466,7 @@ public final class AmazonS3Util {
                             return null;
                         }
                         Date date = Date.from(Instant.now().plus(duration));
-                        GeneratePresignedUrlRequest generatePresignedUrlRequest = new GeneratePresignedUrlRequest(BUCKET_NAME, fileKey)
+                        GeneratePresignedUrlRequest generatePresignedUrlRequest = new GeneratePresignedUrlRequest(bucketName(), fileKey)
                                 .withExpiration(date);
                         generatePresignedUrlRequest.addRequestParameter(S3_ORIGINAL_FULL_NAME, objectMetadata.getUserMetaDataOf(ORIGINAL_NAME) + objectMetadata.getUserMetaDataOf(EXTENSION_NAME));
                         generatePresignedUrlRequest.addRequestParameter(S3_CONTENT_LENGTH, String.valueOf(objectMetadata.getContentLength()));
@@ -400,10 +478,10 @@ public final class AmazonS3Util {
                         String thumbnailKey = objectMetadata.getUserMetaDataOf(COVER_THUMBNAIL);
                         if (StrUtil.isNotBlank(thumbnailKey)) {
                             // 如果有视频/GIF封面缩略图
-                            URL thumbnailUrl = transferManager.getAmazonS3Client().generatePresignedUrl(BUCKET_NAME, thumbnailKey, date);
+                            URL thumbnailUrl = getTransferManager().getAmazonS3Client().generatePresignedUrl(bucketName(), thumbnailKey, date);
                             generatePresignedUrlRequest.addRequestParameter(S3_THUMBNAIL, thumbnailUrl.toString());
                         }
-                        presignedUrl = transferManager.getAmazonS3Client().generatePresignedUrl(generatePresignedUrlRequest);
+                        presignedUrl = getTransferManager().getAmazonS3Client().generatePresignedUrl(generatePresignedUrlRequest);
                         // 减掉代码执行时间
                         redisComponent.save(redisKey, presignedUrl.toString(), duration.minusSeconds(7L));
                     }
@@ -435,7 +513,7 @@ public final class AmazonS3Util {
      * @return boolean
      */
     public static boolean doesObjectExist(String key) {
-        return transferManager.getAmazonS3Client().doesObjectExist(BUCKET_NAME, key);
+        return getTransferManager().getAmazonS3Client().doesObjectExist(bucketName(), key);
     }
 
     /**
@@ -445,7 +523,7 @@ public final class AmazonS3Util {
      * @return S3Object
      */
     public static S3Object getObject(String key) {
-        return transferManager.getAmazonS3Client().getObject(BUCKET_NAME, key);
+        return getTransferManager().getAmazonS3Client().getObject(bucketName(), key);
     }
 
     /**
@@ -458,7 +536,7 @@ public final class AmazonS3Util {
      */
     public static ObjectMetadata getObjectMetadata(String key) {
         try {
-            return transferManager.getAmazonS3Client().getObjectMetadata(BUCKET_NAME, key);
+            return getTransferManager().getAmazonS3Client().getObjectMetadata(bucketName(), key);
         } catch (AmazonS3Exception e) {
             if (e.getStatusCode() == 404) {
                 return null;
@@ -10,10 +10,12 @@ import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import com.google.firebase.database.*;
 import com.google.firebase.messaging.*;
+import com.takeshi.component.BulkheadRegistry;
 import com.takeshi.config.StaticConfig;
 import com.takeshi.config.properties.FirebaseCredentials;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
@@ -32,38 +34,10 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public final class FirebaseUtil {
 
-    private static volatile FirebaseApp FIREBASE_APP;
-
-    static {
-        if (ObjUtil.isNull(FIREBASE_APP)) {
-            synchronized (FirebaseUtil.class) {
-                if (ObjUtil.isNull(FIREBASE_APP)) {
-                    try {
-                        FirebaseCredentials firebase = StaticConfig.takeshiProperties.getFirebase();
-                        String firebaseJsonFileName = firebase.getJsonFileName();
-                        // Firebase需要的JSON文件
-                        InputStream inputStream = ResourceUtil.getStreamSafe(firebaseJsonFileName);
-                        if (ObjUtil.isNull(inputStream)) {
-                            log.error("FirebaseUtil.static --> firebaseJsonFileName [{}] not found", firebaseJsonFileName);
-                        } else {
-                            // Firebase Database用于数据存储的实时数据库 示例URL {https://<DATABASE_NAME>.firebaseio.com}
-                            String databaseUrl = StrUtil.isBlank(firebase.getDatabaseUrlSecrets())
-                                    ? firebase.getDatabaseUrl()
-                                    : AmazonS3Util.getSecret().get(firebase.getDatabaseUrlSecrets()).asText();
-                            FirebaseOptions options = FirebaseOptions.builder()
-                                    .setCredentials(GoogleCredentials.fromStream(inputStream))
-                                    .setDatabaseUrl(databaseUrl)
-                                    .build();
-                            FIREBASE_APP = FirebaseApp.initializeApp(options);
-                            log.info("FirebaseUtil.static --> FirebaseApp Initialization successful");
-                        }
-                    } catch (IOException e) {
-                        log.error("FirebaseUtil.static --> FirebaseApp initialization failed, e: ", e);
-                    }
-                }
-            }
-        }
-    }
+    /**
+     * FirebaseApp，第一次使用时才初始化
+     */
+    private static final LazyHolder<FirebaseApp> FIREBASE_APP = new LazyHolder<>("FirebaseApp", FirebaseUtil::initializeApp);
 
     /**
      * 构造函数
@@ -71,6 +45,42 @@ public final class FirebaseUtil {
     private FirebaseUtil() {
     }
 
+    /**
+     * 初始化FirebaseApp
+     *
+     * @return FirebaseApp
+     * @throws IOException IOException
+     */
+    private static FirebaseApp initializeApp() throws IOException {
+        FirebaseCredentials firebase = StaticConfig.takeshiProperties.getFirebase();
+        String firebaseJsonFileName = firebase.getJsonFileName();
+        // Firebase需要的JSON文件
+        InputStream inputStream = ResourceUtil.getStreamSafe(firebaseJsonFileName);
+        if (ObjUtil.isNull(inputStream)) {
+            throw new FileNotFoundException("firebaseJsonFileName [" + firebaseJsonFileName + "] not found");
+        }
+        try (inputStream) {
+            // Firebase Database用于数据存储的实时数据库 示例URL {https://<DATABASE_NAME>.firebaseio.com}
+            String databaseUrl = StrUtil.isBlank(firebase.getDatabaseUrlSecrets())
+                    ? firebase.getDatabaseUrl()
+                    : AmazonS3Util.getSecret().get(firebase.getDatabaseUrlSecrets()).asText();
+            FirebaseOptions options = FirebaseOptions.builder()
+                    .setCredentials(GoogleCredentials.fromStream(inputStream))
+                    .setDatabaseUrl(databaseUrl)
+                    .build();
+            return FirebaseApp.initializeApp(options);
+        }
+    }
+
+    /**
+     * FirebaseApp的持有者，可以在不触发初始化的情况下判断是否已经初始化
+     *
+     * @return LazyHolder
+     */
+    public static LazyHolder<FirebaseApp> firebaseAppHolder() {
+        return FIREBASE_APP;
+    }
+
     /**
      * Firebase Database
      */
@@ -79,7 +89,7 @@ public final class FirebaseUtil {
         /**
          * Database Reference
          */
-        public static final DatabaseReference DATABASE_REFERENCE = FirebaseDatabase.getInstance(FIREBASE_APP).getReference();
+        public static final DatabaseReference DATABASE_REFERENCE = FirebaseDatabase.getInstance(FIREBASE_APP.get()).getReference();
 
         private Database() {
         }
@@ -104,7 +114,7 @@ public final class FirebaseUtil {
                             completableFuture.completeExceptionally(error.toException());
                         }
                     });
-            return completableFuture.join();
+            return await(completableFuture);
         }
 
         /**
@@ -160,12 +170,24 @@ public final class FirebaseUtil {
                         public void onComplete(DatabaseError error, boolean committed, DataSnapshot currentData) {
                             if (error != null) {
                                 log.error("Database.onComplete --> error: ", error.toException());
+                                completableFuture.completeExceptionally(error.toException());
                             } else {
                                 completableFuture.complete(currentData);
                             }
                         }
                     });
-            return completableFuture.join();
+            return await(completableFuture);
+        }
+
+        /**
+         * 在调用者线程中等待结果，超过firebase隔离执行器配置的超时时间时抛出异常，不会一直等待；
+         * 回调由Firebase SDK自己的线程执行，等待时不占用隔离执行器的线程
+         *
+         * @param completableFuture completableFuture
+         * @return 数据库位置的数据
+         */
+        private static DataSnapshot await(CompletableFuture<DataSnapshot> completableFuture) {
+            return StaticConfig.bulkheadRegistry.get(BulkheadRegistry.FIREBASE).await(completableFuture);
         }
 
         /**
@@ -199,7 +221,7 @@ public final class FirebaseUtil {
         /**
          * Firebase Messaging Instance
          */
-        public static final FirebaseMessaging FIREBASE_MESSAGING = FirebaseMessaging.getInstance(FIREBASE_APP);
+        public static final FirebaseMessaging FIREBASE_MESSAGING = FirebaseMessaging.getInstance(FIREBASE_APP.get());
 
         private Messaging() {
         }
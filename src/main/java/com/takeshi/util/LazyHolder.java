@@ -0,0 +1,118 @@
+package com.takeshi.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 第一次使用时才初始化的对象持有者，用于代替第三方客户端在类加载时的初始化<br/>
+ * 初始化只执行一次，失败时记录日志并返回null，与原先static代码块初始化失败时的表现一致；
+ * 可以通过{@link #isReady()}和{@link #getIfReady()}在不触发初始化的情况下判断和获取
+ *
+ * @param <T> 持有的对象类型
+ * @author 七濑武【Nanase Takeshi】
+ */
+@Slf4j
+public final class LazyHolder<T> {
+
+    /**
+     * 初始化状态
+     */
+    public enum State {
+        /**
+         * 还未初始化
+         */
+        NEW,
+        /**
+         * 正在初始化
+         */
+        INITIALIZING,
+        /**
+         * 初始化成功
+         */
+        READY,
+        /**
+         * 初始化失败
+         */
+        FAILED
+    }
+
+    private final String name;
+    private final Callable<T> initializer;
+
+    private volatile State state = State.NEW;
+    private volatile T value;
+
+    /**
+     * 构造函数
+     *
+     * @param name        名称，用于日志
+     * @param initializer 初始化方法
+     */
+    public LazyHolder(String name, Callable<T> initializer) {
+        this.name = name;
+        this.initializer = initializer;
+    }
+
+    /**
+     * 获取对象，还未初始化时在当前线程初始化，正在初始化时等待初始化完成
+     *
+     * @return 对象，初始化失败时为null
+     */
+    public T get() {
+        if (state == State.READY) {
+            return value;
+        }
+        synchronized (this) {
+            if (state == State.NEW) {
+                state = State.INITIALIZING;
+                try {
+                    value = initializer.call();
+                    state = State.READY;
+                    log.info("LazyHolder.get --> {} Initialization successful", name);
+                } catch (Exception e) {
+                    state = State.FAILED;
+                    log.error("LazyHolder.get --> {} initialization failed, e: ", name, e);
+                }
+            }
+            return value;
+        }
+    }
+
+    /**
+     * 已经初始化成功时获取对象，不会触发初始化
+     *
+     * @return 对象，未初始化或初始化失败时为null
+     */
+    public T getIfReady() {
+        return state == State.READY ? value : null;
+    }
+
+    /**
+     * 是否已经初始化成功
+     *
+     * @return boolean
+     */
+    public boolean isReady() {
+        return state == State.READY;
+    }
+
+    /**
+     * 当前的初始化状态
+     *
+     * @return State
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 名称
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+}
@@ -12,6 +12,7 @@ import com.microtripit.mandrillapp.lutung.MandrillApi;
 import com.microtripit.mandrillapp.lutung.model.MandrillApiError;
 import com.microtripit.mandrillapp.lutung.view.MandrillMessage;
 import com.microtripit.mandrillapp.lutung.view.MandrillMessageStatus;
+import com.takeshi.component.BulkheadRegistry;
 import com.takeshi.config.StaticConfig;
 import com.takeshi.config.properties.MandrillCredentials;
 import com.takeshi.exception.TakeshiException;
@@ -41,9 +42,10 @@ public final class MandrillUtil {
     private static final String REJECTED = "rejected";
     private static final String INVALID = "invalid";
 
-    private static volatile String FROM_EMAIL;
-    private static volatile String FROM_NAME;
-    private static volatile MandrillApi MANDRILL_API;
+    /**
+     * Mandrill客户端和默认的发件人信息，第一次使用时才初始化
+     */
+    private static final LazyHolder<Client> CLIENT = new LazyHolder<>("Mandrill", MandrillUtil::initializeClient);
 
     private MandrillMessage message;
     private String subject, fromEmail, fromName, content;
@@ -64,27 +66,45 @@ public final class MandrillUtil {
      */
     private List<MandrillMessage.MessageContent> images = new ArrayList<>();
 
-    static {
-        if (ObjUtil.isNull(MANDRILL_API)) {
-            synchronized (MandrillUtil.class) {
-                if (ObjUtil.isNull(MANDRILL_API)) {
-                    try {
-                        MandrillCredentials mandrill = StaticConfig.takeshiProperties.getMandrill();
-                        JsonNode jsonNode = AmazonS3Util.getSecret();
-                        FROM_EMAIL = StrUtil.isBlank(mandrill.getFromEmailSecrets()) ? mandrill.getFromEmail() : jsonNode.get(mandrill.getFromEmailSecrets()).asText();
-                        FROM_NAME = StrUtil.isBlank(mandrill.getFromNameSecrets()) ? mandrill.getFromName() : jsonNode.get(mandrill.getFromNameSecrets()).asText();
-                        String apiKey = StrUtil.isBlank(mandrill.getApiKeySecrets()) ? mandrill.getApiKey() : jsonNode.get(mandrill.getApiKeySecrets()).asText();
-                        MANDRILL_API = new MandrillApi(apiKey);
-                        log.info("MandrillUtil.static --> Mandrill Initialization successful");
-                    } catch (Exception e) {
-                        log.error("MandrillUtil.static --> Mandrill initialization failed, e: ", e);
-                    }
-                }
-            }
-        }
+    private MandrillUtil() {
     }
 
-    private MandrillUtil() {
+    /**
+     * 初始化Mandrill客户端
+     *
+     * @return Client
+     */
+    private static Client initializeClient() {
+        MandrillCredentials mandrill = StaticConfig.takeshiProperties.getMandrill();
+        boolean useSecrets = !StrUtil.isAllBlank(mandrill.getFromEmailSecrets(), mandrill.getFromNameSecrets(), mandrill.getApiKeySecrets());
+        // 只有配置了从密钥中获取的字段才去请求AWS Secrets Manager
+        JsonNode jsonNode = useSecrets ? AmazonS3Util.getSecret() : null;
+        String fromEmail = StrUtil.isBlank(mandrill.getFromEmailSecrets()) ? mandrill.getFromEmail() : jsonNode.get(mandrill.getFromEmailSecrets()).asText();
+        String fromName = StrUtil.isBlank(mandrill.getFromNameSecrets()) ? mandrill.getFromName() : jsonNode.get(mandrill.getFromNameSecrets()).asText();
+        String apiKey = StrUtil.isBlank(mandrill.getApiKeySecrets()) ? mandrill.getApiKey() : jsonNode.get(mandrill.getApiKeySecrets()).asText();
+        return new Client(new MandrillApi(apiKey), fromEmail, fromName);
+    }
+
+    /**
+     * Mandrill客户端的持有者，可以在不触发初始化的情况下判断是否已经初始化
+     *
+     * @return LazyHolder
+     */
+    public static LazyHolder<?> clientHolder() {
+        return CLIENT;
+    }
+
+    /**
+     * 获取Mandrill客户端，第一次调用时初始化
+     *
+     * @return Client
+     */
+    private static Client client() {
+        Client client = CLIENT.get();
+        if (ObjUtil.isNull(client)) {
+            throw new IllegalStateException("Mandrill is not available");
+        }
+        return client;
     }
 
     /**
@@ -93,9 +113,10 @@ public final class MandrillUtil {
      * @return this
      */
     private MandrillUtil message() {
+        Client client = client();
         this.message = new MandrillMessage();
-        this.fromEmail = FROM_EMAIL;
-        this.fromName = FROM_NAME;
+        this.fromEmail = client.fromEmail();
+        this.fromName = client.fromName();
         return this;
     }
 
@@ -308,7 +329,9 @@ public final class MandrillUtil {
         }
         this.format();
         try {
-            MandrillMessageStatus[] result = MANDRILL_API.messages().send(this.message, false);
+            // 在mandrill隔离执行器中发送，Mandrill变慢时不会占满其他线程
+            MandrillMessageStatus[] result = StaticConfig.bulkheadRegistry.get(BulkheadRegistry.MANDRILL)
+                    .call(() -> client().mandrillApi().messages().send(this.message, false));
             if (ArrayUtil.isEmpty(result)) {
                 throw new TakeshiException("MandrillUtil sendErr result is empty");
             }
@@ -353,4 +376,14 @@ public final class MandrillUtil {
         this.message.setPreserveRecipients(true);
     }
 
+    /**
+     * Mandrill客户端和默认的发件人信息
+     *
+     * @param mandrillApi mandrillApi
+     * @param fromEmail   默认的发件人邮箱
+     * @param fromName    默认的发件人名称
+     */
+    private record Client(MandrillApi mandrillApi, String fromEmail, String fromName) {
+    }
+
 }
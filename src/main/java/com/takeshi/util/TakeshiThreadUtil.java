@@ -30,6 +30,23 @@ public final class TakeshiThreadUtil {
         }
     }
 
+    /**
+     * 创建虚拟线程的ThreadFactory，项目编译目标是JDK 17，所以通过反射调用JDK 21的Thread.ofVirtual()
+     *
+     * @param prefix 线程名称前缀，后面追加从0开始的序号
+     * @return ThreadFactory，运行的JDK不支持虚拟线程时返回null
+     */
+    public static ThreadFactory newVirtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
     /**
      * 停止线程池
      * 先使用shutdown, 停止接收新任务并尝试完成所有已存在任务.
@@ -37,6 +37,7 @@ import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
 import com.takeshi.config.StaticConfig;
 import com.takeshi.constants.TakeshiCode;
 import com.takeshi.exception.TakeshiException;
+import com.takeshi.extra.ip.IpLocatorUtil;
 import com.takeshi.mybatisplus.ColumnResolverWrapper;
 import com.takeshi.pojo.bo.RetBO;
 import com.takeshi.pojo.vo.GeoPointVO;
@@ -136,21 +137,13 @@ public final class TakeshiUtil {
     }
 
     /**
-     * 通过IP获取真实地址
+     * 通过IP获取真实地址，使用离线的IP地址库查询，详见{@link IpLocatorUtil}
      *
      * @param ip ip
      * @return 真实地址
      */
     public static String getRealAddressByIp(String ip) {
-        try {
-            HashMap<String, Object> map = new HashMap<>(6);
-            map.put("ip", ip);
-            map.put("json", true);
-            return JSONUtil.parseObj(HttpUtil.get("https://whois.pconline.com.cn/ipJson.jsp", map)).getStr("addr");
-        } catch (Exception e) {
-            log.error("TakeshiUtil.getRealAddressByIp --> e: ", e);
-            return null;
-        }
+        return IpLocatorUtil.search(ip);
     }
 
     /**
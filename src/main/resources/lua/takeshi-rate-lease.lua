@@ -0,0 +1,24 @@
+-- 从redis租借IP速率限制的配额，与takeshi-rate-limit.lua中的IP限制使用同一个GCRA令牌桶
+-- KEYS[1] IP限制
+-- ARGV[1] 租借的数量，ARGV[2] 速率，ARGV[3] 速率时间间隔（毫秒）
+-- 返回：{实际租借到的数量，租借到时为配额的有效时间，没有租借到时为下一个配额可用前的等待时间（毫秒）}
+
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local lease = tonumber(ARGV[1])
+local interval = tonumber(ARGV[3])
+local emission = interval / tonumber(ARGV[2])
+local tat = math.max(tonumber(redis.call('GET', KEYS[1])) or now, now)
+-- 令牌桶中当前可用的令牌数
+local granted = math.min(lease, math.floor((now + interval - tat) / emission))
+if granted <= 0 then
+    return {0, math.max(1, math.ceil(tat + emission - interval - now))}
+end
+local next = tat + granted * emission
+redis.call('SET', KEYS[1], string.format('%.3f', next), 'PX', math.ceil(next - now))
+-- 配额只在其对应的时间段内有效，避免节点囤积配额后集中使用
+return {granted, math.max(1, math.ceil(granted * emission))}
@@ -0,0 +1,63 @@
+-- 接口速率限制，一次调用完成IP黑名单，nonce，IP，参数签名，重复提交的校验，校验顺序与原来逐个调用时一致
+-- KEYS[1] IP黑名单，KEYS[2] nonce限制，KEYS[3] IP限制，KEYS[4] 重复提交
+-- ARGV[1] 本地校验（请求时间）是否失败，1为失败
+-- ARGV[2] nonce速率，ARGV[3] nonce速率时间间隔（毫秒），时间间隔为0则不校验
+-- ARGV[4] IP速率，ARGV[5] IP速率时间间隔（毫秒），时间间隔为0则不校验
+-- ARGV[6] 超过IP速率时加入黑名单的内容，空字符串则不加入黑名单，ARGV[7] 黑名单过期时间（毫秒）
+-- ARGV[8] 参数签名校验是否失败，1为失败
+-- ARGV[9] 重复提交时间间隔（毫秒），0则不校验
+-- ARGV[10] IP加入黑名单的广播频道，ARGV[11] 广播的内容
+-- ARGV[12] 本地令牌桶（local，hybrid模式）是否已经超过IP速率，1为超过，在nonce之后生效
+-- 返回：0通过，1黑名单中的IP，2本地校验失败，3nonce重复使用，4超过IP速率，5签名错误，6重复提交
+
+-- 使用redis的时间，redis5之前的版本需要开启命令复制才能在TIME之后写入
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+-- 令牌桶，使用GCRA算法，key中只保存下一个请求的理论到达时间（毫秒），与原来的RRateLimiter一样不会在窗口边界处出现两倍的突发
+-- 速率配置每次都由参数传入，无需提前初始化
+local function acquire(key, rate, interval)
+    local tat = math.max(tonumber(redis.call('GET', key)) or now, now)
+    local next = tat + interval / rate
+    if next - now > interval then
+        return false
+    end
+    redis.call('SET', key, string.format('%.3f', next), 'PX', math.ceil(next - now))
+    return true
+end
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 1
+end
+
+if ARGV[1] == '1' then
+    return 2
+end
+
+local nonceInterval = tonumber(ARGV[3])
+if nonceInterval > 0 and not acquire(KEYS[2], tonumber(ARGV[2]), nonceInterval) then
+    return 3
+end
+
+local ipInterval = tonumber(ARGV[5])
+if ARGV[12] == '1' or (ipInterval > 0 and not acquire(KEYS[3], tonumber(ARGV[4]), ipInterval)) then
+    if ARGV[6] ~= '' then
+        redis.call('SET', KEYS[1], ARGV[6], 'PX', ARGV[7])
+        redis.call('PUBLISH', ARGV[10], ARGV[11])
+    end
+    return 4
+end
+
+if ARGV[8] == '1' then
+    return 5
+end
+
+local repeatInterval = tonumber(ARGV[9])
+if repeatInterval > 0 and not acquire(KEYS[4], 1, repeatInterval) then
+    return 6
+end
+
+return 0
@@ -0,0 +1,119 @@
+package com.takeshi.component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.takeshi.pojo.basic.TbSysLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SysLogJournalTest
+ *
+ * @author 七濑武【Nanase Takeshi】
+ */
+class SysLogJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayInSameProcessOnFreshDirectory() throws IOException {
+        try (SysLogJournal journal = new SysLogJournal(this.dir, SEGMENT_SIZE, this.objectMapper)) {
+            assertFalse(journal.hasPending());
+            assertEquals(3, journal.append(logs("a", "b", "c")));
+            assertTrue(journal.hasPending());
+
+            List<TbSysLog> replayed = journal.peek(10);
+            assertEquals(List.of("a", "b", "c"), replayed.stream().map(TbSysLog::getTraceId).toList());
+            journal.commit();
+            assertFalse(journal.hasPending());
+
+            assertEquals(1, journal.append(logs("d")));
+            assertTrue(journal.hasPending());
+            assertEquals(List.of("d"), journal.peek(10).stream().map(TbSysLog::getTraceId).toList());
+            journal.commit();
+            assertFalse(journal.hasPending());
+        }
+    }
+
+    @Test
+    void replayAcrossSegmentsInSameProcess() throws IOException {
+        try (SysLogJournal journal = new SysLogJournal(this.dir, SEGMENT_SIZE, this.objectMapper)) {
+            String[] traceIds = new String[100];
+            for (int i = 0; i < traceIds.length; i++) {
+                traceIds[i] = "trace-" + i;
+            }
+            assertEquals(traceIds.length, journal.append(logs(traceIds)));
+            assertTrue(segments().size() > 1);
+
+            int replayed = 0;
+            while (journal.hasPending()) {
+                replayed += journal.peek(7).size();
+                journal.commit();
+            }
+            assertEquals(traceIds.length, replayed);
+            assertEquals(1, segments().size());
+        }
+    }
+
+    @Test
+    void resumeFromCheckpointAfterRestart() throws IOException {
+        try (SysLogJournal journal = new SysLogJournal(this.dir, SEGMENT_SIZE, this.objectMapper)) {
+            journal.append(logs("a", "b", "c"));
+            assertEquals(2, journal.peek(2).size());
+            journal.commit();
+        }
+        try (SysLogJournal journal = new SysLogJournal(this.dir, SEGMENT_SIZE, this.objectMapper)) {
+            assertTrue(journal.hasPending());
+            assertEquals(List.of("c"), journal.peek(10).stream().map(TbSysLog::getTraceId).toList());
+            journal.commit();
+            assertFalse(journal.hasPending());
+        }
+    }
+
+    @Test
+    void deleteSegmentsBeforeCheckpointOnRestart() throws IOException {
+        try (SysLogJournal journal = new SysLogJournal(this.dir, SEGMENT_SIZE, this.objectMapper)) {
+            journal.append(logs("a"));
+        }
+        List<Path> written = segments();
+        assertEquals(1, written.size());
+        // 模拟checkpoint刷到磁盘后，删除段文件前崩溃：checkpoint已经指向后面的段
+        Path leftover = written.get(0);
+        Path copy = this.dir.resolve("copy");
+        Files.copy(leftover, copy);
+        try (SysLogJournal journal = new SysLogJournal(this.dir, SEGMENT_SIZE, this.objectMapper)) {
+            journal.peek(10);
+            journal.commit();
+            journal.append(logs("b"));
+        }
+        Files.move(copy, leftover);
+
+        try (SysLogJournal journal = new SysLogJournal(this.dir, SEGMENT_SIZE, this.objectMapper)) {
+            assertFalse(Files.exists(leftover));
+            assertEquals(List.of("b"), journal.peek(10).stream().map(TbSysLog::getTraceId).toList());
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> stream = Files.list(this.dir)) {
+            return stream.filter(path -> path.getFileName().toString().startsWith("segment-")).sorted().toList();
+        }
+    }
+
+    private static List<TbSysLog> logs(String... traceIds) {
+        return Stream.of(traceIds).map(traceId -> new TbSysLog().setTraceId(traceId).setLogType("API")).toList();
+    }
+
+}